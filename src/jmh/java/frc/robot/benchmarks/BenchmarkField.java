@@ -0,0 +1,102 @@
+package frc.robot.benchmarks;
+
+import static frc.robot.utils.RobotParameters.PhotonVisionConstants.CAMERA_ONE_HEIGHT_METER;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import frc.robot.utils.pingu.PnPPingu;
+import frc.robot.utils.pingu.TagPingu;
+import java.util.ArrayList;
+import java.util.List;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+/**
+ * The robot, cameras, and camera results the vision benchmarks share. The robot sits in front of
+ * the blue reef, and each camera's targets are the reef tags it would see, projected through an
+ * ideal pinhole camera so the corners agree exactly with the tag layout.
+ */
+final class BenchmarkField {
+  // Same mounting as the real cameras in PhotonVision
+  static final Transform3d ROBOT_TO_RIGHT_CAMERA =
+      new Transform3d(
+          new Translation3d(0.27305, -0.2985, CAMERA_ONE_HEIGHT_METER),
+          new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(45)));
+  static final Transform3d ROBOT_TO_LEFT_CAMERA =
+      new Transform3d(
+          new Translation3d(0.27305, 0.2985, CAMERA_ONE_HEIGHT_METER),
+          new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(-45)));
+
+  static final Pose2d ROBOT_POSE = new Pose2d(2.6, 4.026, Rotation2d.kZero);
+
+  // fx, fy, cx, cy and eight distortion coefficients, all zero
+  static final double[] INTRINSICS = {
+    900.0, 900.0, 640.0, 400.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0
+  };
+
+  private BenchmarkField() {}
+
+  /**
+   * Gets the tags a camera on the robot at {@link #ROBOT_POSE} sees: tags facing the camera with
+   * all four corners in front of it and inside the image.
+   *
+   * @param robotToCamera The transform from the robot to the camera.
+   * @return List, The targets with their corners and camera to target transforms.
+   */
+  static List<PhotonTrackedTarget> targets(Transform3d robotToCamera) {
+    Pose3d cameraPose = new Pose3d(ROBOT_POSE).transformBy(robotToCamera);
+    double[] e = PnPPingu.extrinsics(robotToCamera);
+    double cos = ROBOT_POSE.getRotation().getCos();
+    double sin = ROBOT_POSE.getRotation().getSin();
+
+    List<PhotonTrackedTarget> targets = new ArrayList<>();
+    for (var tag : TagPingu.LAYOUT.getTags()) {
+      // The tag has to face the camera
+      double facing = tag.pose.getRotation().getZ();
+      double toCameraX = cameraPose.getX() - tag.pose.getX();
+      double toCameraY = cameraPose.getY() - tag.pose.getY();
+      if (Math.cos(facing) * toCameraX + Math.sin(facing) * toCameraY <= 0) continue;
+
+      List<TargetCorner> corners = new ArrayList<>(4);
+      for (int corner = 0; corner < 4; corner++) {
+        // Corner in the robot frame, then the camera frame, X forward, Y left, Z up
+        double dx = TagPingu.cornerX(tag.ID, corner) - ROBOT_POSE.getX();
+        double dy = TagPingu.cornerY(tag.ID, corner) - ROBOT_POSE.getY();
+        double qx = cos * dx + sin * dy - e[9];
+        double qy = -sin * dx + cos * dy - e[10];
+        double qz = TagPingu.cornerZ(tag.ID, corner) - e[11];
+        double cx = e[0] * qx + e[1] * qy + e[2] * qz;
+        double cy = e[3] * qx + e[4] * qy + e[5] * qz;
+        double cz = e[6] * qx + e[7] * qy + e[8] * qz;
+        if (cx < 0.5) break;
+
+        double u = INTRINSICS[0] * -cy / cx + INTRINSICS[2];
+        double v = INTRINSICS[1] * -cz / cx + INTRINSICS[3];
+        if (u < 0 || u > 2 * INTRINSICS[2] || v < 0 || v > 2 * INTRINSICS[3]) break;
+        corners.add(new TargetCorner(u, v));
+      }
+      if (corners.size() != 4) continue;
+
+      Transform3d cameraToTarget = new Transform3d(cameraPose, tag.pose);
+      targets.add(
+          new PhotonTrackedTarget(
+              0.0,
+              0.0,
+              1.0,
+              0.0,
+              tag.ID,
+              -1,
+              -1f,
+              cameraToTarget,
+              cameraToTarget,
+              0.05,
+              corners,
+              corners));
+    }
+    return targets;
+  }
+}
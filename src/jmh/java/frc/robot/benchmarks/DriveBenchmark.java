@@ -0,0 +1,141 @@
+package frc.robot.benchmarks;
+
+import static edu.wpi.first.math.VecBuilder.fill;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator3d;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.subsystems.PhotonModule;
+import frc.robot.utils.RobotParameters.MotorParameters;
+import frc.robot.utils.RobotParameters.PhotonVisionConstants;
+import frc.robot.utils.RobotParameters.SwerveParameters.PhysicalParameters;
+import frc.robot.utils.VisionBatch;
+import frc.robot.utils.VisionMeasurement;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * Benchmarks the drive math of every loop: turning the requested speeds into module states, and
+ * the odometry and vision updates of the pose estimators.
+ *
+ * <p>The odometry benchmarks advance the clock by one loop per operation, so the estimator buffers
+ * stay as full as they are on the robot. The vision batch benchmark keeps the clock still so the
+ * same measurements stay inside the estimator buffer for the whole run.
+ */
+@State(Scope.Thread)
+public class DriveBenchmark {
+  private static final double LOOP_PERIOD = 0.02;
+  private static final int CAMERAS = 4;
+
+  private final SwerveDriveKinematics kinematics = PhysicalParameters.kinematics;
+  private final ChassisSpeeds speeds = new ChassisSpeeds(3.0, 2.0, 4.0);
+  private final Matrix<N3, N1> visionStdDevs = PhotonVisionConstants.MULTI_TARGET_STD_DEV;
+
+  private SwerveModulePosition[] positions;
+  private SwerveDrivePoseEstimator poseEstimator;
+  private SwerveDrivePoseEstimator3d poseEstimator3d;
+  private VisionBatch visionBatch;
+  private List<VisionMeasurement> measurements;
+  private Pose2d visionPose;
+  private double time;
+  private double heading;
+
+  @Setup
+  public void setup() {
+    positions = new SwerveModulePosition[4];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = new SwerveModulePosition(0.0, Rotation2d.kZero);
+    }
+    poseEstimator =
+        new SwerveDrivePoseEstimator(
+            kinematics,
+            Rotation2d.kZero,
+            positions,
+            Pose2d.kZero,
+            fill(0.02, 0.02, Math.toRadians(5)),
+            fill(0.3, 0.3, Math.toRadians(10)));
+    poseEstimator3d =
+        new SwerveDrivePoseEstimator3d(kinematics, Rotation3d.kZero, positions, Pose3d.kZero);
+    visionBatch = new VisionBatch(poseEstimator, poseEstimator3d);
+    visionPose = new Pose2d(0.1, 0.05, Rotation2d.kZero);
+
+    // One second of odometry for the vision measurements to be moved along
+    for (int i = 0; i < 50; i++) {
+      advance();
+      poseEstimator.updateWithTime(time, Rotation2d.fromRadians(heading), positions);
+      poseEstimator3d.updateWithTime(time, new Rotation3d(0.0, 0.0, heading), positions);
+    }
+
+    PhotonModule camera = new PhotonModule(() -> "Benchmark", BenchmarkField.ROBOT_TO_LEFT_CAMERA);
+    measurements = new ArrayList<>(CAMERAS);
+    for (int i = 0; i < CAMERAS; i++) {
+      double timestamp = time - 0.03 - 0.01 * i;
+      measurements.add(
+          new VisionMeasurement(
+              camera,
+              new PhotonPipelineResult(),
+              new EstimatedRobotPose(
+                  new Pose3d(poseEstimator.getEstimatedPosition()),
+                  timestamp,
+                  List.of(),
+                  PoseStrategy.LOWEST_AMBIGUITY),
+              PhotonVisionConstants.MULTI_TARGET_STD_DEV,
+              PhotonVisionConstants.MULTI_TARGET_STD_DEV_3D));
+    }
+  }
+
+  /** Moves every module and the gyro as if the robot drove one loop. */
+  private void advance() {
+    time += LOOP_PERIOD;
+    heading += 0.01;
+    for (SwerveModulePosition position : positions) {
+      position.distanceMeters += 0.05;
+    }
+  }
+
+  @Benchmark
+  public SwerveModuleState[] moduleStates() {
+    SwerveModuleState[] states = kinematics.toSwerveModuleStates(speeds);
+    SwerveDriveKinematics.desaturateWheelSpeeds(states, MotorParameters.MAX_SPEED);
+    return states;
+  }
+
+  @Benchmark
+  public Pose2d poseEstimatorUpdate() {
+    advance();
+    return poseEstimator.updateWithTime(time, Rotation2d.fromRadians(heading), positions);
+  }
+
+  /** One odometry update and one past vision measurement per camera, as before the vision batch. */
+  @Benchmark
+  public Pose2d poseEstimatorUpdateWithVision() {
+    advance();
+    Pose2d pose = poseEstimator.updateWithTime(time, Rotation2d.fromRadians(heading), positions);
+    for (int i = 0; i < CAMERAS; i++) {
+      poseEstimator.addVisionMeasurement(visionPose, time - 0.03 - 0.01 * i, visionStdDevs);
+    }
+    return pose;
+  }
+
+  @Benchmark
+  public int visionBatch() {
+    return visionBatch.apply(measurements);
+  }
+}
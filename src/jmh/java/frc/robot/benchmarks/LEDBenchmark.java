@@ -0,0 +1,48 @@
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.subsystems.LED;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks one frame of each LED pattern generator on the simulated strip. The LED task keeps
+ * drawing its own pattern in the background at {@code LED_RATE}, which only adds a little noise.
+ */
+@State(Scope.Thread)
+public class LEDBenchmark {
+  private LED led;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    led = LED.getInstance();
+  }
+
+  @Benchmark
+  public void solidColor() {
+    led.setRGB(255, 122, 20);
+  }
+
+  @Benchmark
+  public void flowingRainbow() {
+    led.flowingRainbow();
+  }
+
+  @Benchmark
+  public void highTideFlow() {
+    led.highTideFlow();
+  }
+
+  @Benchmark
+  public void twinkle() {
+    led.twinkle();
+  }
+
+  @Benchmark
+  public void laserbeam() {
+    led.laserbeam();
+  }
+}
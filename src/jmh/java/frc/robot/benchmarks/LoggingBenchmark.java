@@ -0,0 +1,52 @@
+package frc.robot.benchmarks;
+
+import frc.robot.utils.pingu.LogPingu;
+import frc.robot.utils.pingu.LogPingu.DoubleKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks one loop of logging: 100 values logged and flushed, once through the untyped {@link
+ * LogPingu#logs(Runnable)} block every subsystem used to log with and once through pre-registered
+ * {@link DoubleKey}s. The allocation rate from the GC profiler is the number of bytes each way
+ * allocates per loop.
+ */
+@State(Scope.Thread)
+public class LoggingBenchmark {
+  private static final int KEYS = 100;
+
+  private final String[] names = new String[KEYS];
+  private final DoubleKey[] keys = new DoubleKey[KEYS];
+  private double value;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < KEYS; i++) {
+      names[i] = "Benchmark/Key " + i;
+      keys[i] = new DoubleKey(names[i]);
+    }
+  }
+
+  @Benchmark
+  public void untypedLogs() {
+    value++;
+    LogPingu.logs(
+        () -> {
+          for (int i = 0; i < KEYS; i++) {
+            LogPingu.log(names[i], value + i);
+          }
+        });
+    LogPingu.flush();
+  }
+
+  @Benchmark
+  public void typedKeys() {
+    value++;
+    for (int i = 0; i < KEYS; i++) {
+      keys[i].log(value + i);
+    }
+    LogPingu.flush();
+  }
+}
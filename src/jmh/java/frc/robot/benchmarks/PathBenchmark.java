@@ -0,0 +1,91 @@
+package frc.robot.benchmarks;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.pathfinding.LocalADStar;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.utils.RobotParameters.FieldParameters;
+import frc.robot.utils.RobotParameters.FieldParameters.RobotPoses;
+import frc.robot.utils.emu.Direction;
+import frc.robot.utils.pingu.NavGridPingu;
+import frc.robot.utils.pingu.PathLibraryPingu;
+import frc.robot.utils.pingu.PathPingu;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks choosing where to drive and planning how to get there: the closest scoring pose
+ * lookup, the navgrid line of sight check that can skip the search, a full AD* plan over {@code
+ * navgrid.json}, and the precomputed path library lookup that replaces it.
+ */
+@State(Scope.Thread)
+public class PathBenchmark {
+  private static final Translation2d START = new Translation2d(1.5, 1.5);
+
+  // Both goals are on the far side of the reef from the start, so every plan has to go around it
+  private static final Translation2d[] GOALS = {
+    new Translation2d(6.0, 6.5), new Translation2d(6.5, 5.5),
+  };
+
+  private final PathConstraints constraints = new PathConstraints(4.0, 3.0, 6.0, 8.0);
+  private final GoalEndState goalEndState = new GoalEndState(0.0, Rotation2d.kZero);
+  private final Pose2d robotPose = new Pose2d(2.8, 3.1, Rotation2d.fromDegrees(30));
+  private final Pose2d startPose = new Pose2d(START, Rotation2d.kZero);
+
+  // Scoring pose G, on the far side of the reef from the start
+  private final Pose2d libraryGoal = RobotPoses.PATH_LIBRARY_GOALS.get(6);
+
+  private LocalADStar adStar;
+  private int goal;
+
+  @Setup
+  public void setup() {
+    PathPingu.initialize();
+    adStar = new LocalADStar();
+    PathLibraryPingu.goalCount();
+  }
+
+  @Benchmark
+  public Pose2d closestScoringPosition() {
+    return PathPingu.findClosestScoringPosition(robotPose, Direction.LEFT);
+  }
+
+  @Benchmark
+  public boolean lineOfSightClear() {
+    return NavGridPingu.isClear(1.5, 1.5, 7.0, 1.0, FieldParameters.NAVGRID_FAST_PATH_CLEARANCE);
+  }
+
+  @Benchmark
+  public boolean lineOfSightBlocked() {
+    return NavGridPingu.isClear(1.5, 4.0, 7.0, 4.0, FieldParameters.NAVGRID_FAST_PATH_CLEARANCE);
+  }
+
+  /**
+   * Plans from the start to one of two goals and waits for the planning thread to finish, the
+   * latency a pathfinding command sees after it sets its goal.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public PathPlannerPath plan() {
+    goal ^= 1;
+    adStar.setStartPosition(START);
+    adStar.setGoalPosition(GOALS[goal]);
+    while (!adStar.isNewPathAvailable()) {
+      Thread.onSpinWait();
+    }
+    return adStar.getCurrentPath(constraints, goalEndState);
+  }
+
+  /** Looks up the path from the start to scoring pose G around the reef in the path library. */
+  @Benchmark
+  public PathPlannerPath libraryPath() {
+    return PathLibraryPingu.path(startPose, libraryGoal, constraints, 0.0);
+  }
+}
@@ -0,0 +1,88 @@
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.subsystems.Swerve;
+import frc.robot.utils.pingu.SignalPingu;
+import java.lang.management.ManagementFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+/**
+ * Benchmarks one loop of the swerve drive on the main thread: the signal refresh and drive request,
+ * which are checked to allocate nothing, and {@link Swerve#periodic()}, which is only measured.
+ *
+ * <p>{@code periodic()} can not be allocation free, because WPILib allocates inside it. Each pose
+ * estimator {@code updateWithTime} builds a twist, a pose and an interpolation record: once per
+ * drained odometry sample for the 2D estimator, and once per loop for the 3D estimator, with the
+ * {@code Rotation3d} it is given. A sample whose yaw changed also allocates its {@code Rotation2d},
+ * and a loop with vision measurements allocates in the estimators' {@code sampleAt} lookups. The
+ * rest of the loop is written not to allocate.
+ *
+ * <p>The gc profiler's {@code gc.alloc.rate.norm} also counts the drive thread and the log drain
+ * thread, so each measurement iteration of {@link #driveRequest()} reads the benchmark thread's own
+ * allocated bytes and fails the run if it allocated more than {@link #MAX_BYTES_PER_OP} per
+ * operation.
+ */
+@State(Scope.Thread)
+public class SwerveBenchmark {
+  // Slack for the few bytes JMH itself may allocate on the thread per iteration
+  private static final double MAX_BYTES_PER_OP = 1.0;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private Swerve swerve;
+  private double turn = 0.5;
+  private long operations;
+  private long startBytes;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    swerve = Swerve.getInstance();
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    operations = 0;
+    startBytes = THREADS.getCurrentThreadAllocatedBytes();
+  }
+
+  /** Refreshes the signals and requests new speeds, as the start of every robot loop does. */
+  @Benchmark
+  public void driveRequest() {
+    operations++;
+    turn = -turn;
+    SignalPingu.refresh();
+    swerve.setDriveSpeeds(1.5, 0.5, turn);
+  }
+
+  /** Runs the subsystem, draining odometry into the pose estimators and logging. */
+  @Benchmark
+  public void periodic() {
+    operations++;
+    swerve.periodic();
+  }
+
+  @TearDown(Level.Iteration)
+  public void checkAllocations(BenchmarkParams benchmark, IterationParams iteration) {
+    long allocated = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+    if (!benchmark.getBenchmark().endsWith(".driveRequest")) return;
+    if (iteration.getType() != IterationType.MEASUREMENT || operations == 0) return;
+
+    double perOperation = (double) allocated / operations;
+    if (perOperation > MAX_BYTES_PER_OP) {
+      throw new IllegalStateException(
+          String.format(
+              "The drive request allocated %.1f bytes per operation, it must allocate nothing",
+              perOperation));
+    }
+  }
+}
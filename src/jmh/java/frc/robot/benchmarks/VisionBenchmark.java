@@ -0,0 +1,102 @@
+package frc.robot.benchmarks;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.subsystems.PhotonModule;
+import frc.robot.subsystems.VisionIO;
+import frc.robot.subsystems.VisionIO.VisionIOInputs;
+import frc.robot.subsystems.VisionSolver;
+import frc.robot.utils.pingu.PnPPingu;
+import frc.robot.utils.pingu.TagPingu;
+import java.util.List;
+import java.util.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+/**
+ * Benchmarks the per-result vision work: reading the logged camera inputs back into results and the
+ * fused PnP solve over both cameras on the main loop, and solving one result and the standard
+ * deviation pass on a camera reader thread.
+ */
+@State(Scope.Thread)
+public class VisionBenchmark {
+  private PhotonModule leftCamera;
+  private PhotonModule rightCamera;
+  private VisionSolver leftSolver;
+  private List<PhotonTrackedTarget> leftTargets;
+  private List<PhotonTrackedTarget> rightTargets;
+  private PhotonPipelineResult leftResult;
+  private Optional<EstimatedRobotPose> estimatedPose;
+  private VisionIOInputs inputs;
+
+  // The pose estimator skips a result it already solved unless the reference pose changes
+  private Pose2d[] referencePoses;
+  private int reference;
+
+  @Setup
+  public void setup() {
+    leftCamera = new PhotonModule(() -> "Left", BenchmarkField.ROBOT_TO_LEFT_CAMERA);
+    rightCamera = new PhotonModule(() -> "Right", BenchmarkField.ROBOT_TO_RIGHT_CAMERA);
+    leftSolver = new VisionSolver(BenchmarkField.ROBOT_TO_LEFT_CAMERA, TagPingu.LAYOUT);
+    leftTargets = BenchmarkField.targets(BenchmarkField.ROBOT_TO_LEFT_CAMERA);
+    rightTargets = BenchmarkField.targets(BenchmarkField.ROBOT_TO_RIGHT_CAMERA);
+
+    leftResult = new PhotonPipelineResult(1, 1_000_000, 1_030_000, 0, leftTargets);
+    estimatedPose =
+        Optional.of(
+            new EstimatedRobotPose(
+                new Pose3d(BenchmarkField.ROBOT_POSE),
+                1.0,
+                leftTargets,
+                PoseStrategy.LOWEST_AMBIGUITY));
+
+    // Two results from each camera, as after a loop that ran long
+    inputs = new VisionIOInputs();
+    VisionIO.pack(
+        inputs,
+        List.of(
+            leftResult,
+            new PhotonPipelineResult(2, 1_033_000, 1_063_000, 0, leftTargets),
+            new PhotonPipelineResult(3, 1_001_000, 1_031_000, 0, rightTargets),
+            new PhotonPipelineResult(4, 1_034_000, 1_064_000, 0, rightTargets)),
+        new Packet(1));
+
+    referencePoses =
+        new Pose2d[] {
+          BenchmarkField.ROBOT_POSE, new Pose2d(2.61, 4.026, Rotation2d.kZero),
+        };
+  }
+
+  @Benchmark
+  public List<PhotonPipelineResult> unpackInputs() {
+    return VisionIO.unpack(inputs);
+  }
+
+  @Benchmark
+  public Optional<EstimatedRobotPose> solveResult() {
+    reference ^= 1;
+    return leftSolver.solve(leftResult, referencePoses[reference]);
+  }
+
+  @Benchmark
+  public double[] updateEstimatedStdDevs() {
+    leftSolver.updateEstimatedStdDevs(estimatedPose, leftTargets);
+    return leftSolver.getStdDevs();
+  }
+
+  @Benchmark
+  public boolean fusedSolve() {
+    PnPPingu.reset();
+    PnPPingu.addTargets(leftCamera.getExtrinsics(), BenchmarkField.INTRINSICS, leftTargets);
+    PnPPingu.addTargets(rightCamera.getExtrinsics(), BenchmarkField.INTRINSICS, rightTargets);
+    return PnPPingu.solve(2.5, 4.0, 0.05);
+  }
+}
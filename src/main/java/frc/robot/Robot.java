@@ -1,7 +1,6 @@
 package frc.robot;
 
 import static edu.wpi.first.wpilibj.RobotController.*;
-import static edu.wpi.first.wpilibj.Threads.*;
 import static frc.robot.commands.Kommand.flipPidgey;
 import static frc.robot.utils.RobotParameters.LiveRobotValues.*;
 
@@ -18,7 +17,12 @@ import frc.robot.subsystems.LED;
 import frc.robot.subsystems.Swerve;
 import frc.robot.utils.LocalADStarAK;
 import frc.robot.utils.RobotParameters;
-import frc.robot.utils.RobotParameters.FieldParameters.*;
+import frc.robot.utils.pingu.LogPingu;
+import frc.robot.utils.pingu.MemoryPingu;
+import frc.robot.utils.pingu.PathLibraryPingu;
+import frc.robot.utils.pingu.PathPingu;
+import frc.robot.utils.pingu.PerfPingu;
+import frc.robot.utils.pingu.SignalPingu;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -37,7 +41,6 @@ public class Robot extends LoggedRobot {
   private Command autonomousCommand;
   private RobotContainer robotContainer;
 
-  private Timer garbageTimer;
   private Timer batteryTimer;
 
   /**
@@ -58,38 +61,42 @@ public class Robot extends LoggedRobot {
     // Set the pathfinder
     Pathfinding.setPathfinder(new LocalADStarAK());
 
-    if (isReal()) {
-      // Log to NetworkTables
-      Logger.addDataReceiver(new NT4Publisher());
+    switch (RobotParameters.Info.getMode()) {
+      case REAL -> {
+        // Log to NetworkTables
+        Logger.addDataReceiver(new NT4Publisher());
 
-      // WARNING: PowerDistribution resource leak
-      // Enables power distribution logging
-      new PowerDistribution(1, ModuleType.kRev);
-
-    } else {
-      // Run as fast as possible
-      setUseTiming(false);
+        // WARNING: PowerDistribution resource leak
+        // Enables power distribution logging
+        new PowerDistribution(1, ModuleType.kRev);
+      }
+      case SIM -> {
+        // Log to NetworkTables so the simulation can be watched in AdvantageScope
+        Logger.addDataReceiver(new NT4Publisher());
+      }
+      case REPLAY -> {
+        // Run as fast as possible
+        setUseTiming(false);
 
-      // Pull the replay log from AdvantageScope (or prompt the user)
-      String logPath = LogFileUtil.findReplayLog();
+        // Pull the replay log from AdvantageScope (or prompt the user)
+        String logPath = LogFileUtil.findReplayLog();
 
-      // Read replay log
-      Logger.setReplaySource(new WPILOGReader(logPath));
+        // Read replay log
+        Logger.setReplaySource(new WPILOGReader(logPath));
 
-      // Save outputs to a new log
-      Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim")));
+        // Save outputs to a new log
+        Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim")));
+      }
     }
 
     // Start the logger
     Logger.start();
 
-    // Call addCoralPosList
-    RobotPoses.addCoralPosList();
+    // Build the scoring position index for both alliances
+    PathPingu.initialize();
 
-    // Initialize the garbage timer
-    garbageTimer = new Timer();
+    // Initialize the battery timer
     batteryTimer = new Timer();
-    garbageTimer.start();
 
     // Configure auto builder
     Swerve.getInstance().configureAutoBuilder();
@@ -100,6 +107,12 @@ public class Robot extends LoggedRobot {
     // Schedule the warmup command
     PathfindingCommand.warmupCommand().schedule();
 
+    // Load the path library now instead of on the first pathfinding command
+    PathLibraryPingu.goalCount();
+
+    // Time every command's execute for the loop profiler
+    CommandScheduler.getInstance().onCommandExecute(PerfPingu::commandExecuted);
+
     CommandScheduler.getInstance().enable();
   }
 
@@ -112,10 +125,15 @@ public class Robot extends LoggedRobot {
    */
   @Override
   public void robotPeriodic() {
-    setCurrentThreadPriority(true, 99);
+    PerfPingu.beginLoop();
+
+    // Refresh every registered status signal at once so all subsystems see the same instant
+    SignalPingu.refresh();
 
     CommandScheduler.getInstance().run();
-    if (garbageTimer.advanceIfElapsed(5)) System.gc();
+
+    // Tracks allocation and only collects garbage while the robot is disabled
+    MemoryPingu.update();
 
     // Checks for low battery
     if (getBatteryVoltage() < LOW_BATTERY_VOLTAGE) {
@@ -128,7 +146,10 @@ public class Robot extends LoggedRobot {
       lowBattery = false;
     }
 
-    setCurrentThreadPriority(false, 99);
+    PerfPingu.endLoop();
+
+    // Hand everything logged this loop to AdvantageKit before it captures the log table
+    LogPingu.flush();
   }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. **/
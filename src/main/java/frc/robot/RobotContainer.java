@@ -68,19 +68,19 @@ public class RobotContainer {
   private void configureBindings() {
     bindings(
         aacrn,
-        bind(START, Kommand::resetPidgey),
+        bind(START, resetPidgey()),
         // bind(B, () -> setElevatorState(DEFAULT)),
         // bind(B, () -> align(CENTER).onlyWhile(pad::getAButton)),
-        bind(B, Sequences::resetScore),
+        bind(B, resetScore()),
         // bind(B, () -> createPathfindingCmd(reefs.get(0))),
-         bind(A, Kommand::setIntakeAlgae),
+        bind(A, setIntakeAlgae()),
         // bind(A, () -> align(RIGHT)),
-        bind(Y, Kommand::startCoralMotors),
-        bind(X, () -> reverseIntake().onlyWhile(aacrn::getXButton)),
+        bind(Y, startCoralMotors()),
+        bind(X, reverseIntake().onlyWhile(aacrn::getXButton)),
         bind(RIGHT_BUMPER, () -> fullScore(RIGHT)),
         bind(LEFT_BUMPER, () -> fullScore(LEFT)));
 
-    bindings(calamityCow, bind(A, Kommand::offVision));
-    bindings(calamityCow, bind(B, Kommand::onVision));
+    bindings(calamityCow, bind(A, offVision()));
+    bindings(calamityCow, bind(B, onVision()));
   }
 }
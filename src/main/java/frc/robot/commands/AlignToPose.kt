@@ -2,7 +2,6 @@ package frc.robot.commands
 
 import edu.wpi.first.math.controller.ProfiledPIDController
 import edu.wpi.first.math.geometry.Pose2d
-import edu.wpi.first.math.trajectory.TrapezoidProfile
 import edu.wpi.first.wpilibj.DriverStation
 import edu.wpi.first.wpilibj.Timer
 import edu.wpi.first.wpilibj2.command.Command
@@ -10,17 +9,17 @@ import frc.robot.commands.Kommand.moveToClosestCoralScore
 import frc.robot.commands.Kommand.moveToClosestCoralScoreNotL4
 import frc.robot.subsystems.Swerve
 import frc.robot.utils.RobotParameters.ElevatorParameters.elevatorToBeSetState
-import frc.robot.utils.RobotParameters.FieldParameters.RobotPoses.addCoralPosList
 import frc.robot.utils.RobotParameters.LiveRobotValues.visionDead
 import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.PROFILE_CONSTRAINTS
 import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.ROTATIONAL_PINGU
+import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.ROTATION_PROFILE_CONSTRAINTS
 import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.X_PINGU
 import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.Y_PINGU
 import frc.robot.utils.emu.Direction
 import frc.robot.utils.emu.ElevatorState
-import frc.robot.utils.pingu.LogPingu.log
-import frc.robot.utils.pingu.LogPingu.logs
-import frc.robot.utils.pingu.PathPingu.clearCoralScoringPositions
+import frc.robot.utils.pingu.LogPingu.BooleanKey
+import frc.robot.utils.pingu.LogPingu.DoubleKey
+import frc.robot.utils.pingu.LogPingu.StructKey
 import java.sql.Driver
 
 /**
@@ -53,19 +52,15 @@ open class AlignToPose(
     override fun initialize() {
         addRequirements(Swerve.getInstance())
 
-        // Update the list of coral scoring positions to the correct side (hopefully)
         currentPose = Swerve.getInstance().pose2Dfrom3D
 
         timer = Timer()
 
-        clearCoralScoringPositions()
-        addCoralPosList()
-
         targetPose =
             if (elevatorToBeSetState == ElevatorState.L4) {
-                moveToClosestCoralScore(offsetSide, Swerve.getInstance().pose2Dfrom3D)!!
+                moveToClosestCoralScore(offsetSide, Swerve.getInstance().pose2Dfrom3D)
             } else {
-                moveToClosestCoralScoreNotL4(offsetSide, Swerve.getInstance().pose2Dfrom3D)!!
+                moveToClosestCoralScoreNotL4(offsetSide, Swerve.getInstance().pose2Dfrom3D)
             }
 
         xController =
@@ -87,7 +82,7 @@ open class AlignToPose(
         rotationalController =
             ROTATIONAL_PINGU.profiledPIDController.apply {
                 setTolerance(4.0)
-                setConstraints(TrapezoidProfile.Constraints(5.0, 5.0))
+                setConstraints(ROTATION_PROFILE_CONSTRAINTS)
                 setGoal(targetPose.rotation.degrees)
                 reset(currentPose.rotation.degrees)
                 enableContinuousInput(-180.0, 180.0)
@@ -155,31 +150,45 @@ open class AlignToPose(
      * Logs alignment data for debugging purposes.
      */
     fun alignLogs() {
-        logs {
-            log("AlignToPose/Current Pose", currentPose)
-            log("AlignToPose/Target Pose", targetPose)
-            log("AlignToPose/Rotational Error", rotationalController.positionError)
-            log("AlignToPose/Y Error", yController.positionError)
-            log("AlignToPose/X Error ", xController.positionError)
-            log("AlignToPose/X Set ", xController.setpoint.position)
-            log("AlignToPose/X Goal ", xController.goal.position)
-            log("AlignToPose/Rotational Controller Setpoint", rotationalController.atSetpoint())
-            log("AligntoPOse/Heading got from odometry", currentPose.rotation.degrees)
-            log("AlignToPose/Y Controller Setpoint", yController.atSetpoint())
-            log("AlignToPose/X Controller Setpoint ", xController.atSetpoint())
-            log(
-                "AlignToPose/X Set Speed ",
-                xController.calculate(currentPose.x, targetPose.x),
-            )
-            log("AlignToPose/Y Set Speed ", yController.calculate(currentPose.y))
-            log(
-                "AlignToPose/Rot Set Speed ",
-                rotationalController.calculate(currentPose.rotation.degrees),
-            )
-            log("AlignToPose/ X Set Pos", currentPose.x)
-            log("AlignToPose/ Y Set Pos", currentPose.y)
-            log("AlignToPose/ X Target Pos", targetPose.x)
-            log("AlignToPose/ Y Target Pos", targetPose.y)
-        }
+        CURRENT_POSE_KEY.log(currentPose)
+        TARGET_POSE_KEY.log(targetPose)
+        ROTATIONAL_ERROR_KEY.log(rotationalController.positionError)
+        Y_ERROR_KEY.log(yController.positionError)
+        X_ERROR_KEY.log(xController.positionError)
+        X_SET_KEY.log(xController.setpoint.position)
+        X_GOAL_KEY.log(xController.goal.position)
+        ROTATIONAL_AT_SETPOINT_KEY.log(rotationalController.atSetpoint())
+        ODOMETRY_HEADING_KEY.log(currentPose.rotation.degrees)
+        Y_AT_SETPOINT_KEY.log(yController.atSetpoint())
+        X_AT_SETPOINT_KEY.log(xController.atSetpoint())
+        X_SET_SPEED_KEY.log(xController.calculate(currentPose.x, targetPose.x))
+        Y_SET_SPEED_KEY.log(yController.calculate(currentPose.y))
+        ROT_SET_SPEED_KEY.log(rotationalController.calculate(currentPose.rotation.degrees))
+        X_SET_POS_KEY.log(currentPose.x)
+        Y_SET_POS_KEY.log(currentPose.y)
+        X_TARGET_POS_KEY.log(targetPose.x)
+        Y_TARGET_POS_KEY.log(targetPose.y)
+    }
+
+    companion object {
+        // Log keys
+        private val CURRENT_POSE_KEY = StructKey("AlignToPose/Current Pose", Pose2d.struct)
+        private val TARGET_POSE_KEY = StructKey("AlignToPose/Target Pose", Pose2d.struct)
+        private val ROTATIONAL_ERROR_KEY = DoubleKey("AlignToPose/Rotational Error")
+        private val Y_ERROR_KEY = DoubleKey("AlignToPose/Y Error")
+        private val X_ERROR_KEY = DoubleKey("AlignToPose/X Error ")
+        private val X_SET_KEY = DoubleKey("AlignToPose/X Set ")
+        private val X_GOAL_KEY = DoubleKey("AlignToPose/X Goal ")
+        private val ROTATIONAL_AT_SETPOINT_KEY = BooleanKey("AlignToPose/Rotational Controller Setpoint")
+        private val ODOMETRY_HEADING_KEY = DoubleKey("AligntoPOse/Heading got from odometry")
+        private val Y_AT_SETPOINT_KEY = BooleanKey("AlignToPose/Y Controller Setpoint")
+        private val X_AT_SETPOINT_KEY = BooleanKey("AlignToPose/X Controller Setpoint ")
+        private val X_SET_SPEED_KEY = DoubleKey("AlignToPose/X Set Speed ")
+        private val Y_SET_SPEED_KEY = DoubleKey("AlignToPose/Y Set Speed ")
+        private val ROT_SET_SPEED_KEY = DoubleKey("AlignToPose/Rot Set Speed ")
+        private val X_SET_POS_KEY = DoubleKey("AlignToPose/ X Set Pos")
+        private val Y_SET_POS_KEY = DoubleKey("AlignToPose/ Y Set Pos")
+        private val X_TARGET_POS_KEY = DoubleKey("AlignToPose/ X Target Pos")
+        private val Y_TARGET_POS_KEY = DoubleKey("AlignToPose/ Y Target Pos")
     }
 }
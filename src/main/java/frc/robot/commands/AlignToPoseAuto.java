@@ -3,16 +3,12 @@ package frc.robot.commands;
 import static frc.robot.commands.Kommand.moveToClosestCoralScore;
 import static frc.robot.commands.Kommand.moveToClosestCoralScoreNotL4;
 import static frc.robot.utils.RobotParameters.ElevatorParameters.elevatorToBeSetState;
-import static frc.robot.utils.RobotParameters.FieldParameters.RobotPoses.addCoralPosList;
 import static frc.robot.utils.RobotParameters.LiveRobotValues.visionDead;
 import static frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.*;
-import static frc.robot.utils.pingu.LogPingu.log;
-import static frc.robot.utils.pingu.LogPingu.logs;
-import static frc.robot.utils.pingu.PathPingu.clearCoralScoringPositions;
+import static frc.robot.utils.pingu.LogPingu.*;
 
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -45,6 +41,31 @@ public class AlignToPoseAuto extends Command {
     private NetworkPingu networkPinguY;
     private NetworkPingu networkPinguX;
 
+    // Log keys
+    private static final StructKey<Pose2d> CURRENT_POSE_KEY =
+            new StructKey<>("AlignToPose/Current Pose", Pose2d.struct);
+    private static final StructKey<Pose2d> TARGET_POSE_KEY =
+            new StructKey<>("AlignToPose/Target Pose", Pose2d.struct);
+    private static final DoubleKey ROTATIONAL_ERROR_KEY =
+            new DoubleKey("AlignToPose/Rotational Error");
+    private static final DoubleKey Y_ERROR_KEY = new DoubleKey("AlignToPose/Y Error");
+    private static final DoubleKey X_ERROR_KEY = new DoubleKey("AlignToPose/X Error ");
+    private static final DoubleKey X_SET_KEY = new DoubleKey("AlignToPose/X Set ");
+    private static final DoubleKey X_GOAL_KEY = new DoubleKey("AlignToPose/X Goal ");
+    private static final BooleanKey ROTATIONAL_AT_SETPOINT_KEY =
+            new BooleanKey("AlignToPose/Rotational Controller Setpoint");
+    private static final BooleanKey Y_AT_SETPOINT_KEY =
+            new BooleanKey("AlignToPose/Y Controller Setpoint");
+    private static final BooleanKey X_AT_SETPOINT_KEY =
+            new BooleanKey("AlignToPose/X Controller Setpoint ");
+    private static final DoubleKey X_SET_SPEED_KEY = new DoubleKey("AlignToPose/X Set Speed ");
+    private static final DoubleKey Y_SET_SPEED_KEY = new DoubleKey("AlignToPose/Y Set Speed ");
+    private static final DoubleKey ROT_SET_SPEED_KEY = new DoubleKey("AlignToPose/Rot Set Speed ");
+    private static final DoubleKey X_SET_POS_KEY = new DoubleKey("AlignToPose/ X Set Pos");
+    private static final DoubleKey Y_SET_POS_KEY = new DoubleKey("AlignToPose/ Y Set Pos");
+    private static final DoubleKey X_TARGET_POS_KEY = new DoubleKey("AlignToPose/ X Target Pos");
+    private static final DoubleKey Y_TARGET_POS_KEY = new DoubleKey("AlignToPose/ Y Target Pos");
+
 
 
     /**
@@ -63,14 +84,9 @@ public class AlignToPoseAuto extends Command {
     /** The initial subroutine of a command. Called once when the command is initially scheduled. */
     @Override
     public void initialize() {
-        // Update the list of coral scoring positions to the correct side (hopefully)
-        currentPose = swerve.getPose2Dfrom3D();
-
         timer = new Timer();
         addRequirements(swerve);
 
-        clearCoralScoringPositions();
-        addCoralPosList();
         currentPose = swerve.getPose2Dfrom3D();
 
         if (elevatorToBeSetState == ElevatorState.L4) {
@@ -93,7 +109,7 @@ public class AlignToPoseAuto extends Command {
 
         rotationalController = ROTATIONAL_PINGU.getProfiledPIDController();
         rotationalController.setTolerance(2.0);
-        rotationalController.setConstraints(new TrapezoidProfile.Constraints(5, 5));
+        rotationalController.setConstraints(ROTATION_PROFILE_CONSTRAINTS);
         rotationalController.setGoal(targetPose.getRotation().getDegrees());
         rotationalController.reset(currentPose.getRotation().getDegrees());
         rotationalController.enableContinuousInput(-180, 180);
@@ -133,28 +149,24 @@ public class AlignToPoseAuto extends Command {
                 swerve.setDriveSpeeds(-xController.calculate(currentPose.getX()), -yController.calculate(currentPose.getY()), rotationalController.calculate(currentPose.getRotation().getDegrees()), false);
             }
         }
-        logs(
-                () -> {
-                    log("AlignToPose/Current Pose", currentPose);
-                    log("AlignToPose/Target Pose", targetPose);
-                    log("AlignToPose/Rotational Error", rotationalController.getPositionError());
-                    log("AlignToPose/Y Error", yController.getPositionError());
-                    log("AlignToPose/X Error ", xController.getPositionError());
-                    log("AlignToPose/X Set ", xController.getSetpoint().position);
-                    log("AlignToPose/X Goal ", xController.getGoal().position);
-                    log("AlignToPose/Rotational Controller Setpoint", rotationalController.atSetpoint());
-                    log("AlignToPose/Y Controller Setpoint", yController.atSetpoint());
-                    log("AlignToPose/X Controller Setpoint ", xController.atSetpoint());
-                    log("AlignToPose/X Set Speed ", xController.calculate(currentPose.getX(), targetPose.getX()));
-                    log("AlignToPose/Y Set Speed ", yController.calculate(currentPose.getY()));
-                    log(
-                            "AlignToPose/Rot Set Speed ",
-                            rotationalController.calculate(currentPose.getRotation().getDegrees()));
-                    log("AlignToPose/ X Set Pos", currentPose.getX());
-                    log("AlignToPose/ Y Set Pos", currentPose.getY());
-                    log("AlignToPose/ X Target Pos", targetPose.getX());
-                    log("AlignToPose/ Y Target Pos", targetPose.getY());
-                });
+        CURRENT_POSE_KEY.log(currentPose);
+        TARGET_POSE_KEY.log(targetPose);
+        ROTATIONAL_ERROR_KEY.log(rotationalController.getPositionError());
+        Y_ERROR_KEY.log(yController.getPositionError());
+        X_ERROR_KEY.log(xController.getPositionError());
+        X_SET_KEY.log(xController.getSetpoint().position);
+        X_GOAL_KEY.log(xController.getGoal().position);
+        ROTATIONAL_AT_SETPOINT_KEY.log(rotationalController.atSetpoint());
+        Y_AT_SETPOINT_KEY.log(yController.atSetpoint());
+        X_AT_SETPOINT_KEY.log(xController.atSetpoint());
+        X_SET_SPEED_KEY.log(xController.calculate(currentPose.getX(), targetPose.getX()));
+        Y_SET_SPEED_KEY.log(yController.calculate(currentPose.getY()));
+        ROT_SET_SPEED_KEY.log(
+                rotationalController.calculate(currentPose.getRotation().getDegrees()));
+        X_SET_POS_KEY.log(currentPose.getX());
+        Y_SET_POS_KEY.log(currentPose.getY());
+        X_TARGET_POS_KEY.log(targetPose.getX());
+        Y_TARGET_POS_KEY.log(targetPose.getY());
     }
 
     /**
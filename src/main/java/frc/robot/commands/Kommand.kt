@@ -1,10 +1,10 @@
 package frc.robot.commands
 
-import com.pathplanner.lib.auto.AutoBuilder
 import edu.wpi.first.math.geometry.Pose2d
 import edu.wpi.first.wpilibj.XboxController
 import edu.wpi.first.wpilibj2.command.Command
 import edu.wpi.first.wpilibj2.command.CommandScheduler
+import edu.wpi.first.wpilibj2.command.Commands
 import edu.wpi.first.wpilibj2.command.InstantCommand
 import edu.wpi.first.wpilibj2.command.ParallelCommandGroup
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup
@@ -21,6 +21,7 @@ import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.PATH_CON
 import frc.robot.utils.emu.CoralState
 import frc.robot.utils.emu.Direction
 import frc.robot.utils.emu.ElevatorState
+import frc.robot.utils.pingu.PathLibraryPingu
 import frc.robot.utils.pingu.PathPingu.findClosestScoringPosition
 import frc.robot.utils.pingu.PathPingu.findClosestScoringPositionNotL4
 import kotlin.math.abs
@@ -217,7 +218,8 @@ object Kommand {
     fun setTelePid() = cmd { Swerve.getInstance().setTelePID() }
 
     /**
-     * Creates a pathfinding command to move to a specified pose.
+     * Creates a pathfinding command to move to a specified pose. Follows a precomputed path from the
+     * path library when the pose is one of its goals, and pathfinds with AD* otherwise.
      *
      * @param targetPose The target pose to move to.
      * @param endVelocity The end velocity for the pathfinding in m/s. Defaults to 0.0.
@@ -229,10 +231,9 @@ object Kommand {
         targetPose: Pose2d,
         endVelocity: Double = 0.0,
     ): Command =
-        AutoBuilder.pathfindToPose(
-            targetPose,
-            PATH_CONSTRAINTS,
-            endVelocity,
+        Commands.defer(
+            { PathLibraryPingu.pathfindToPose(Swerve.getInstance().pose, targetPose, PATH_CONSTRAINTS, endVelocity) },
+            setOf(Swerve.getInstance()),
         )
 
     /**
@@ -267,11 +268,12 @@ object Kommand {
     fun coralScoreFalse() = cmd { coralScoring = false }
 
     /**
-     * Creates a command to move the robot to the closest coral
-     * scoring position in the specified coral direction.
+     * Finds the coral scoring position in the specified coral direction
+     * that the robot aligns to soonest.
      * @param direction The direction in which to find the closest scoring position.
+     * @param pose The robot's current pose.
      *
-     * @return A command that performs the pathfinding operation.
+     * @return The scoring position to move to.
      */
     @JvmStatic
     fun moveToClosestCoralScore(
@@ -280,11 +282,12 @@ object Kommand {
     ) = findClosestScoringPosition(pose, direction)
 
     /**
-     * Creates a command to move the robot to the closest coral
-     * scoring position in the specified coral direction.
+     * Finds the not L4 coral scoring position in the specified coral direction
+     * that the robot aligns to soonest.
      * @param direction The direction in which to find the closest scoring position.
+     * @param pose The robot's current pose.
      *
-     * @return A command that performs the pathfinding operation.
+     * @return The scoring position to move to.
      */
     @JvmStatic
     fun moveToClosestCoralScoreNotL4(
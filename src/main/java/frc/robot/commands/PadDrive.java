@@ -13,6 +13,11 @@ import kotlin.*;
 public class PadDrive extends Command {
   private final XboxController pad;
 
+  // Log keys
+  private static final DoubleKey X_JOYSTICK_KEY = new DoubleKey("X Joystick");
+  private static final DoubleKey Y_JOYSTICK_KEY = new DoubleKey("Y Joystick");
+  private static final DoubleKey ROTATION_KEY = new DoubleKey("Rotation");
+
   /**
    * Constructs a new PadDrive command.
    *
@@ -34,12 +39,9 @@ public class PadDrive extends Command {
 
     double rotation = Math.abs(pad.getRightX()) >= 0.1 ? -pad.getRightX() * MAX_ANGULAR_SPEED : 0.0;
 
-    logs(
-        () -> {
-          log("X Joystick", position.getFirst());
-          log("Y Joystick", position.getSecond());
-          log("Rotation", rotation);
-        });
+    X_JOYSTICK_KEY.log(position.getFirst());
+    Y_JOYSTICK_KEY.log(position.getSecond());
+    ROTATION_KEY.log(rotation);
 
     Swerve.getInstance().setDriveSpeeds(position.getSecond(), position.getFirst(), rotation * 0.5);
   }
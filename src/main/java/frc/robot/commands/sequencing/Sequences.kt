@@ -1,5 +1,6 @@
 package frc.robot.commands.sequencing
 
+import edu.wpi.first.wpilibj2.command.Command
 import frc.robot.commands.Kommand.align
 import frc.robot.commands.Kommand.alignAuto
 import frc.robot.commands.Kommand.cancel
@@ -15,22 +16,30 @@ import frc.robot.commands.Kommand.waitFor
 import frc.robot.utils.RobotParameters.ElevatorParameters.elevatorToBeSetState
 import frc.robot.utils.emu.CoralState.CORAL_RELEASE
 import frc.robot.utils.emu.Direction
+import frc.robot.utils.emu.ElevatorState
 import frc.robot.utils.emu.ElevatorState.DEFAULT
 
 object Sequences {
-    /**
-     * Creates a sequence of commands to reset the scoring mechanism.
-     *
-     * @return A sequential command group.
-     */
-    @JvmStatic
-    fun resetScore() =
+    /** Full scoring sequences built so far, indexed by direction and elevator state ordinals */
+    private val fullScores = arrayOfNulls<Command>(Direction.entries.size * ElevatorState.entries.size)
+
+    /** The reset sequence, built once since it never changes */
+    private val resetScoreCommand by lazy {
         sequential {
             +setCoralState(CORAL_RELEASE)
             +setElevatorState(DEFAULT)
             +cancel()
             +hasPieceFalse()
         }
+    }
+
+    /**
+     * Gets the sequence of commands to reset the scoring mechanism.
+     *
+     * @return A sequential command group.
+     */
+    @JvmStatic
+    fun resetScore() = resetScoreCommand
 
     /**
      * Creates a full scoring sequence for the current eleveator state in autonomous mode.
@@ -52,24 +61,42 @@ object Sequences {
         }
 
     /**
-     * Creates a full scoring sequence for teleoperated mode.
+     * Gets the full scoring sequence for teleoperated mode at the elevator state currently to be set.
+     *
+     * The sequence for each direction and elevator state is built on first use and reused after, so a
+     * button press does not allocate a new command group.
      *
      * @param offsetSide The direction to offset the alignment.
      * @return A sequential command group.
      */
     @JvmStatic
-    fun fullScore(offsetSide: Direction) =
-        sequential {
-            +parallel {
-                +moveElevatorState(elevatorToBeSetState)
-                +align(offsetSide).withTimeout(2.0)
-            }
-            +waitFor(0.1)
-            +coralScoring()
-            +setCoralState(CORAL_RELEASE)
-            +waitFor(0.5)
-            +setElevatorState(DEFAULT)
-            +coralScoreFalse()
-            +hasPieceFalse()
+    fun fullScore(offsetSide: Direction): Command {
+        val state = elevatorToBeSetState
+        val index = offsetSide.ordinal * ElevatorState.entries.size + state.ordinal
+        return fullScores[index] ?: buildFullScore(offsetSide, state).also { fullScores[index] = it }
+    }
+
+    /**
+     * Creates a full scoring sequence for teleoperated mode.
+     *
+     * @param offsetSide The direction to offset the alignment.
+     * @param state The elevator state to score at.
+     * @return A sequential command group.
+     */
+    private fun buildFullScore(
+        offsetSide: Direction,
+        state: ElevatorState,
+    ) = sequential {
+        +parallel {
+            +moveElevatorState(state)
+            +align(offsetSide).withTimeout(2.0)
         }
+        +waitFor(0.1)
+        +coralScoring()
+        +setCoralState(CORAL_RELEASE)
+        +waitFor(0.5)
+        +setElevatorState(DEFAULT)
+        +coralScoreFalse()
+        +hasPieceFalse()
+    }
 }
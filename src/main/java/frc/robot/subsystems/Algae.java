@@ -1,6 +1,8 @@
 package frc.robot.subsystems;
 
 import static frc.robot.utils.RobotParameters.AlgaeManipulatorParameters.*;
+import static frc.robot.utils.RobotParameters.LoggingParameters.LOG_CURRENT_RATE;
+import static frc.robot.utils.RobotParameters.LoggingParameters.LOG_POSITION_EPSILON;
 import static frc.robot.utils.RobotParameters.MotorParameters.*;
 import static frc.robot.utils.pingu.LogPingu.*;
 
@@ -13,6 +15,7 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.utils.RobotParameters.*;
 import frc.robot.utils.emu.AlgaePivotState;
 import frc.robot.utils.pingu.*;
+import frc.robot.utils.pingu.PerfPingu.PerfTimer;
 
 /**
  * The PivotSubsystem class is a subsystem that interfaces with the arm system to provide control
@@ -28,6 +31,34 @@ public class Algae extends SubsystemBase {
     private final VoltageOut voltageOut;
     private final PositionVoltage voltagePos;
 
+    // Handles into the per-loop signal snapshot
+    private final int positionSignal;
+    private final int statorCurrentSignal;
+    private final int supplyCurrentSignal;
+    private final int stallCurrentSignal;
+
+    // Log keys
+    private static final DoubleKey PIVOT_POSITION_KEY =
+            new DoubleKey(
+                    "Algae/Algae Pivot Motor Position", LogPolicy.onChange(LOG_POSITION_EPSILON));
+    private static final StringKey ALGAE_STATE_KEY =
+            new StringKey("Algae/Algae State", LogPolicy.onChange());
+    private static final BooleanKey INTAKING_KEY =
+            new BooleanKey("Algae/IsAlgaeIntaking", LogPolicy.onChange());
+    private static final StringKey ALGAE_COUNTER_KEY =
+            new StringKey("Algae/Algae counter", LogPolicy.onChange());
+    private static final BooleanKey PIVOT_CONNECTED_KEY =
+            new BooleanKey(
+                    "Algae/Disconnected algaeManipulatorMotor " + ALGAE_PIVOT_MOTOR_ID,
+                    LogPolicy.onChange());
+    private static final DoubleKey PIVOT_STATOR_CURRENT_KEY =
+            new DoubleKey("Algae/Algae Pivot Stator Current", LogPolicy.rate(LOG_CURRENT_RATE));
+    private static final DoubleKey PIVOT_SUPPLY_CURRENT_KEY =
+            new DoubleKey("Algae/Algae Pivot Supply Current", LogPolicy.rate(LOG_CURRENT_RATE));
+    private static final DoubleKey PIVOT_STALL_CURRENT_KEY =
+            new DoubleKey("Algae/Algae Pivot Stall Current", LogPolicy.rate(LOG_CURRENT_RATE));
+    private static final PerfTimer PERIODIC_TIMER = new PerfTimer("Subsystems/Algae");
+
     // private double absPos = 0;
 
     /**
@@ -99,6 +130,11 @@ public class Algae extends SubsystemBase {
 
         algaePivotMotor.setPosition(0);
 
+        positionSignal = SignalPingu.register(algaePivotMotor.getPosition());
+        statorCurrentSignal = SignalPingu.register(algaePivotMotor.getStatorCurrent());
+        supplyCurrentSignal = SignalPingu.register(algaePivotMotor.getSupplyCurrent());
+        stallCurrentSignal = SignalPingu.register(algaePivotMotor.getMotorStallCurrent());
+
         AlertPingu.add(algaePivotMotor, "algae pivot");
 //        AlertPingu.add(algaeIntakeMotor, "algae intake");
     }
@@ -106,28 +142,19 @@ public class Algae extends SubsystemBase {
     // This method will be called once per scheduler run
     @Override
     public void periodic() {
+        PERIODIC_TIMER.start();
         setPivotPos(algaePivotState);
 //        setIntakeSpeed(algaePivotState);
 
-        logs(
-                () -> {
-                    log("Algae/Algae Pivot Motor Position", getPivotPosValue());
-                    log("Algae/Algae State", algaePivotState.toString());
-                    log("Algae/IsAlgaeIntaking", algaeIntaking);
-                    log("Algae/Algae counter", algaeCounter.toString());
-                    log(
-                            "Algae/Disconnected algaeManipulatorMotor " + algaePivotMotor.getDeviceID(),
-                            algaePivotMotor.isConnected());
-                    log(
-                            "Algae/Algae Pivot Stator Current",
-                            algaePivotMotor.getStatorCurrent().getValueAsDouble());
-                    log(
-                            "Algae/Algae Pivot Supply Current",
-                            algaePivotMotor.getSupplyCurrent().getValueAsDouble());
-                    log(
-                            "Algae/Algae Pivot Stall Current",
-                            algaePivotMotor.getMotorStallCurrent().getValueAsDouble());
-                });
+        PIVOT_POSITION_KEY.log(getPivotPosValue());
+        ALGAE_STATE_KEY.log(algaePivotState.toString());
+        INTAKING_KEY.log(algaeIntaking);
+        ALGAE_COUNTER_KEY.log(algaeCounter.toString());
+        PIVOT_CONNECTED_KEY.log(algaePivotMotor.isConnected());
+        PIVOT_STATOR_CURRENT_KEY.log(SignalPingu.get(statorCurrentSignal));
+        PIVOT_SUPPLY_CURRENT_KEY.log(SignalPingu.get(supplyCurrentSignal));
+        PIVOT_STALL_CURRENT_KEY.log(SignalPingu.get(stallCurrentSignal));
+        PERIODIC_TIMER.stop();
     }
 
     /**
@@ -145,7 +172,7 @@ public class Algae extends SubsystemBase {
      * @return double, the position of the end effector motor
      */
     public double getPivotPosValue() {
-        return algaePivotMotor.getPosition().getValueAsDouble();
+        return SignalPingu.get(positionSignal);
     }
 
 //    public void setIntakeSpeed(AlgaePivotState state) {
@@ -16,6 +16,7 @@ import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.utils.RobotParameters.CoralManipulatorParameters;
 import frc.robot.utils.pingu.*;
+import frc.robot.utils.pingu.PerfPingu.PerfTimer;
 
 public class Coral extends SubsystemBase {
   private final TalonFX coralFeederMotor;
@@ -29,6 +30,19 @@ public class Coral extends SubsystemBase {
 
   private boolean motorsRunning = false;
 
+  // Log keys
+  private static final BooleanKey CORAL_SENSOR_KEY =
+      new BooleanKey("Coral/Coral Sensor", LogPolicy.onChange());
+  private static final BooleanKey HAS_PIECE_KEY =
+      new BooleanKey("Coral/Has Piece", LogPolicy.onChange());
+  private static final BooleanKey CORAL_SCORING_KEY =
+      new BooleanKey("Coral/Coral Scoring", LogPolicy.onChange());
+  private static final BooleanKey MOTORS_RUNNING_KEY =
+      new BooleanKey("Coral/motorsRunning", LogPolicy.onChange());
+  private static final StringKey CORAL_STATE_KEY =
+      new StringKey("Coral/Coral State", LogPolicy.onChange());
+  private static final PerfTimer PERIODIC_TIMER = new PerfTimer("Subsystems/Coral");
+
   /**
    * The Singleton instance of this CoralManipulatorSubsystem. Code should use the {@link
    * #getInstance()} method to get the single instance (rather than trying to construct an instance
@@ -126,6 +140,7 @@ public class Coral extends SubsystemBase {
    */
   @Override
   public void periodic() {
+    PERIODIC_TIMER.start();
     voltageOutFeeder.Output = 5;
     coralFeederMotor.setControl(voltageOutFeeder);
     starFeederMotor.setControl(voltageOutFeeder);
@@ -145,16 +160,14 @@ public class Coral extends SubsystemBase {
       }
     }
 
-    logs(
-        () -> {
-          log("Coral/Coral Sensor", getCoralSensor());
-          log("Coral/Has Piece", hasPiece);
-          log("Coral/Coral Scoring", coralScoring);
-          log("Coral/motorsRunning", this.motorsRunning);
-          log("Coral/Coral State", coralState.toString());
-        });
+    CORAL_SENSOR_KEY.log(getCoralSensor());
+    HAS_PIECE_KEY.log(hasPiece);
+    CORAL_SCORING_KEY.log(coralScoring);
+    MOTORS_RUNNING_KEY.log(this.motorsRunning);
+    CORAL_STATE_KEY.log(coralState.toString());
 
     coralState.block.run();
+    PERIODIC_TIMER.stop();
   }
 
   /** Stops the coral manipulator motors */
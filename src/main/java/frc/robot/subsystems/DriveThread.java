@@ -0,0 +1,419 @@
+package frc.robot.subsystems;
+
+import static edu.wpi.first.math.geometry.Rotation2d.*;
+import static edu.wpi.first.math.util.Units.*;
+import static frc.robot.utils.RobotParameters.MotorParameters.*;
+import static frc.robot.utils.RobotParameters.SwerveParameters.PhysicalParameters.*;
+import static frc.robot.utils.RobotParameters.SwerveParameters.Thresholds.*;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.hardware.Pigeon2;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Threads;
+import frc.robot.utils.pingu.MailboxPingu;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The DriveThread class runs the swerve drive on a dedicated real-time priority thread. Every
+ * cycle it blocks on the synchronized Phoenix 6 status signals at {@code ODOMETRY_FREQUENCY},
+ * queues a timestamped odometry sample for the main loop to drain into the pose estimators, and
+ * then turns the latest drive request into module setpoints and sends them.
+ *
+ * <p>Commands never touch the modules directly. {@link Swerve} publishes drive requests into a
+ * mailbox that this thread reads every cycle, so a slow command or a long main loop can never
+ * delay the motor outputs, and the control request objects of the modules are only ever used from
+ * this thread.
+ *
+ * <p>At full speed the robot moves ~11 cm between 50 Hz samples, so sampling faster than the main
+ * loop keeps the odometry accurate during fast approaches.
+ */
+public class DriveThread extends Thread {
+  /** Callback used to hand a single odometry sample to the consumer. */
+  @FunctionalInterface
+  public interface SampleConsumer {
+    /**
+     * Accepts a single odometry sample.
+     *
+     * @param timestamp The FPGA timestamp of the sample in seconds, compensated for CAN latency.
+     * @param yawDegrees The pidgey yaw in degrees.
+     * @param positions The positions of the swerve modules, in kinematics order.
+     */
+    void accept(double timestamp, double yawDegrees, SwerveModulePosition[] positions);
+  }
+
+  /** What a drive request asks the modules to do. */
+  private enum DriveMode {
+    /** Drive at chassis speeds. */
+    SPEEDS,
+    /** Drive each module at a given speed and angle. */
+    MODULE_STATES,
+    /** Stop every module. */
+    STOP
+  }
+
+  /** A drive request passed from the main loop through the mailbox. Reused, never reallocated. */
+  private static class DriveRequest {
+    private DriveMode mode = DriveMode.STOP;
+    private double vx;
+    private double vy;
+    private double omega;
+    private boolean fieldRelative;
+    private boolean discretize;
+    private final double[] speeds;
+    private final double[] angles;
+    private double timestamp = Double.NEGATIVE_INFINITY;
+
+    private DriveRequest(int moduleCount) {
+      speeds = new double[moduleCount];
+      angles = new double[moduleCount];
+    }
+  }
+
+  /** A single timestamped odometry sample. Samples are preallocated and reused by the queue. */
+  private static class Sample {
+    private double timestamp;
+    private double yawDegrees;
+    private final SwerveModulePosition[] positions;
+
+    private Sample(int moduleCount) {
+      positions = new SwerveModulePosition[moduleCount];
+      for (int i = 0; i < moduleCount; i++) {
+        positions[i] = new SwerveModulePosition();
+      }
+    }
+  }
+
+  private final SwerveModule[] modules;
+  private final BaseStatusSignal[] signals;
+  private final int moduleCount;
+  private final Sample[] queue;
+
+  // The sample queue is lock-free so this thread can never wait on the main loop's drain
+  private final AtomicLong head = new AtomicLong(0);
+  private final AtomicLong tail = new AtomicLong(0);
+  private volatile long droppedSamples = 0;
+  private volatile long failedWaits = 0;
+
+  // Requests from the main loop, and the setpoints sent back to it
+  private final MailboxPingu<DriveRequest> requests;
+  private final MailboxPingu<double[]> setpoints;
+
+  // Owned by this thread, in kinematics order
+  private final double[] desiredSpeeds;
+  private final double[] desiredAngles;
+  private boolean stopped = true;
+  private double lastYawDegrees = 0.0;
+
+  /**
+   * Creates a new DriveThread. The drive position and CANcoder signals of every module and the
+   * pidgey yaw are set to update at {@code ODOMETRY_FREQUENCY}, and this thread reads clones of
+   * them.
+   *
+   * @param modules The swerve modules to sample and drive, in kinematics order.
+   * @param pidgey The Pigeon2 IMU to sample the yaw from.
+   */
+  public DriveThread(SwerveModule[] modules, Pigeon2 pidgey) {
+    this.modules = modules;
+    moduleCount = modules.length;
+
+    // Signals are laid out as [drive positions..., CANcoder positions..., yaw]. StatusSignal is not
+    // thread safe and the main loop refreshes the devices' cached signals through SignalPingu, so
+    // this thread waits on its own clones, the way CTRE's odometry thread does
+    signals = new BaseStatusSignal[moduleCount * 2 + 1];
+    for (int i = 0; i < moduleCount; i++) {
+      signals[i] = modules[i].getDrivePositionSignal().clone();
+      signals[moduleCount + i] = modules[i].getAbsolutePositionSignal().clone();
+    }
+    signals[moduleCount * 2] = pidgey.getYaw().clone();
+
+    BaseStatusSignal.setUpdateFrequencyForAll(ODOMETRY_FREQUENCY, signals);
+
+    queue = new Sample[ODOMETRY_QUEUE_SIZE];
+    for (int i = 0; i < queue.length; i++) {
+      queue[i] = new Sample(moduleCount);
+    }
+
+    requests = new MailboxPingu<>(() -> new DriveRequest(moduleCount));
+    setpoints = new MailboxPingu<>(() -> new double[moduleCount * 2]);
+    desiredSpeeds = new double[moduleCount];
+    desiredAngles = new double[moduleCount];
+
+    setName("DriveThread");
+    setDaemon(true);
+  }
+
+  /**
+   * Waits for every signal to update together, queues the resulting sample, and drives the modules
+   * from the latest request.
+   */
+  @Override
+  public void run() {
+    Threads.setCurrentThreadPriority(true, DRIVE_THREAD_PRIORITY);
+
+    while (!isInterrupted()) {
+      StatusCode status = BaseStatusSignal.waitForAll(2.0 / ODOMETRY_FREQUENCY, signals);
+      double now = RobotController.getFPGATime() / 1e6;
+      if (!status.isOK()) {
+        // A timeout or CAN error: skip the sample, but keep driving from the last good yaw so the
+        // request timeout can still stop the modules
+        failedWaits++;
+        control(requests.read(), now, lastYawDegrees);
+
+        // Some errors return at once, do not spin on them
+        try {
+          Thread.sleep((long) Math.ceil(1000.0 / ODOMETRY_FREQUENCY));
+        } catch (InterruptedException e) {
+          return;
+        }
+        continue;
+      }
+
+      // Compensate the sample time for the average CAN latency of the signals
+      double totalLatency = 0.0;
+      for (BaseStatusSignal signal : signals) {
+        totalLatency += signal.getTimestamp().getLatency();
+      }
+      double timestamp = now - totalLatency / signals.length;
+      double yawDegrees = signals[moduleCount * 2].getValueAsDouble();
+      lastYawDegrees = yawDegrees;
+
+      long t = tail.get();
+      if (t - head.get() == queue.length) {
+        // Drop the newest sample rather than wait for the main loop, the next one covers the motion
+        droppedSamples++;
+      } else {
+        Sample sample = queue[(int) (t % queue.length)];
+        sample.timestamp = timestamp;
+        sample.yawDegrees = yawDegrees;
+        for (int i = 0; i < moduleCount; i++) {
+          sample.positions[i].distanceMeters =
+              signals[i].getValueAsDouble() / DRIVE_MOTOR_GEAR_RATIO * METERS_PER_REV;
+          sample.positions[i].angle = fromRotations(signals[moduleCount + i].getValueAsDouble());
+        }
+        tail.lazySet(t + 1);
+      }
+
+      control(requests.read(), now, yawDegrees);
+    }
+  }
+
+  /**
+   * Turns a drive request into module setpoints and sends them. A request that has not been
+   * refreshed within {@code DRIVE_REQUEST_TIMEOUT} stops the modules, so the robot cannot keep
+   * driving on an old request if the main loop stalls.
+   *
+   * @param request The latest drive request.
+   * @param now The current FPGA timestamp in seconds.
+   * @param yawDegrees The pidgey yaw sampled this cycle, in degrees.
+   */
+  private void control(DriveRequest request, double now, double yawDegrees) {
+    if (request.mode == DriveMode.STOP || now - request.timestamp > DRIVE_REQUEST_TIMEOUT) {
+      if (!stopped) {
+        for (SwerveModule module : modules) {
+          module.stop();
+        }
+        stopped = true;
+      }
+      return;
+    }
+    stopped = false;
+
+    if (request.mode == DriveMode.MODULE_STATES) {
+      System.arraycopy(request.speeds, 0, desiredSpeeds, 0, moduleCount);
+      System.arraycopy(request.angles, 0, desiredAngles, 0, moduleCount);
+    } else {
+      // Converts to a measure that the robot aktualy understands
+      double vx = request.vx;
+      double vy = request.vy;
+      if (request.fieldRelative) {
+        double yaw = degreesToRadians(yawDegrees);
+        double cos = Math.cos(yaw);
+        double sin = Math.sin(yaw);
+        vx = request.vx * cos + request.vy * sin;
+        vy = -request.vx * sin + request.vy * cos;
+      }
+
+      if (request.discretize) {
+        discretizeAndConvert(vx, vy, request.omega, 1.0 / ODOMETRY_FREQUENCY);
+        desaturateSpeeds();
+      } else {
+        toModuleStates(vx, vy, request.omega);
+      }
+    }
+
+    for (int i = 0; i < moduleCount; i++) {
+      modules[i].setState(
+          desiredSpeeds[i], desiredAngles[i], signals[moduleCount + i].getValueAsDouble());
+    }
+
+    double[] published = setpoints.write();
+    System.arraycopy(desiredSpeeds, 0, published, 0, moduleCount);
+    System.arraycopy(desiredAngles, 0, published, moduleCount, moduleCount);
+    setpoints.publish();
+  }
+
+  /**
+   * Discretizes chassis speeds the same as {@link
+   * edu.wpi.first.math.kinematics.ChassisSpeeds#discretize}, then converts them into module
+   * states. This compensates for the robot translating while it rotates over a single cycle.
+   *
+   * @param vx The robot relative forward speed in meters per second.
+   * @param vy The robot relative left speed in meters per second.
+   * @param omega The rotational speed in radians per second.
+   * @param dtSeconds The duration of the cycle in seconds.
+   */
+  private void discretizeAndConvert(double vx, double vy, double omega, double dtSeconds) {
+    double dx = vx * dtSeconds;
+    double dy = vy * dtSeconds;
+    double dtheta = omega * dtSeconds;
+
+    // Twist of the pose exponential, see Pose2d.log
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1.0;
+    double halfThetaByTanOfHalfDtheta =
+        Math.abs(cosMinusOne) < 1e-9
+            ? 1.0 - dtheta * dtheta / 12.0
+            : -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+
+    toModuleStates(
+        (dx * halfThetaByTanOfHalfDtheta + dy * halfDtheta) / dtSeconds,
+        (-dx * halfDtheta + dy * halfThetaByTanOfHalfDtheta) / dtSeconds,
+        omega);
+  }
+
+  /**
+   * Inverse kinematics for our four modules into {@link #desiredSpeeds} and {@link #desiredAngles}.
+   * Matches {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics#toSwerveModuleStates} for
+   * the fixed module offsets in {@code PhysicalParameters}, including keeping the last angles when
+   * the robot is told to stand still.
+   *
+   * @param vx The robot relative forward speed in meters per second.
+   * @param vy The robot relative left speed in meters per second.
+   * @param omega The rotational speed in radians per second.
+   */
+  private void toModuleStates(double vx, double vy, double omega) {
+    if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+      for (int i = 0; i < moduleCount; i++) {
+        desiredSpeeds[i] = 0.0;
+      }
+      return;
+    }
+
+    for (int i = 0; i < moduleCount; i++) {
+      double moduleVx = vx - omega * MODULE_Y[i];
+      double moduleVy = vy + omega * MODULE_X[i];
+      desiredSpeeds[i] = Math.hypot(moduleVx, moduleVy);
+      desiredAngles[i] = Math.atan2(moduleVy, moduleVx) / (2.0 * Math.PI);
+    }
+  }
+
+  /** Scales {@link #desiredSpeeds} down so that no module is asked to go faster than MAX_SPEED. */
+  private void desaturateSpeeds() {
+    double fastest = 0.0;
+    for (double speed : desiredSpeeds) {
+      fastest = Math.max(fastest, Math.abs(speed));
+    }
+
+    if (fastest > MAX_SPEED) {
+      for (int i = 0; i < moduleCount; i++) {
+        desiredSpeeds[i] = desiredSpeeds[i] / fastest * MAX_SPEED;
+      }
+    }
+  }
+
+  /**
+   * Requests the robot drive at chassis speeds. Must only be called from the main thread.
+   *
+   * @param vx The forward speed in meters per second.
+   * @param vy The left speed in meters per second.
+   * @param omega The rotational speed in radians per second.
+   * @param fieldRelative Whether the speeds are field relative, using the latest sampled yaw.
+   * @param discretize Whether to discretize and desaturate the speeds.
+   */
+  public void requestSpeeds(
+      double vx, double vy, double omega, boolean fieldRelative, boolean discretize) {
+    DriveRequest request = requests.write();
+    request.mode = DriveMode.SPEEDS;
+    request.vx = vx;
+    request.vy = vy;
+    request.omega = omega;
+    request.fieldRelative = fieldRelative;
+    request.discretize = discretize;
+    request.timestamp = RobotController.getFPGATime() / 1e6;
+    requests.publish();
+  }
+
+  /**
+   * Requests each module drive at a given speed and angle. Must only be called from the main
+   * thread.
+   *
+   * @param speeds The speeds of the modules in meters per second, in kinematics order.
+   * @param angles The angles of the modules in rotations, in kinematics order.
+   */
+  public void requestModuleStates(double[] speeds, double[] angles) {
+    DriveRequest request = requests.write();
+    request.mode = DriveMode.MODULE_STATES;
+    System.arraycopy(speeds, 0, request.speeds, 0, moduleCount);
+    System.arraycopy(angles, 0, request.angles, 0, moduleCount);
+    request.timestamp = RobotController.getFPGATime() / 1e6;
+    requests.publish();
+  }
+
+  /** Requests every module stop. Must only be called from the main thread. */
+  public void requestStop() {
+    DriveRequest request = requests.write();
+    request.mode = DriveMode.STOP;
+    request.timestamp = RobotController.getFPGATime() / 1e6;
+    requests.publish();
+  }
+
+  /**
+   * Copies the setpoints last sent to the modules, before optimization. Must only be called from
+   * the main thread.
+   *
+   * @param speeds The array to copy the module speeds into, in meters per second.
+   * @param angles The array to copy the module angles into, in rotations.
+   */
+  public void getSetpoints(double[] speeds, double[] angles) {
+    double[] published = setpoints.read();
+    System.arraycopy(published, 0, speeds, 0, moduleCount);
+    System.arraycopy(published, moduleCount, angles, 0, moduleCount);
+  }
+
+  /**
+   * Hands every queued sample to the consumer, oldest first, and empties the queue.
+   *
+   * @param consumer The consumer to hand each sample to.
+   * @return int, The number of samples drained.
+   */
+  public int drain(SampleConsumer consumer) {
+    long h = head.get();
+    long t = tail.get();
+    for (long i = h; i < t; i++) {
+      Sample sample = queue[(int) (i % queue.length)];
+      consumer.accept(sample.timestamp, sample.yawDegrees, sample.positions);
+    }
+    head.lazySet(t);
+    return (int) (t - h);
+  }
+
+  /**
+   * Gets the number of samples dropped because the main loop did not drain the queue in time.
+   *
+   * @return long, The number of dropped samples.
+   */
+  public long getDroppedSamples() {
+    return droppedSamples;
+  }
+
+  /**
+   * Gets the number of cycles the signals did not update, from a timeout or a CAN error.
+   *
+   * @return long, The number of failed signal waits.
+   */
+  public long getFailedWaits() {
+    return failedWaits;
+  }
+}
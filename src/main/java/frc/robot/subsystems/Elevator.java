@@ -3,6 +3,8 @@ package frc.robot.subsystems;
 import static com.ctre.phoenix6.signals.InvertedValue.*;
 import static frc.robot.utils.ExtensionsKt.*;
 import static frc.robot.utils.RobotParameters.ElevatorParameters.*;
+import static frc.robot.utils.RobotParameters.LoggingParameters.LOG_CURRENT_RATE;
+import static frc.robot.utils.RobotParameters.LoggingParameters.LOG_POSITION_EPSILON;
 import static frc.robot.utils.RobotParameters.MotorParameters.*;
 import static frc.robot.utils.emu.ElevatorMotor.*;
 import static frc.robot.utils.pingu.LogPingu.*;
@@ -15,6 +17,7 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.utils.RobotParameters.*;
 import frc.robot.utils.emu.*;
 import frc.robot.utils.pingu.*;
+import frc.robot.utils.pingu.PerfPingu.PerfTimer;
 import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
 
 /**
@@ -55,6 +58,48 @@ public class Elevator extends SubsystemBase {
 
   private final DutyCycleOut cycleOut;
 
+  // Log keys
+  private static final DoubleKey LEFT_POSITION_KEY =
+      new DoubleKey("Elevator/Elevator Left Position", LogPolicy.onChange(LOG_POSITION_EPSILON));
+  private static final DoubleKey RIGHT_POSITION_KEY =
+      new DoubleKey("Elevator/Elevator Right Position", LogPolicy.onChange(LOG_POSITION_EPSILON));
+  private static final DoubleKey LEFT_SET_SPEED_KEY =
+      new DoubleKey("Elevator/Elevator Left Set Speed");
+  private static final DoubleKey RIGHT_SET_SPEED_KEY =
+      new DoubleKey("Elevator/Elevator Right Set Speed");
+  private static final DoubleKey LEFT_ACCELERATION_KEY =
+      new DoubleKey("Elevator/Elevator Left Acceleration");
+  private static final DoubleKey RIGHT_ACCELERATION_KEY =
+      new DoubleKey("Elevator/Elevator Right Acceleration");
+  private static final DoubleKey SUPPLY_VOLTAGE_KEY =
+      new DoubleKey("Elevator/Elevator Supply Voltage", LogPolicy.rate(LOG_CURRENT_RATE));
+  private static final DoubleKey MOTOR_VOLTAGE_KEY =
+      new DoubleKey("Elevator/Elevator Motor Voltage", LogPolicy.rate(LOG_CURRENT_RATE));
+  private static final StringKey STATE_KEY =
+      new StringKey("Elevator/Elevator State", LogPolicy.onChange());
+  private static final StringKey TO_BE_STATE_KEY =
+      new StringKey("Elevator/Elevator To Be State", LogPolicy.onChange());
+  private static final DoubleKey STATOR_CURRENT_KEY =
+      new DoubleKey("Elevator/Elevator Stator Current", LogPolicy.rate(LOG_CURRENT_RATE));
+  private static final DoubleKey SUPPLY_CURRENT_KEY =
+      new DoubleKey("Elevator/Elevator Supply Current", LogPolicy.rate(LOG_CURRENT_RATE));
+  private static final DoubleKey STALL_CURRENT_KEY =
+      new DoubleKey("Elevator/Elevator Stall Current", LogPolicy.rate(LOG_CURRENT_RATE));
+  private static final PerfTimer PERIODIC_TIMER = new PerfTimer("Subsystems/Elevator");
+
+  // Handles into the per-loop signal snapshot
+  private final int leftPositionSignal;
+  private final int rightPositionSignal;
+  private final int leftVelocitySignal;
+  private final int rightVelocitySignal;
+  private final int leftAccelerationSignal;
+  private final int rightAccelerationSignal;
+  private final int supplyVoltageSignal;
+  private final int motorVoltageSignal;
+  private final int statorCurrentSignal;
+  private final int supplyCurrentSignal;
+  private final int stallCurrentSignal;
+
   /**
    * The Singleton instance of this ElevatorSubsystem. Code should use the {@link #getInstance()}
    * method to get the single instance (rather than trying to construct an instance of this class.)
@@ -193,6 +238,18 @@ public class Elevator extends SubsystemBase {
     elevatorLeftConfigurator.apply(motionMagicConfigs);
     elevatorRightConfigurator.apply(motionMagicConfigs);
 
+    leftPositionSignal = SignalPingu.register(elevatorMotorLeft.getPosition());
+    rightPositionSignal = SignalPingu.register(elevatorMotorRight.getPosition());
+    leftVelocitySignal = SignalPingu.register(elevatorMotorLeft.getVelocity());
+    rightVelocitySignal = SignalPingu.register(elevatorMotorRight.getVelocity());
+    leftAccelerationSignal = SignalPingu.register(elevatorMotorLeft.getAcceleration());
+    rightAccelerationSignal = SignalPingu.register(elevatorMotorRight.getAcceleration());
+    supplyVoltageSignal = SignalPingu.register(elevatorMotorLeft.getSupplyVoltage());
+    motorVoltageSignal = SignalPingu.register(elevatorMotorLeft.getMotorVoltage());
+    statorCurrentSignal = SignalPingu.register(elevatorMotorLeft.getStatorCurrent());
+    supplyCurrentSignal = SignalPingu.register(elevatorMotorLeft.getSupplyCurrent());
+    stallCurrentSignal = SignalPingu.register(elevatorMotorLeft.getMotorStallCurrent());
+
     AlertPingu.add(elevatorMotorLeft, "left elevator");
     AlertPingu.add(elevatorMotorRight, "right elevator");
 
@@ -202,49 +259,26 @@ public class Elevator extends SubsystemBase {
   // This method will be called once per scheduler run
   @Override
   public void periodic() {
+    PERIODIC_TIMER.start();
     // THIS IS JUST FOR TESTING, in reality, elevator set state is based on
     // what Jayden clicks which will be displayed on leds but not necessarily = currenState
     //    elevatorSetState = currentState;
     setElevatorPosition(currentState);
 
-    logs(
-        () -> {
-          log(
-              "Elevator/Elevator Left Position",
-              elevatorMotorLeft.getPosition().getValueAsDouble());
-          log(
-              "Elevator/Elevator Right Position",
-              elevatorMotorRight.getPosition().getValueAsDouble());
-          log(
-              "Elevator/Elevator Left Set Speed",
-              elevatorMotorLeft.getVelocity().getValueAsDouble());
-          log(
-              "Elevator/Elevator Right Set Speed",
-              elevatorMotorRight.getVelocity().getValueAsDouble());
-          log(
-              "Elevator/Elevator Left Acceleration",
-              elevatorMotorLeft.getAcceleration().getValueAsDouble());
-          log(
-              "Elevator/Elevator Right Acceleration",
-              elevatorMotorRight.getAcceleration().getValueAsDouble());
-          log(
-              "Elevator/Elevator Supply Voltage",
-              elevatorMotorLeft.getSupplyVoltage().getValueAsDouble());
-          log(
-              "Elevator/Elevator Motor Voltage",
-              elevatorMotorLeft.getMotorVoltage().getValueAsDouble());
-          log("Elevator/Elevator State", currentState.toString());
-          log("Elevator/Elevator To Be State", elevatorToBeSetState.toString());
-          log(
-              "Elevator/Elevator Stator Current",
-              elevatorMotorLeft.getStatorCurrent().getValueAsDouble());
-          log(
-              "Elevator/Elevator Supply Current",
-              elevatorMotorLeft.getSupplyCurrent().getValueAsDouble());
-          log(
-              "Elevator/Elevator Stall Current",
-              elevatorMotorLeft.getMotorStallCurrent().getValueAsDouble());
-        });
+    LEFT_POSITION_KEY.log(SignalPingu.get(leftPositionSignal));
+    RIGHT_POSITION_KEY.log(SignalPingu.get(rightPositionSignal));
+    LEFT_SET_SPEED_KEY.log(SignalPingu.get(leftVelocitySignal));
+    RIGHT_SET_SPEED_KEY.log(SignalPingu.get(rightVelocitySignal));
+    LEFT_ACCELERATION_KEY.log(SignalPingu.get(leftAccelerationSignal));
+    RIGHT_ACCELERATION_KEY.log(SignalPingu.get(rightAccelerationSignal));
+    SUPPLY_VOLTAGE_KEY.log(SignalPingu.get(supplyVoltageSignal));
+    MOTOR_VOLTAGE_KEY.log(SignalPingu.get(motorVoltageSignal));
+    STATE_KEY.log(currentState.toString());
+    TO_BE_STATE_KEY.log(elevatorToBeSetState.toString());
+    STATOR_CURRENT_KEY.log(SignalPingu.get(statorCurrentSignal));
+    SUPPLY_CURRENT_KEY.log(SignalPingu.get(supplyCurrentSignal));
+    STALL_CURRENT_KEY.log(SignalPingu.get(stallCurrentSignal));
+    PERIODIC_TIMER.stop();
   }
 
   /** Stops the elevator motors */
@@ -288,8 +322,8 @@ public class Elevator extends SubsystemBase {
    */
   public double getElevatorPosValue(ElevatorMotor motor) {
     return switch (motor) {
-      case LEFT -> elevatorMotorLeft.getPosition().getValueAsDouble();
-      case RIGHT -> elevatorMotorRight.getPosition().getValueAsDouble();
+      case LEFT -> SignalPingu.get(leftPositionSignal);
+      case RIGHT -> SignalPingu.get(rightPositionSignal);
     };
   }
 
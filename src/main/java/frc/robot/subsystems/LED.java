@@ -1,14 +1,14 @@
 package frc.robot.subsystems;
 
 import static frc.robot.utils.RobotParameters.ElevatorParameters.*;
-import static frc.robot.utils.pingu.LogPingu.log;
-import static frc.robot.utils.pingu.LogPingu.logs;
+import static frc.robot.utils.pingu.LogPingu.*;
 
 import edu.wpi.first.wpilibj.*;
 import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.utils.RobotParameters.*;
 import frc.robot.utils.emu.LEDState;
+import frc.robot.utils.pingu.RatePingu;
 import java.util.ArrayList;
 import java.util.Random;
 
@@ -18,14 +18,28 @@ public class LED extends SubsystemBase {
   private final AddressableLEDBuffer ledBuffer;
   private final int[] brightnessLevels;
 
+  // Log keys
+  private static final StringKey LED_STATE_KEY = new StringKey("LED state");
+  private static final IntKey LED_LENGTH_KEY = new IntKey("LED Length");
+  private static final DoubleKey LED_BLUE_KEY = new DoubleKey("LED Color Blue");
+  private static final DoubleKey LED_RED_KEY = new DoubleKey("LED Color Red");
+  private static final DoubleKey LED_GREEN_KEY = new DoubleKey("LED Color Green");
+
   // Animation Controls
   public LEDState ledState = LEDState.RAINBOW_FLOW;
   private int rainbowFirstHue = 0;
-  private int position = 0;
+  private double position = 0;
   private boolean goingForward = true;
   private final Random rand = new Random();
   private final Timer robonautLEDTimer = new Timer();
 
+  // The stepped patterns were tuned for one step per 50 Hz scheduler run, scale them to LED_RATE
+  private static final double STEP_SCALE = 50 / LEDValues.LED_RATE;
+  private static final int RAINBOW_STEP = (int) Math.round(4 * STEP_SCALE);
+  private static final int TWINKLE_FADE = (int) Math.round(10 * STEP_SCALE);
+  private static final double TWINKLE_CHANCE = 1 - Math.pow(1 - 0.1, STEP_SCALE);
+  private static final int LASER_STEP = (int) Math.round(2 * STEP_SCALE);
+
   // Laser Effect Properties
   private static final int laser_count = 10;
   private static final int spacing = 5;
@@ -64,15 +78,16 @@ public class LED extends SubsystemBase {
     for (int i = 0; i < laser_count; i++) {
       laserPositions.add(-i * spacing);
     }
+
+    // From here on only the LED task thread touches the strip and the animation state
+    RatePingu.schedule("LED", LEDValues.LED_RATE, this::update);
   }
 
   /**
-   * This method will be called once per scheduler run. Updates the LED pattern based on the robot
-   * state.
+   * Updates the LED pattern based on the robot state. Runs on the LED task thread at {@link
+   * LEDValues#LED_RATE} rather than once per scheduler run.
    */
-  @Override
-  public void periodic() {
-
+  private void update() {
     // Enabled Robot
 
     if (DriverStation.isEnabled()) {
@@ -143,7 +158,7 @@ public class LED extends SubsystemBase {
         setRed();
     }
 
-    log("LED state", this.ledState);
+    LED_STATE_KEY.log(this.ledState.toString());
   }
 
   /**
@@ -158,13 +173,11 @@ public class LED extends SubsystemBase {
     for (int i = 0; i < ledBuffer.getLength(); i++) {
       ledBuffer.setRGB(i, r, g, b);
     }
-    logs(
-        () -> {
-          log("LED Length", ledBuffer.getLength());
-          log("LED Color Blue", ledBuffer.getLED(0).blue);
-          log("LED Color Red", ledBuffer.getLED(0).red);
-          log("LED Color Green", ledBuffer.getLED(0).green);
-        });
+    // Read the channels directly, getLED allocates a new Color every call
+    LED_LENGTH_KEY.log(ledBuffer.getLength());
+    LED_BLUE_KEY.log(ledBuffer.getBlue(0) / 255.0);
+    LED_RED_KEY.log(ledBuffer.getRed(0) / 255.0);
+    LED_GREEN_KEY.log(ledBuffer.getGreen(0) / 255.0);
     leds.setData(ledBuffer);
   }
 
@@ -248,7 +261,7 @@ public class LED extends SubsystemBase {
       ledBuffer.setHSV(i, hue, 255, 255);
     }
 
-    rainbowFirstHue = rainbowFirstHue + 4 % 180;
+    rainbowFirstHue = (rainbowFirstHue + RAINBOW_STEP) % 180;
 
     leds.setData(ledBuffer);
   }
@@ -256,10 +269,10 @@ public class LED extends SubsystemBase {
   /** Creates a twinkle where lights flicker at random. */
   public void twinkle() {
     for (int i = 0; i < ledBuffer.getLength(); i++) {
-      if (rand.nextDouble() < 0.1) {
+      if (rand.nextDouble() < TWINKLE_CHANCE) {
         brightnessLevels[i] = rand.nextInt(255);
       } else {
-        brightnessLevels[i] = Math.max(0, brightnessLevels[i] - 10);
+        brightnessLevels[i] = Math.max(0, brightnessLevels[i] - TWINKLE_FADE);
       }
 
       int hue = rand.nextInt(180);
@@ -290,7 +303,7 @@ public class LED extends SubsystemBase {
   /** Funny robonaunts lights */
   public void funnyRobonaunts() {
     for (int i = 0; i < ledBuffer.getLength(); i++) {
-      if (i == position) {
+      if (i == (int) position) {
         ledBuffer.setHSV(i, 45, 255, 255);
       } else {
         ledBuffer.setHSV(i, 45, 255, 50);
@@ -298,10 +311,10 @@ public class LED extends SubsystemBase {
     }
 
     if (goingForward) {
-      position++;
+      position += STEP_SCALE;
       if (position >= ledBuffer.getLength() - 1) goingForward = false;
     } else {
-      position--;
+      position -= STEP_SCALE;
       if (position < 0) goingForward = true;
     }
     leds.setData(ledBuffer);
@@ -318,7 +331,7 @@ public class LED extends SubsystemBase {
       if (pos >= 0 && pos < ledBuffer.getLength()) {
         ledBuffer.setHSV(pos, 0, 255, 0);
       }
-      laserPositions.set(i, pos + 2);
+      laserPositions.set(i, pos + LASER_STEP);
 
       if (laserPositions.get(i) >= ledBuffer.getLength()) {
         laserPositions.set(i, -rand.nextInt(spacing));
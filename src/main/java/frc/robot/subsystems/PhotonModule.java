@@ -1,176 +1,333 @@
 package frc.robot.subsystems;
 
 import static edu.wpi.first.math.VecBuilder.*;
-import static org.photonvision.PhotonPoseEstimator.PoseStrategy.*;
+import static frc.robot.utils.pingu.LogPingu.*;
 
-import edu.wpi.first.apriltag.*;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.geometry.*;
 import edu.wpi.first.math.numbers.*;
 import frc.robot.utils.RobotParameters.*;
+import frc.robot.utils.VisionMeasurement;
+import frc.robot.utils.pingu.PerfPingu.RollingHistogram;
+import frc.robot.utils.pingu.PnPPingu;
 import java.util.*;
+import org.littletonrobotics.junction.Logger;
 import org.photonvision.*;
 import org.photonvision.targeting.*;
 
 /**
- * The CameraModule class represents a single Photonvision camera setup with its associated pose
- * estimator and position information. This class encapsulates all the functionality needed for a
- * single camera to track AprilTags and estimate robot pose.
+ * The CameraModule class represents a single Photonvision camera setup with its position
+ * information. This class encapsulates all the functionality needed for a single camera to track
+ * AprilTags and estimate robot pose.
+ *
+ * <p>The camera is read through a {@link VisionIO}, and its inputs are logged with AdvantageKit
+ * every loop. The IO solves each result off the main loop and logs the solved observations with
+ * it, so the main loop only turns the logged observations into measurements, and replaying a match
+ * log reproduces the same measurements the robot used without solving again.
  */
 public class PhotonModule {
-  private final PhotonCamera camera;
-  private final PhotonPoseEstimator photonPoseEstimator;
+  private final VisionIO io;
+  private final VisionIOInputsAutoLogged inputs = new VisionIOInputsAutoLogged();
+  private final String inputsKey;
   private final Transform3d cameraPos;
+  private final double[] extrinsics;
+
   private Matrix<N3, N1> currentStdDev;
   private Matrix<N4, N1> currentStdDev3d;
+  private double lastResultTimestamp = 0.0;
+  private long resultsReceived = 0;
+  private long resultsWithoutTargets = 0;
+  private long resultsStale = 0;
+  private long resultsUsed = 0;
+  private long lastSolveNanos = 0;
+
+  // Built from the logged calibration once the camera has published it
+  private double[] intrinsics;
+
+  // Rolling windows of the pipeline latency and capture to fusion age of results, in microseconds
+  private final RollingHistogram latencyHistogram =
+      new RollingHistogram(PhotonVisionConstants.VISION_METRICS_WINDOW);
+  private final RollingHistogram ageHistogram =
+      new RollingHistogram(PhotonVisionConstants.VISION_METRICS_WINDOW);
+  private double lastMetricsReport = 0.0;
+  private long lastReportReceived = 0;
+  private long lastReportUsed = 0;
+
+  // Log keys
+  private final DoubleKey stdDevKey;
+  private final DoubleKey resultsReceivedKey;
+  private final DoubleKey resultsUsedKey;
+  private final DoubleKey resultsWithoutTargetsKey;
+  private final DoubleKey resultsStaleKey;
+  private final DoubleKey resultsDroppedKey;
+  private final DoubleKey solveTimeKey;
+  private final DoubleKey latencyP50Key;
+  private final DoubleKey latencyP99Key;
+  private final DoubleKey latencyMaxKey;
+  private final DoubleKey ageP50Key;
+  private final DoubleKey ageP99Key;
+  private final DoubleKey ageMaxKey;
+  private final DoubleKey receivedRateKey;
+  private final DoubleKey usedRateKey;
 
   /**
    * Creates a new CameraModule with the specified parameters.
    *
-   * @param cameraName The name of the camera in the Photonvision interface
+   * @param io The hardware layer of the camera
    * @param cameraPos The 3D transform representing the camera's position relative to the robot
-   * @param fieldLayout The AprilTag field layout used for pose estimation
    */
-  public PhotonModule(String cameraName, Transform3d cameraPos, AprilTagFieldLayout fieldLayout) {
-    this.camera = new PhotonCamera(cameraName);
+  public PhotonModule(VisionIO io, Transform3d cameraPos) {
+    this.io = io;
+    this.inputsKey = "Vision/" + io.getName();
     this.cameraPos = cameraPos;
-    this.photonPoseEstimator =
-        new PhotonPoseEstimator(fieldLayout, MULTI_TAG_PNP_ON_COPROCESSOR, cameraPos);
-    photonPoseEstimator.setMultiTagFallbackStrategy(
-        PhotonPoseEstimator.PoseStrategy.LOWEST_AMBIGUITY);
+    this.extrinsics = PnPPingu.extrinsics(cameraPos);
+
+    String logPrefix = "Photonvision/Camera " + io.getName();
+    this.stdDevKey = new DoubleKey(logPrefix + " Std Dev NormF");
+    this.resultsReceivedKey = new DoubleKey(logPrefix + " Results Received");
+    this.resultsUsedKey = new DoubleKey(logPrefix + " Results Used");
+    this.resultsWithoutTargetsKey = new DoubleKey(logPrefix + " Results Without Targets");
+    this.resultsStaleKey = new DoubleKey(logPrefix + " Results Stale");
+    this.resultsDroppedKey = new DoubleKey(logPrefix + " Results Dropped");
+    this.solveTimeKey = new DoubleKey(logPrefix + " Solve Time (ms)");
+    this.latencyP50Key = new DoubleKey(logPrefix + " Latency/p50 (ms)");
+    this.latencyP99Key = new DoubleKey(logPrefix + " Latency/p99 (ms)");
+    this.latencyMaxKey = new DoubleKey(logPrefix + " Latency/max (ms)");
+    this.ageP50Key = new DoubleKey(logPrefix + " Frame Age/p50 (ms)");
+    this.ageP99Key = new DoubleKey(logPrefix + " Frame Age/p99 (ms)");
+    this.ageMaxKey = new DoubleKey(logPrefix + " Frame Age/max (ms)");
+    this.receivedRateKey = new DoubleKey(logPrefix + " Received Rate (Hz)");
+    this.usedRateKey = new DoubleKey(logPrefix + " Used Rate (Hz)");
   }
 
   /**
-   * Gets all unread pipeline results from the camera.
+   * Reads and logs the inputs of the camera, then turns the logged observation of every accepted
+   * result since the last loop into a measurement. Must only be called from the main loop.
    *
-   * @return A list of PhotonPipelineResult objects containing the latest vision processing results
+   * @param measurements The list to add the measurements to.
    */
-  public List<PhotonPipelineResult> getAllUnreadResults() {
-    return camera.getAllUnreadResults();
+  public void update(List<VisionMeasurement> measurements) {
+    io.updateInputs(inputs);
+    Logger.processInputs(inputsKey, inputs);
+    lastSolveNanos = inputs.solveNanos;
+
+    double now = Logger.getTimestamp() / 1e6;
+    List<PhotonPipelineResult> results = VisionIO.unpack(inputs);
+    for (int i = 0; i < results.size(); i++) {
+      PhotonPipelineResult result = results.get(i);
+      latencyHistogram.add((long) (result.metadata.getLatencyMillis() * 1e3));
+      if (!acceptResult(result, now)) continue;
+
+      // The measurement reaches the pose estimators in this same loop
+      ageHistogram.add((long) ((now - result.getTimestampSeconds()) * 1e6));
+      measurements.add(observation(result, i));
+    }
   }
 
   /**
-   * Gets the pose estimator associated with this camera.
+   * Builds the measurement of a result from the observation logged with it.
    *
-   * @return PhotonPoseEstimator, The PhotonPoseEstimator object used for robot pose estimation
+   * @param result The unpacked pipeline result.
+   * @param index The index of the result in the inputs.
+   * @return VisionMeasurement, The solved result.
    */
-  public PhotonPoseEstimator getPoseEstimator() {
-    return photonPoseEstimator;
+  private VisionMeasurement observation(PhotonPipelineResult result, int index) {
+    EstimatedRobotPose pose = null;
+    if (inputs.solved[index]) {
+      pose =
+          new EstimatedRobotPose(
+              inputs.poses[index],
+              result.getTimestampSeconds(),
+              result.getTargets(),
+              PhotonPoseEstimator.PoseStrategy.values()[inputs.strategies[index]]);
+    }
+
+    double[] stdDevs = inputs.stdDevs;
+    double[] stdDevs3d = inputs.stdDevs3d;
+    int offset = index * 3;
+    int offset3d = index * 4;
+    currentStdDev = fill(stdDevs[offset], stdDevs[offset + 1], stdDevs[offset + 2]);
+    currentStdDev3d =
+        fill(
+            stdDevs3d[offset3d],
+            stdDevs3d[offset3d + 1],
+            stdDevs3d[offset3d + 2],
+            stdDevs3d[offset3d + 3]);
+    return new VisionMeasurement(this, result, pose, currentStdDev, currentStdDev3d);
   }
 
   /**
-   * Gets the camera's position relative to the robot.
+   * Checks if a pipeline result should be fed to the pose estimator and counts it. Results without
+   * targets, results that are not newer than the last accepted result from this camera, and results
+   * older than {@code MAX_RESULT_AGE} are rejected.
    *
-   * @return {@link Transform3d}, The {@link Transform3d} representing the camera's position
+   * @param result The pipeline result to check.
+   * @param now The current FPGA timestamp in seconds.
+   * @return boolean, Whether the result should be used for pose estimation.
    */
-  public Transform3d getCameraPosition() {
-    return cameraPos;
+  public boolean acceptResult(PhotonPipelineResult result, double now) {
+    resultsReceived++;
+    if (!result.hasTargets()) {
+      resultsWithoutTargets++;
+      return false;
+    }
+
+    double timestamp = result.getTimestampSeconds();
+    boolean tooOld = now - timestamp > PhotonVisionConstants.MAX_RESULT_AGE;
+    if (timestamp <= lastResultTimestamp || tooOld) {
+      resultsStale++;
+      return false;
+    }
+
+    lastResultTimestamp = timestamp;
+    resultsUsed++;
+    return true;
   }
 
   /**
-   * Updates the estimated standard deviations based on the provided estimated pose and list of
-   * tracked targets.
+   * Gets the number of pipeline results received from this camera.
    *
-   * <p>This method calculates the number of visible tags and their average distance to the
-   * estimated pose. It then uses this information to adjust the standard deviations used for robot
-   * pose estimation.
+   * @return long, The number of results received.
+   */
+  public long getResultsReceived() {
+    return resultsReceived;
+  }
+
+  /**
+   * Gets the number of pipeline results from this camera that had no targets.
    *
-   * @param estimatedPose An Optional containing the estimated robot pose.
-   * @param targets A list of PhotonTrackedTarget objects representing the tracked targets.
+   * @return long, The number of results without targets.
    */
-  public void updateEstimatedStdDevs(
-      Optional<EstimatedRobotPose> estimatedPose, List<PhotonTrackedTarget> targets) {
-    if (estimatedPose.isEmpty()) {
-      currentStdDev = PhotonVisionConstants.SINGLE_TARGET_STD_DEV;
-      return;
-    }
-    int numTags = 0;
-    double totalDistance = 0;
-
-    // Calculate the number of visible tags and their average distance to the estimated pose
-    for (var target : targets) {
-      var tagPoseOptional = photonPoseEstimator.getFieldTags().getTagPose(target.getFiducialId());
-      if (tagPoseOptional.isEmpty()) continue;
-
-      numTags++;
-      var tagPose = tagPoseOptional.get().toPose2d().getTranslation();
-      var estimatedTranslation = estimatedPose.get().estimatedPose.toPose2d().getTranslation();
-      totalDistance += tagPose.getDistance(estimatedTranslation);
-    }
+  public long getResultsWithoutTargets() {
+    return resultsWithoutTargets;
+  }
 
-    if (numTags == 0) {
-      currentStdDev = PhotonVisionConstants.SINGLE_TARGET_STD_DEV;
-      return;
-    }
+  /**
+   * Gets the number of pipeline results from this camera dropped for being out of order or too old.
+   *
+   * @return long, The number of stale results.
+   */
+  public long getResultsStale() {
+    return resultsStale;
+  }
 
-    double avgDistance = totalDistance / numTags;
-    var stdDevs =
-        (numTags > 1)
-            ? PhotonVisionConstants.MULTI_TARGET_STD_DEV
-            : PhotonVisionConstants.SINGLE_TARGET_STD_DEV;
+  /**
+   * Gets the number of pipeline results from this camera handed to the pose estimator.
+   *
+   * @return long, The number of used results.
+   */
+  public long getResultsUsed() {
+    return resultsUsed;
+  }
 
-    if (numTags == 1 && avgDistance > 4) {
-      currentStdDev = fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-    } else {
-      currentStdDev = stdDevs.times(1 + (avgDistance * avgDistance / 30));
+  /**
+   * Gets the number of pipeline results dropped because the main loop did not keep up with the
+   * camera reader.
+   *
+   * @return long, The number of dropped results.
+   */
+  public long getResultsDropped() {
+    return inputs.resultsDropped;
+  }
+
+  /** Logs the normF value of the current standard deviations, if there are any yet. */
+  public void logStdDev() {
+    Matrix<N3, N1> stdDev = currentStdDev;
+    if (stdDev != null) {
+      stdDevKey.log(stdDev.normF());
     }
   }
 
+  /** Logs how many pipeline results this camera has sent and what happened to them. */
+  public void logResultCounts() {
+    resultsReceivedKey.log(resultsReceived);
+    resultsUsedKey.log(resultsUsed);
+    resultsWithoutTargetsKey.log(resultsWithoutTargets);
+    resultsStaleKey.log(resultsStale);
+    resultsDroppedKey.log(inputs.resultsDropped);
+  }
+
+  /**
+   * Logs how long the last result took to solve on its own on the camera's reader thread, to
+   * compare against the fused solve.
+   */
+  public void logSolveTime() {
+    solveTimeKey.log(lastSolveNanos / 1e6);
+  }
+
   /**
-   * Updates the estimated standard deviations based on the provided estimated pose and list of
-   * tracked targets. This method calculates the number of visible tags and their average 3D
-   * distance to the estimated pose. It then uses this information to adjust the standard deviations
-   * used for robot pose estimation.
+   * Logs the percentiles of the pipeline latency and the age of the results when they reach the
+   * pose estimators, and how many results per second were received and used. Reported once per
+   * {@code VISION_REPORT_PERIOD}, so a slow camera can be told apart from a slow robot loop.
+   */
+  public void logMetrics() {
+    double now = Logger.getTimestamp() / 1e6;
+    double elapsed = now - lastMetricsReport;
+    if (elapsed < PhotonVisionConstants.VISION_REPORT_PERIOD) return;
+
+    receivedRateKey.log((resultsReceived - lastReportReceived) / elapsed);
+    usedRateKey.log((resultsUsed - lastReportUsed) / elapsed);
+    logPercentiles(latencyHistogram, latencyP50Key, latencyP99Key, latencyMaxKey);
+    logPercentiles(ageHistogram, ageP50Key, ageP99Key, ageMaxKey);
+    lastReportReceived = resultsReceived;
+    lastReportUsed = resultsUsed;
+    lastMetricsReport = now;
+  }
+
+  /**
+   * Logs the p50, p99, and max of a histogram of microseconds in milliseconds, if it has samples.
+   */
+  private static void logPercentiles(
+      RollingHistogram histogram, DoubleKey p50Key, DoubleKey p99Key, DoubleKey maxKey) {
+    if (histogram.sort() == 0) return;
+
+    p50Key.log(histogram.percentile(0.5) / 1e3);
+    p99Key.log(histogram.percentile(0.99) / 1e3);
+    maxKey.log(histogram.max() / 1e3);
+  }
+
+  /**
+   * Gets the extrinsics of this camera for the fused solver.
    *
-   * @param estimatedPose
-   * @param targets
+   * @return double[], The extrinsics from {@link PnPPingu#extrinsics(Transform3d)}.
    */
-  public void updateEstimatedStdDevs3d(
-      Optional<EstimatedRobotPose> estimatedPose, List<PhotonTrackedTarget> targets) {
-    if (estimatedPose.isEmpty()) {
-      currentStdDev3d = PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D;
-      return;
-    }
-    int numTags = 0;
-    double totalDistance = 0;
-
-    // Calculate the number of visible tags and their average 3D distance to the estimated pose
-    for (var target : targets) {
-      var tagPoseOptional = photonPoseEstimator.getFieldTags().getTagPose(target.getFiducialId());
-      if (tagPoseOptional.isEmpty()) continue;
-
-      numTags++;
-      var tagPose = tagPoseOptional.get().getTranslation();
-      var estimatedTranslation = estimatedPose.get().estimatedPose.getTranslation();
-
-      // Calculate 3D Euclidean distance
-      double deltaX = tagPose.getX() - estimatedTranslation.getX();
-      double deltaY = tagPose.getY() - estimatedTranslation.getY();
-      double deltaZ = tagPose.getZ() - estimatedTranslation.getZ();
-      totalDistance += Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
-    }
+  public double[] getExtrinsics() {
+    return extrinsics;
+  }
 
-    if (numTags == 0) {
-      currentStdDev3d = PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D;
-      return;
-    }
+  /**
+   * Gets the calibration of this camera for the fused solver: fx, fy, cx, cy followed by the
+   * distortion coefficients. The calibration comes from the logged inputs once the camera has
+   * published it.
+   *
+   * @return double[], The intrinsics, or null if the camera has not published its calibration yet.
+   */
+  public double[] getIntrinsics() {
+    if (intrinsics != null) return intrinsics;
+    if (inputs.cameraMatrix.length != 9) return null;
 
-    double avgDistance = totalDistance / numTags;
-    var stdDevs =
-        (numTags > 1)
-            ? PhotonVisionConstants.MULTI_TARGET_STD_DEV_3D
-            : PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D;
-
-    if (numTags == 1 && avgDistance > 4) {
-      currentStdDev3d =
-          fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-    } else {
-      currentStdDev3d = stdDevs.times(1 + (avgDistance * avgDistance / 30));
-    }
+    // The camera matrix is stored row major
+    double[] values = new double[4 + inputs.distCoeffs.length];
+    values[0] = inputs.cameraMatrix[0];
+    values[1] = inputs.cameraMatrix[4];
+    values[2] = inputs.cameraMatrix[2];
+    values[3] = inputs.cameraMatrix[5];
+    System.arraycopy(inputs.distCoeffs, 0, values, 4, inputs.distCoeffs.length);
+    intrinsics = values;
+    return intrinsics;
+  }
+
+  /**
+   * Gets the camera's position relative to the robot.
+   *
+   * @return {@link Transform3d}, The {@link Transform3d} representing the camera's position
+   */
+  public Transform3d getCameraPosition() {
+    return cameraPos;
   }
 
   /**
-   * Gets the current standard deviations used for robot pose estimation.
+   * Gets the standard deviations of the last measurement from this camera.
    *
    * @return Matrix<N3, N1> The current standard deviations as a Matrix object
    */
@@ -179,7 +336,8 @@ public class PhotonModule {
   }
 
   /**
-   * Gets the current standard deviations used for 3D robot pose estimation.
+   * Gets the standard deviations of the last measurement from this camera for the 3D pose
+   * estimator.
    *
    * @return Matrix<N4, N1> The current standard deviations as a Matrix object
    */
@@ -193,10 +351,15 @@ public class PhotonModule {
    * @return String The name of the camera
    */
   public String getCameraName() {
-    return camera.getName();
+    return io.getName();
   }
 
+  /**
+   * Gets the PhotonVision camera of this module, which only exists on the robot.
+   *
+   * @return PhotonCamera, The camera, or null when replaying a log.
+   */
   public PhotonCamera getCamera() {
-    return camera;
+    return io instanceof VisionIOPhoton photon ? photon.getCamera() : null;
   }
 }
@@ -1,22 +1,31 @@
 package frc.robot.subsystems;
 
 import static frc.robot.utils.ExtensionsKt.*;
+import static frc.robot.utils.RobotParameters.FieldParameters.*;
+import static frc.robot.utils.RobotParameters.LiveRobotValues.*;
 import static frc.robot.utils.RobotParameters.PhotonVisionConstants.*;
 import static frc.robot.utils.pingu.LogPingu.*;
 
-import edu.wpi.first.apriltag.*;
 import edu.wpi.first.math.geometry.*;
 import edu.wpi.first.net.PortForwarder;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.RobotParameters.Info;
+import frc.robot.utils.VisionMeasurement;
+import frc.robot.utils.emu.RobotMode;
+import frc.robot.utils.pingu.PerfPingu.PerfTimer;
+import frc.robot.utils.pingu.PnPPingu;
 import java.util.*;
-import kotlin.*;
+import org.littletonrobotics.junction.Logger;
+import org.photonvision.EstimatedRobotPose;
 import org.photonvision.PhotonCamera;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 import org.photonvision.targeting.*;
 
 /**
  * The PhotonVision class is a subsystem that interfaces with multiple PhotonVision cameras to
  * provide vision tracking and pose estimation capabilities. This subsystem is a Singleton that
- * manages multiple CameraModules and selects the best result based on pose ambiguity.
+ * manages multiple CameraModules and collects the observations their cameras solve and log.
  *
  * <p>This subsystem provides methods to get the estimated global pose of the robot, the distance to
  * targets, and the yaw of detected AprilTags. It also provides methods to check if a tag is visible
@@ -28,7 +37,45 @@ public class PhotonVision extends SubsystemBase {
   private double y = 0.0;
   private double dist = 0.0;
   private int logCount = 0;
-  private List<Pair<PhotonModule, PhotonPipelineResult>> currentResultPair;
+  private int fusedSolves = 0;
+  private int fusedFailures = 0;
+  private long lastFrameCount = 0;
+  private double lastFrameReport = 0.0;
+  private final List<VisionMeasurement> currentMeasurements = new ArrayList<>();
+
+  // Log keys
+  private static final BooleanKey CAMERA_EXISTS_KEY =
+      new BooleanKey("Photonvision/Does any camera exist");
+  private static final BooleanKey RESULT_PAIR_EXISTS_KEY =
+      new BooleanKey("Photonvision/Does any result pair exist");
+  private static final BooleanKey HAS_TAG_KEY = new BooleanKey("Photonvision/Has tag");
+  private static final IntKey RESULT_LIST_LENGTH_KEY =
+      new IntKey("Photonvision/resultCamera List length");
+  private static final BooleanKey RESULTS_HAVE_TARGETS_KEY =
+      new BooleanKey("Photonvision/Result pairs have targets");
+  private static final BooleanKey BEST_TARGET_LIST_EMPTY_KEY =
+      new BooleanKey("Photonvision/Best target list is empty");
+  private static final IntKey BEST_TARGET_COUNTER_KEY =
+      new IntKey("Photonvision/BestTarget updated counter");
+  private static final BooleanKey BEST_TARGET_NOT_NULL_KEY =
+      new BooleanKey("Photonvision/BestTarget is not null");
+  private static final BooleanKey BEST_TARGET_NOT_NULL_SPACED_KEY =
+      new BooleanKey("Photonvision/Best Target is not null");
+  private static final DoubleKey YAW_KEY = new DoubleKey("Yaw");
+  private static final BooleanKey RESULT_PAIR_NOT_NULL_KEY =
+      new BooleanKey("Photonvision/currentResultPair not null");
+  private static final BooleanKey HAS_TARGETS_KEY =
+      new BooleanKey("Photonvision/hasTargets currentResultPair");
+  private static final IntKey FUSED_SOLVES_KEY = new IntKey("Photonvision/Fused Solves");
+  private static final IntKey FUSED_FAILURES_KEY = new IntKey("Photonvision/Fused Solve Failures");
+  private static final DoubleKey FUSED_RMS_KEY = new DoubleKey("Photonvision/Fused RMS Error");
+  private static final PerfTimer PERIODIC_TIMER = new PerfTimer("Subsystems/PhotonVision");
+  private static final PerfTimer FUSED_SOLVE_TIMER = new PerfTimer("Vision/Fused Solve");
+  private static final PerfTimer SIM_UPDATE_TIMER = new PerfTimer("Vision/Sim Update");
+  private static final DoubleKey FRAMES_PER_SECOND_KEY =
+      new DoubleKey("Photonvision/Frames Per Second");
+  private static final Comparator<VisionMeasurement> BY_TIMESTAMP =
+      Comparator.comparingDouble(VisionMeasurement::getTimestamp);
 
   // Singleton instance
   private static final PhotonVision INSTANCE;
@@ -57,74 +104,236 @@ public class PhotonVision extends SubsystemBase {
   // x = 9.5
   // y = 12
   private PhotonVision() {
-    cameras.add(
-        new PhotonModule(
-            "RightCamera",
-            new Transform3d(
-                new Translation3d(0.27305, -0.2985, CAMERA_ONE_HEIGHT_METER),
-                new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(45))),
-            AprilTagFieldLayout.loadField(AprilTagFields.k2025ReefscapeWelded)));
+    addCamera(
+        "RightCamera",
+        new Transform3d(
+            new Translation3d(0.27305, -0.2985, CAMERA_ONE_HEIGHT_METER),
+            new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(45))));
     // well calibrated camera is left camera
-    cameras.add(
-        new PhotonModule(
-            "LeftCamera",
-            new Transform3d(
-                new Translation3d(0.27305, 0.2985, CAMERA_ONE_HEIGHT_METER),
-                new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(-45))),
-            AprilTagFieldLayout.loadField(AprilTagFields.k2025ReefscapeWelded)));
+    addCamera(
+        "LeftCamera",
+        new Transform3d(
+            new Translation3d(0.27305, 0.2985, CAMERA_ONE_HEIGHT_METER),
+            new Rotation3d(0.0, Math.toRadians(-25), Math.toRadians(-45))));
 
-    currentResultPair = new ArrayList<>();
+    // Extra simulated cameras are spread evenly around the robot, replaying sim logs needs them too
+    if (Info.getMode() != RobotMode.REAL) {
+      for (int i = 2; i < VISION_SIM_CAMERAS; i++) {
+        double yaw = 2 * Math.PI * i / VISION_SIM_CAMERAS;
+        addCamera(
+            "SimCamera" + i,
+            new Transform3d(
+                new Translation3d(
+                    0.3 * Math.cos(yaw), 0.3 * Math.sin(yaw), CAMERA_ONE_HEIGHT_METER),
+                new Rotation3d(0.0, Math.toRadians(-25), yaw)));
+      }
+    }
 
     PortForwarder.add(5800, "photonvision.local", 5800);
   }
 
   /**
-   * This method is called periodically by the CommandScheduler. It updates the tracked targets,
-   * selects the best camera based on pose ambiguity, and updates logged information.
+   * Adds a camera with the hardware layer that matches where the code is running: a real camera on
+   * the robot, a simulated camera in simulation, or the logged inputs when replaying.
+   *
+   * @param cameraName The name of the camera in the PhotonVision interface
+   * @param cameraPos The 3D transform representing the camera's position relative to the robot
+   */
+  private void addCamera(String cameraName, Transform3d cameraPos) {
+    VisionIO io =
+        switch (Info.getMode()) {
+          case REAL -> new VisionIOPhoton(cameraName, cameraPos);
+          case SIM -> new VisionIOSim(cameraName, cameraPos);
+          case REPLAY -> new VisionIOReplay(cameraName);
+        };
+    cameras.add(new PhotonModule(io, cameraPos));
+  }
+
+  /**
+   * Renders the simulated camera frames from the simulated robot pose. The robot orbits the blue
+   * reef facing it, since the drivetrain has no physics simulation to move it.
+   */
+  @Override
+  public void simulationPeriodic() {
+    if (Info.getMode() != RobotMode.SIM) return;
+
+    double angle = 2 * Math.PI * Timer.getFPGATimestamp() / VISION_SIM_ORBIT_PERIOD;
+    Pose2d pose =
+        new Pose2d(
+            BLUE_REEF_CENTER.getX() + VISION_SIM_ORBIT_RADIUS * Math.cos(angle),
+            BLUE_REEF_CENTER.getY() + VISION_SIM_ORBIT_RADIUS * Math.sin(angle),
+            new Rotation2d(angle + Math.PI));
+
+    SIM_UPDATE_TIMER.start();
+    VisionIOSim.update(pose);
+    SIM_UPDATE_TIMER.stop();
+  }
+
+  /**
+   * This method is called periodically by the CommandScheduler. It reads the inputs of every
+   * camera, collects the results its reader thread solved since the last loop, orders them by
+   * timestamp, and updates logged information.
    */
   @Override
   public void periodic() {
-    currentResultPair = getDecentResultPairs(cameras);
-
-    logs(
-        () -> {
-          log("Photonvision/Does any camera exist", cameras.get(0) != null);
-          log("Photonvision/Does any result pair exist", currentResultPair != null);
-          log("Photonvision/Has tag", hasTag());
-          log("Photonvision/resultCamera List length", currentResultPair.size());
-          if (currentResultPair != null) {
-            log("Photonvision/Result pairs have targets", hasTargets(currentResultPair));
-          }
-        });
-
-    if (currentResultPair != null) {
-      logs("Photonvision/Best target list is empty", currentResultPair.isEmpty());
-
-      if (!currentResultPair.isEmpty()) {
-        logCount++;
-        logs("Photonvision/BestTarget updated counter", logCount);
-        PhotonTrackedTarget bestTarget = currentResultPair.get(0).getSecond().getBestTarget();
-        logs("Photonvision/BestTarget is not null", bestTarget != null);
-
-        logs("Photonvision/Best Target is not null", bestTarget != null);
-        logs("Photonvision/Best Target is not null", bestTarget != null);
-
-        if (bestTarget != null) {
-          yaw = bestTarget.getYaw();
-          y = bestTarget.getBestCameraToTarget().getX();
-          dist = bestTarget.getBestCameraToTarget().getZ();
-        }
-
-        if (bestTarget != null) {
-          yaw = bestTarget.getYaw();
-          y = bestTarget.getBestCameraToTarget().getX();
-          dist = bestTarget.getBestCameraToTarget().getZ();
-        }
-
-        logs("Yaw", yaw);
+    PERIODIC_TIMER.start();
+    currentMeasurements.clear();
+    for (PhotonModule camera : cameras) {
+      camera.update(currentMeasurements);
+    }
+    currentMeasurements.sort(BY_TIMESTAMP);
+    fuseMeasurements();
+
+    CAMERA_EXISTS_KEY.log(cameras.get(0) != null);
+    RESULT_PAIR_EXISTS_KEY.log(currentMeasurements != null);
+    HAS_TAG_KEY.log(hasTag());
+    RESULT_LIST_LENGTH_KEY.log(currentMeasurements.size());
+    RESULTS_HAVE_TARGETS_KEY.log(hasTargets(currentMeasurements));
+    BEST_TARGET_LIST_EMPTY_KEY.log(currentMeasurements.isEmpty());
+
+    if (!currentMeasurements.isEmpty()) {
+      logCount++;
+      BEST_TARGET_COUNTER_KEY.log(logCount);
+      // Results are ordered oldest first, so the newest result is last
+      PhotonTrackedTarget bestTarget =
+          currentMeasurements.get(currentMeasurements.size() - 1).getResult().getBestTarget();
+      BEST_TARGET_NOT_NULL_KEY.log(bestTarget != null);
+      BEST_TARGET_NOT_NULL_SPACED_KEY.log(bestTarget != null);
+
+      if (bestTarget != null) {
+        yaw = bestTarget.getYaw();
+        y = bestTarget.getBestCameraToTarget().getX();
+        dist = bestTarget.getBestCameraToTarget().getZ();
+      }
+
+      YAW_KEY.log(yaw);
+    }
+
+    logStdDev();
+    logResultCounts();
+    cameras.forEach(PhotonModule::logSolveTime);
+    cameras.forEach(PhotonModule::logMetrics);
+    logFramesPerSecond();
+    PERIODIC_TIMER.stop();
+  }
+
+  /**
+   * Groups the results of different cameras captured within {@code FUSION_TIME_WINDOW} of each
+   * other and solves each group as one pose with {@link PnPPingu}. The measurements must already be
+   * ordered by timestamp.
+   */
+  private void fuseMeasurements() {
+    int start = 0;
+    while (start < currentMeasurements.size()) {
+      double first = currentMeasurements.get(start).getTimestamp();
+      int end = start + 1;
+      while (end < currentMeasurements.size()
+          && currentMeasurements.get(end).getTimestamp() - first <= FUSION_TIME_WINDOW
+          && !groupHasCamera(start, end, currentMeasurements.get(end).getCamera())) {
+        end++;
+      }
+
+      if (end - start > 1) {
+        fuse(start, end);
+      }
+      start = end;
+    }
+  }
+
+  /**
+   * Checks if a camera already has a result in a group of measurements.
+   *
+   * @param start The index of the first measurement in the group.
+   * @param end The index after the last measurement in the group.
+   * @param camera The camera to look for.
+   * @return boolean, Whether the camera has a result in the group.
+   */
+  private boolean groupHasCamera(int start, int end, PhotonModule camera) {
+    for (int i = start; i < end; i++) {
+      if (currentMeasurements.get(i).getCamera() == camera) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Solves a group of measurements from different cameras as one pose. If the solve converges, the
+   * first measurement of the group carries the fused pose at the average timestamp of the group and
+   * the others no longer carry a pose. Otherwise the per-camera poses are kept.
+   *
+   * @param start The index of the first measurement in the group.
+   * @param end The index after the last measurement in the group.
+   */
+  private void fuse(int start, int end) {
+    PnPPingu.reset();
+    Pose2d guess = robotPos;
+    int guessTags = 0;
+    double timestamp = 0.0;
+    for (int i = start; i < end; i++) {
+      VisionMeasurement measurement = currentMeasurements.get(i);
+      double[] intrinsics = measurement.getCamera().getIntrinsics();
+      if (intrinsics == null) return;
+
+      int tags =
+          PnPPingu.addTargets(
+              measurement.getCamera().getExtrinsics(),
+              intrinsics,
+              measurement.getResult().getTargets());
+      // Start from the single camera estimate that saw the most tags
+      if (measurement.getPose() != null && tags > guessTags) {
+        guess = measurement.getPose().estimatedPose.toPose2d();
+        guessTags = tags;
       }
+      timestamp += measurement.getTimestamp();
+    }
+    timestamp /= end - start;
+
+    FUSED_SOLVE_TIMER.start();
+    boolean solved =
+        PnPPingu.solve(guess.getX(), guess.getY(), guess.getRotation().getRadians());
+    FUSED_SOLVE_TIMER.stop();
+    FUSED_RMS_KEY.log(PnPPingu.getRmsError());
+    if (!solved) {
+      fusedFailures++;
+      FUSED_FAILURES_KEY.log(fusedFailures);
+      return;
+    }
+    fusedSolves++;
+    FUSED_SOLVES_KEY.log(fusedSolves);
+
+    List<PhotonTrackedTarget> targetsUsed = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      targetsUsed.addAll(currentMeasurements.get(i).getResult().getTargets());
+    }
+    double distance = PnPPingu.averageDistance();
+    double distance3d = PnPPingu.averageDistance3d();
+    EstimatedRobotPose pose =
+        new EstimatedRobotPose(
+            new Pose3d(
+                PnPPingu.getX(),
+                PnPPingu.getY(),
+                0.0,
+                new Rotation3d(0.0, 0.0, PnPPingu.getTheta())),
+            timestamp,
+            targetsUsed,
+            PoseStrategy.MULTI_TAG_PNP_ON_RIO);
 
-      logStdDev();
+    for (int i = start; i < end; i++) {
+      VisionMeasurement measurement = currentMeasurements.get(i);
+      currentMeasurements.set(
+          i,
+          i == start
+              ? new VisionMeasurement(
+                  measurement.getCamera(),
+                  measurement.getResult(),
+                  pose,
+                  MULTI_TARGET_STD_DEV.times(1 + (distance * distance / 30)),
+                  MULTI_TARGET_STD_DEV_3D.times(1 + (distance3d * distance3d / 30)))
+              : new VisionMeasurement(
+                  measurement.getCamera(),
+                  measurement.getResult(),
+                  null,
+                  measurement.getStdDevs(),
+                  measurement.getStdDevs3d()));
     }
   }
 
@@ -134,13 +343,11 @@ public class PhotonVision extends SubsystemBase {
    * @return true if there is a visible tag and the current result pair is not null
    */
   public boolean hasTag() {
-    logs("Photonvision/currentResultPair not null", currentResultPair != null);
-
-    if (currentResultPair != null) {
-      logs("Photonvision/hasTargets currentResultPair", hasTargets(currentResultPair));
-    }
+    boolean hasTargets = hasTargets(currentMeasurements);
+    RESULT_PAIR_NOT_NULL_KEY.log(true);
+    HAS_TARGETS_KEY.log(hasTargets);
 
-    return currentResultPair != null && hasTargets(currentResultPair);
+    return hasTargets;
   }
 
   /**
@@ -180,27 +387,33 @@ public class PhotonVision extends SubsystemBase {
   }
 
   public double fetchYaw(PhotonCamera camera) {
-    for (Pair<PhotonModule, PhotonPipelineResult> pair : currentResultPair) {
-      if (pair.getFirst().getCamera().equals(camera)) {
-        return pair.getSecond().getBestTarget().getYaw();
+    // Walk newest first so the latest result of the camera is used
+    for (int i = currentMeasurements.size() - 1; i >= 0; i--) {
+      VisionMeasurement measurement = currentMeasurements.get(i);
+      if (measurement.getCamera().getCameraName().equals(camera.getName())) {
+        return measurement.getResult().getBestTarget().getYaw();
       }
     }
     return 0.0;
   }
 
   public double fetchDist(PhotonCamera camera) {
-    for (Pair<PhotonModule, PhotonPipelineResult> pair : currentResultPair) {
-      if (pair.getFirst().getCamera().equals(camera)) {
-        return pair.getSecond().getBestTarget().getBestCameraToTarget().getX();
+    // Walk newest first so the latest result of the camera is used
+    for (int i = currentMeasurements.size() - 1; i >= 0; i--) {
+      VisionMeasurement measurement = currentMeasurements.get(i);
+      if (measurement.getCamera().getCameraName().equals(camera.getName())) {
+        return measurement.getResult().getBestTarget().getBestCameraToTarget().getX();
       }
     }
     return 0.0;
   }
 
   public double fetchY(PhotonCamera camera) {
-    for (Pair<PhotonModule, PhotonPipelineResult> pair : currentResultPair) {
-      if (pair.getFirst().getCamera().equals(camera) && currentResultPair != null) {
-        return pair.getSecond().getBestTarget().getBestCameraToTarget().getY();
+    // Walk newest first so the latest result of the camera is used
+    for (int i = currentMeasurements.size() - 1; i >= 0; i--) {
+      VisionMeasurement measurement = currentMeasurements.get(i);
+      if (measurement.getCamera().getCameraName().equals(camera.getName())) {
+        return measurement.getResult().getBestTarget().getBestCameraToTarget().getY();
       }
     }
     return 7157;
@@ -211,16 +424,41 @@ public class PhotonVision extends SubsystemBase {
    * standard deviations and logs the normF value of the standard deviations for each camera.
    */
   public void logStdDev() {
-    cameras.stream()
-        .filter(camera -> camera.getCurrentStdDevs() != null)
-        .forEach(
-            camera ->
-                logs(
-                    "Photonvision/Camera %s Std Dev NormF".formatted(camera.getCameraName()),
-                    camera.getCurrentStdDevs().normF()));
+    cameras.forEach(PhotonModule::logStdDev);
   }
 
-  public List<Pair<PhotonModule, PhotonPipelineResult>> getResultPairs() {
-    return currentResultPair;
+  /**
+   * Logs how many pipeline results each camera has sent and what happened to them, so frames that
+   * never reach the pose estimator show up in the logs.
+   */
+  public void logResultCounts() {
+    cameras.forEach(PhotonModule::logResultCounts);
+  }
+
+  /**
+   * Logs how many pipeline results per second all the cameras together have delivered, once per
+   * {@code VISION_REPORT_PERIOD}.
+   */
+  private void logFramesPerSecond() {
+    double now = Logger.getTimestamp() / 1e6;
+    if (now - lastFrameReport < VISION_REPORT_PERIOD) return;
+
+    long frames = 0;
+    for (PhotonModule camera : cameras) {
+      frames += camera.getResultsReceived();
+    }
+    FRAMES_PER_SECOND_KEY.log((frames - lastFrameCount) / (now - lastFrameReport));
+    lastFrameCount = frames;
+    lastFrameReport = now;
+  }
+
+  /**
+   * Gets the results solved by the cameras since the last loop, ordered by timestamp with
+   * the oldest first.
+   *
+   * @return List<VisionMeasurement>, The solved results from this loop.
+   */
+  public List<VisionMeasurement> getMeasurements() {
+    return currentMeasurements;
   }
 }
@@ -3,10 +3,7 @@ package frc.robot.subsystems;
 import static com.pathplanner.lib.util.PathPlannerLogging.*;
 import static edu.wpi.first.math.VecBuilder.*;
 import static edu.wpi.first.math.geometry.Rotation2d.*;
-import static edu.wpi.first.math.kinematics.ChassisSpeeds.*;
-import static edu.wpi.first.math.kinematics.SwerveDriveKinematics.*;
 import static edu.wpi.first.math.util.Units.*;
-import static frc.robot.utils.ExtensionsKt.*;
 import static frc.robot.utils.RobotParameters.LiveRobotValues.*;
 import static frc.robot.utils.RobotParameters.MotorParameters.*;
 import static frc.robot.utils.RobotParameters.SwerveParameters.*;
@@ -24,6 +21,7 @@ import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator3d;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -33,22 +31,82 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.VisionBatch;
 import frc.robot.utils.pingu.NetworkPingu;
-import java.util.Optional;
+import frc.robot.utils.pingu.PathLibraryPingu;
+import frc.robot.utils.pingu.PerfPingu.PerfTimer;
+import frc.robot.utils.pingu.SignalPingu;
+import java.util.Set;
 import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
 import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
-import org.photonvision.EstimatedRobotPose;
 
 public class Swerve extends SubsystemBase {
   private final SwerveDrivePoseEstimator poseEstimator;
   private final SwerveDrivePoseEstimator3d poseEstimator3d;
+  private final VisionBatch visionBatch;
   private final Field2d field = new Field2d();
   private final Pigeon2 pidgey = new Pigeon2(PIDGEY_ID);
   private final SwerveModuleState[] states = new SwerveModuleState[4];
-  private SwerveModuleState[] setStates = new SwerveModuleState[4];
+  private final SwerveModuleState[] setStates = new SwerveModuleState[4];
+  private final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+  private final ChassisSpeeds chassisSpeeds = new ChassisSpeeds();
+
+  // Preallocated buffers for module state requests and setpoints, in kinematics order
+  private final double[] desiredSpeeds = new double[4];
+  private final double[] desiredAngles = new double[4];
   private final SwerveModule[] modules;
   private final PhotonVision photonVision;
+  private final DriveThread driveThread;
+  private final DriveThread.SampleConsumer odometryConsumer = this::updateOdometry;
+
+  // Pidgey roll and pitch in radians, read from its quaternion once per loop without building a
+  // Rotation3d
+  private double pidgeyRoll;
+  private double pidgeyPitch;
+
+  // The yaw of the last odometry sample, reused while the robot is not turning
+  private double lastYawDegrees;
+  private Rotation2d lastYaw = Rotation2d.kZero;
+
+  // The newest odometry sample of a drain, which is the one the 3D pose estimator gets
+  private double latestTimestamp;
+  private double latestYawDegrees;
+  private final SwerveModulePosition[] latestPositions = new SwerveModulePosition[4];
+
+  // Handles into the per-loop signal snapshot
+  private final int yawSignal;
+  private final int pitchSignal;
+  private final int rollSignal;
+  private final int quatWSignal;
+  private final int quatXSignal;
+  private final int quatYSignal;
+  private final int quatZSignal;
+
+  // Log keys
+  private static final DoubleKey PIDGEY_YAW_KEY = new DoubleKey("Swerve/Pidgey Yaw");
+  private static final DoubleKey PIDGEY_HEADING_KEY = new DoubleKey("Swerve/Pidgey Heading");
+  private static final DoubleKey PIDGEY_ROTATION_KEY = new DoubleKey("Swerve/Pidgey Rotation");
+  private static final DoubleKey PIDGEY_ROLL_KEY = new DoubleKey("Swerve/Pidgey Roll");
+  private static final DoubleKey PIDGEY_ROTATION_2D_KEY = new DoubleKey("Swerve/Pidgey Rotation2D");
+  private static final StructKey<Pose2d> ROBOT_POSE_KEY =
+      new StructKey<>("Swerve/Robot Pose", Pose2d.struct);
+  private static final StructKey<Pose3d> ROBOT_POSE_3D_KEY =
+      new StructKey<>("Swerve/Robot Pose 3D", Pose3d.struct);
+  private static final StructKey<Pose2d> ROBOT_POSE_2D_EXTRA_KEY =
+      new StructKey<>("Swerve/Robot Pose 2D extra", Pose2d.struct);
+  private static final IntKey ODOMETRY_SAMPLES_KEY = new IntKey("Swerve/Odometry Samples");
+  private static final DoubleKey ODOMETRY_DROPPED_KEY =
+      new DoubleKey("Swerve/Odometry Dropped Samples");
+  private static final DoubleKey ODOMETRY_FAILED_WAITS_KEY =
+      new DoubleKey("Swerve/Odometry Failed Waits");
+  private static final DoubleKey FORWARD_SPEED_KEY = new DoubleKey("Swerve/Forward speed");
+  private static final DoubleKey LEFT_SPEED_KEY = new DoubleKey("Swerve/Left speed");
+  private static final DoubleKey TURN_SPEED_KEY = new DoubleKey("Swerve/Turn speed");
+  private static final StructKey<ChassisSpeeds> CHASSIS_SPEEDS_KEY =
+      new StructKey<>("Swerve/Chassis Speeds", ChassisSpeeds.struct);
+  private static final PerfTimer PERIODIC_TIMER = new PerfTimer("Subsystems/Swerve");
 
   // Auto Align Pingu Values
   private NetworkPingu networkPinguXAutoAlign;
@@ -102,9 +160,23 @@ public class Swerve extends SubsystemBase {
    */
   private Swerve() {
     this.modules = initializeModules();
+    for (int i = 0; i < setStates.length; i++) {
+      setStates[i] = new SwerveModuleState();
+      latestPositions[i] = new SwerveModulePosition();
+    }
     this.pidgey.reset();
+    this.yawSignal = SignalPingu.register(pidgey.getYaw());
+    this.pitchSignal = SignalPingu.register(pidgey.getPitch());
+    this.rollSignal = SignalPingu.register(pidgey.getRoll());
+    this.quatWSignal = SignalPingu.register(pidgey.getQuatW());
+    this.quatXSignal = SignalPingu.register(pidgey.getQuatX());
+    this.quatYSignal = SignalPingu.register(pidgey.getQuatY());
+    this.quatZSignal = SignalPingu.register(pidgey.getQuatZ());
     this.poseEstimator = initializePoseEstimator();
     this.poseEstimator3d = initializePoseEstimator3d();
+    this.visionBatch = new VisionBatch(poseEstimator, poseEstimator3d);
+    this.driveThread = new DriveThread(modules, pidgey);
+    this.driveThread.start();
     //    configureAutoBuilder();
     initializePathPlannerLogging();
     photonVision = PhotonVision.getInstance();
@@ -153,7 +225,7 @@ public class Swerve extends SubsystemBase {
   private SwerveDrivePoseEstimator3d initializePoseEstimator3d() {
     return new SwerveDrivePoseEstimator3d(
         kinematics,
-        pidgey.getRotation3d(),
+        getPidgeyRotation3d(),
         getModulePositions(),
         new Pose3d(0.0, 0.0, 0.0, new Rotation3d(0.0, 0.0, 0.0)));
   }
@@ -192,58 +264,106 @@ public class Swerve extends SubsystemBase {
    */
   @Override
   public void periodic() {
+    PERIODIC_TIMER.start();
     updatePos();
 
     /*
      * Updates the robot position based on movement and rotation from the pidgey and
-     * encoders.
+     * encoders. The samples are taken by the drive thread faster than the main loop. The 2D
+     * estimator gets every sample, the 3D estimator only the newest one with this loop's tilt.
      */
-    poseEstimator.update(getPidgeyRotation(), getModulePositions());
-    poseEstimator3d.update(pidgey.getRotation3d(), getModulePositions());
+    updatePidgeyTilt();
+    int odometrySamples = driveThread.drain(odometryConsumer);
+    if (odometrySamples > 0) {
+      poseEstimator3d.updateWithTime(
+          latestTimestamp,
+          new Rotation3d(pidgeyRoll, pidgeyPitch, degreesToRadians(latestYawDegrees)),
+          latestPositions);
+    }
 
-    field.setRobotPose(poseEstimator.getEstimatedPosition());
+    // The Field2d is not published, it only holds the poses PathPlanner logs, so it is not given
+    // the robot pose every loop (each set allocates a new array)
     robotPos = poseEstimator.getEstimatedPosition();
 
-    logs(
-        () -> {
-          log("Swerve/Pidgey Yaw", getPidgeyYaw());
-          log("Swerve/Pidgey Heading", getHeading());
-          log("Swerve/Pidgey Rotation", pidgey.getPitch().getValueAsDouble());
-          log("Swerve/Pidgey Roll", pidgey.getRoll().getValueAsDouble());
-          log("Swerve/Pidgey Rotation2D", pidgey.getRotation2d().getDegrees());
-          log("Swerve/Robot Pose", field.getRobotPose());
-          log("Swerve/Robot Pose 3D", poseEstimator3d.getEstimatedPosition());
-          log("Swerve/Robot Pose 2D extra", robotPos);
-          //          log("Swerve/Swerve Module States", getModuleStates());
-        });
+    PIDGEY_YAW_KEY.log(getPidgeyYaw());
+    PIDGEY_HEADING_KEY.log(getHeading());
+    PIDGEY_ROTATION_KEY.log(SignalPingu.get(pitchSignal));
+    PIDGEY_ROLL_KEY.log(SignalPingu.get(rollSignal));
+    PIDGEY_ROTATION_2D_KEY.log(getPidgeyYaw());
+    // The field pose was just set from robotPos, reading it back from the Field2d allocates
+    ROBOT_POSE_KEY.log(robotPos);
+    ROBOT_POSE_3D_KEY.log(poseEstimator3d.getEstimatedPosition());
+    ROBOT_POSE_2D_EXTRA_KEY.log(robotPos);
+    ODOMETRY_SAMPLES_KEY.log(odometrySamples);
+    ODOMETRY_DROPPED_KEY.log(driveThread.getDroppedSamples());
+    ODOMETRY_FAILED_WAITS_KEY.log(driveThread.getFailedWaits());
+    for (SwerveModule module : modules) {
+      module.logSpeed();
+    }
+    //    log("Swerve/Swerve Module States", getModuleStates());
+    PERIODIC_TIMER.stop();
+  }
+
+  /**
+   * Updates the 2D pose estimator with a single sample from the drive thread and keeps a copy of
+   * it for the 3D estimator, which is updated once per drain with the newest sample.
+   *
+   * @param timestamp The FPGA timestamp of the sample in seconds.
+   * @param yawDegrees The pidgey yaw in degrees.
+   * @param positions The positions of the swerve modules.
+   */
+  private void updateOdometry(
+      double timestamp, double yawDegrees, SwerveModulePosition[] positions) {
+    if (yawDegrees != lastYawDegrees) {
+      lastYawDegrees = yawDegrees;
+      lastYaw = fromDegrees(yawDegrees);
+    }
+    poseEstimator.updateWithTime(timestamp, lastYaw, positions);
+
+    // The drive thread reuses the sample's positions once it is drained
+    latestTimestamp = timestamp;
+    latestYawDegrees = yawDegrees;
+    for (int i = 0; i < positions.length; i++) {
+      latestPositions[i].distanceMeters = positions[i].distanceMeters;
+      latestPositions[i].angle = positions[i].angle;
+    }
+  }
+
+  /**
+   * Reads the pidgey roll and pitch from its quaternion, the same as {@link Rotation3d#getX()} and
+   * {@link Rotation3d#getY()} of {@link #getPidgeyRotation3d()} without allocating.
+   */
+  private void updatePidgeyTilt() {
+    double w = SignalPingu.get(quatWSignal);
+    double x = SignalPingu.get(quatXSignal);
+    double y = SignalPingu.get(quatYSignal);
+    double z = SignalPingu.get(quatZSignal);
+    double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+    if (norm == 0.0) {
+      pidgeyRoll = 0.0;
+      pidgeyPitch = 0.0;
+      return;
+    }
+    w /= norm;
+    x /= norm;
+    y /= norm;
+    z /= norm;
+
+    double cxcy = 1.0 - 2.0 * (x * x + y * y);
+    double sxcy = 2.0 * (w * x + y * z);
+    pidgeyRoll = cxcy * cxcy + sxcy * sxcy > 1e-20 ? Math.atan2(sxcy, cxcy) : 0.0;
+    double ratio = 2.0 * (w * y - z * x);
+    pidgeyPitch = Math.abs(ratio) >= 1.0 ? Math.copySign(Math.PI / 2.0, ratio) : Math.asin(ratio);
   }
 
   /**
-   * Updates the robot's position using vision measurements from PhotonVision. This method retrieves
-   * the latest vision results, estimates the robot's pose, updates the standard deviations, and
-   * adds the vision measurement to the pose estimator.
+   * Updates the robot's position using vision measurements from PhotonVision. The poses and
+   * standard deviations are already solved by PhotonVision, so this only merges the finished
+   * measurements of this loop into a single update for each pose estimator.
    */
   private void updatePos() {
-    if (!photonVision.getResultPairs().isEmpty()) {
-      photonVision
-          .getResultPairs()
-          .forEach(
-              pair -> {
-                EstimatedRobotPose pose =
-                    getEstimatedPose(pair, poseEstimator.getEstimatedPosition());
-                updateStdDev(pair, Optional.ofNullable(pose));
-                updateStdDev3d(pair, Optional.ofNullable(pose));
-                if (pose != null) {
-                  double timestamp = pose.timestampSeconds;
-                  Pose2d visionMeasurement2d = pose.estimatedPose.toPose2d();
-                  Pose3d visionMeasurement3d = pose.estimatedPose;
-                  poseEstimator.addVisionMeasurement(
-                      visionMeasurement2d, timestamp, pair.getFirst().getCurrentStdDevs());
-                  poseEstimator3d.addVisionMeasurement(
-                      visionMeasurement3d, timestamp, pair.getFirst().getCurrentStdDevs3d());
-                  robotPos = poseEstimator.getEstimatedPosition();
-                }
-              });
+    if (visionBatch.apply(photonVision.getMeasurements()) > 0) {
+      robotPos = poseEstimator.getEstimatedPosition();
     }
   }
 
@@ -259,7 +379,8 @@ public class Swerve extends SubsystemBase {
   }
 
   /**
-   * Sets the drive speeds for the swerve modules.
+   * Sets the drive speeds for the swerve modules. The speeds are handed to the drive thread, which
+   * does the field oriented conversion with its own yaw sample and drives the modules.
    *
    * @param forwardSpeed The forward speed.
    * @param leftSpeed The left speed.
@@ -268,27 +389,16 @@ public class Swerve extends SubsystemBase {
    */
   public void setDriveSpeeds(
       double forwardSpeed, double leftSpeed, double turnSpeed, boolean isFieldOriented) {
-    logs(
-        () -> {
-          log("Swerve/Forward speed", forwardSpeed);
-          log("Swerve/Left speed", leftSpeed);
-          log("Swerve/Turn speed", turnSpeed);
-        });
+    FORWARD_SPEED_KEY.log(forwardSpeed);
+    LEFT_SPEED_KEY.log(leftSpeed);
+    TURN_SPEED_KEY.log(turnSpeed);
 
-    // Converts to a measure that the robot aktualy understands
-    ChassisSpeeds speeds =
-        isFieldOriented
-            ? fromFieldRelativeSpeeds(forwardSpeed, leftSpeed, turnSpeed, getPidgeyRotation())
-            : new ChassisSpeeds(forwardSpeed, leftSpeed, turnSpeed);
+    chassisSpeeds.vxMetersPerSecond = forwardSpeed;
+    chassisSpeeds.vyMetersPerSecond = leftSpeed;
+    chassisSpeeds.omegaRadiansPerSecond = turnSpeed;
+    CHASSIS_SPEEDS_KEY.log(chassisSpeeds);
 
-    logs("Swerve/Chassis Speeds", speeds);
-
-    speeds = discretize(speeds, 0.02);
-
-    SwerveModuleState[] newStates = kinematics.toSwerveModuleStates(speeds);
-    desaturateWheelSpeeds(newStates, MAX_SPEED);
-
-    setModuleStates(newStates);
+    driveThread.requestSpeeds(forwardSpeed, leftSpeed, turnSpeed, isFieldOriented, true);
   }
 
   /**
@@ -297,7 +407,7 @@ public class Swerve extends SubsystemBase {
    * @return Rotation2d, The rotation of the Pigeon2 IMU.
    */
   public Rotation2d getPidgeyRotation() {
-    return pidgey.getRotation2d();
+    return fromDegrees(getPidgeyYaw());
   }
 
   /**
@@ -306,7 +416,7 @@ public class Swerve extends SubsystemBase {
    * @return double, The heading of the robot.
    */
   public double getHeading() {
-    return -pidgey.getYaw().getValueAsDouble();
+    return -SignalPingu.get(yawSignal);
   }
 
   /**
@@ -315,7 +425,7 @@ public class Swerve extends SubsystemBase {
    * @return double, The yaw of the Pigeon2 IMU.
    */
   public double getPidgeyYaw() {
-    return pidgey.getYaw().getValueAsDouble();
+    return SignalPingu.get(yawSignal);
   }
 
   /** Resets the Pigeon2 IMU. */
@@ -380,7 +490,7 @@ public class Swerve extends SubsystemBase {
    * @return Rotation2d, The rotation of the Pigeon2 IMU for PID control.
    */
   public Rotation2d getRotationPidggy() {
-    return fromDegrees(-pidgey.getRotation2d().getDegrees());
+    return fromDegrees(-getPidgeyYaw());
   }
 
   /**
@@ -389,33 +499,39 @@ public class Swerve extends SubsystemBase {
    * @param chassisSpeeds The chassis speeds.
    */
   public void chassisSpeedsDrive(ChassisSpeeds chassisSpeeds) {
-    SwerveModuleState[] newStates = kinematics.toSwerveModuleStates(chassisSpeeds);
-    setModuleStates(newStates);
+    driveThread.requestSpeeds(
+        chassisSpeeds.vxMetersPerSecond,
+        chassisSpeeds.vyMetersPerSecond,
+        chassisSpeeds.omegaRadiansPerSecond,
+        false,
+        false);
   }
 
   /**
-   * Gets the states of the swerve modules.
+   * Gets the states of the swerve modules. The returned array is reused between calls.
    *
    * @return SwerveModuleState[], The states of the swerve modules.
    */
   public SwerveModuleState[] getModuleStates() {
-    // TODO try returning new states maybe it is calling it too much why is why pp doesnt update
-    SwerveModuleState[] moduleStates = new SwerveModuleState[4];
     for (int i = 0; i < modules.length; i++) {
-      moduleStates[i] = modules[i].getState();
+      states[i] = modules[i].getState();
     }
-    return moduleStates;
+    return states;
   }
 
   /**
-   * Gets the states of the swerve modules.
+   * Gets the last states sent to the swerve modules, before optimization. The returned array is
+   * reused between calls.
    *
    * @return SwerveModuleState[], The states of the swerve modules.
    */
   public SwerveModuleState[] getSetModuleStates() {
-    SwerveModuleState[] moduleStates = new SwerveModuleState[4];
-    System.arraycopy(setStates, 0, moduleStates, 0, setStates.length);
-    return moduleStates;
+    driveThread.getSetpoints(desiredSpeeds, desiredAngles);
+    for (int i = 0; i < setStates.length; i++) {
+      setStates[i].speedMetersPerSecond = desiredSpeeds[i];
+      setStates[i].angle = fromRotations(desiredAngles[i]);
+    }
+    return setStates;
   }
 
   /**
@@ -424,19 +540,19 @@ public class Swerve extends SubsystemBase {
    * @param states The states of the swerve modules.
    */
   public void setModuleStates(SwerveModuleState[] states) {
-    setStates = states;
     for (int i = 0; i < states.length; i++) {
-      modules[i].setState(states[i]);
+      desiredSpeeds[i] = states[i].speedMetersPerSecond;
+      desiredAngles[i] = states[i].angle.getRotations();
     }
+    driveThread.requestModuleStates(desiredSpeeds, desiredAngles);
   }
 
   /**
-   * Gets the positions of the swerve modules.
+   * Gets the positions of the swerve modules. The returned array is reused between calls.
    *
    * @return SwerveModulePosition[], The positions of the swerve modules.
    */
   public SwerveModulePosition[] getModulePositions() {
-    SwerveModulePosition[] positions = new SwerveModulePosition[states.length];
     for (int i = 0; i < positions.length; i++) {
       positions[i] = modules[i].getPosition();
     }
@@ -445,9 +561,7 @@ public class Swerve extends SubsystemBase {
 
   /** Stops all swerve modules. */
   public void stop() {
-    for (SwerveModule module : modules) {
-      module.stop();
-    }
+    driveThread.requestStop();
   }
 
   /** Sets the PID constants for autonomous driving. */
@@ -483,12 +597,15 @@ public class Swerve extends SubsystemBase {
   }
 
   /**
-   * The pose to path find to.
+   * The pose to path find to. Uses a precomputed path from the path library when the goal is in
+   * it, looked up from the pose the robot is at when the command starts.
    *
    * @return Command, The command to path find to the goal.
    */
   public Command pathFindToGoal(Pose2d targetPose) {
-    return AutoBuilder.pathfindToPose(targetPose, constraints);
+    return Commands.defer(
+        () -> PathLibraryPingu.pathfindToPose(getPose(), targetPose, constraints, 0.0),
+        Set.of(this));
   }
 
   private static class RobotConfigException extends RuntimeException {
@@ -518,6 +635,11 @@ public class Swerve extends SubsystemBase {
   }
 
   protected Rotation3d getPidgeyRotation3d() {
-    return pidgey.getRotation3d();
+    return new Rotation3d(
+        new Quaternion(
+            SignalPingu.get(quatWSignal),
+            SignalPingu.get(quatXSignal),
+            SignalPingu.get(quatYSignal),
+            SignalPingu.get(quatZSignal)));
   }
 }
@@ -8,6 +8,7 @@ import static frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.*
 import static frc.robot.utils.RobotParameters.SwerveParameters.Thresholds.*;
 import static frc.robot.utils.pingu.LogPingu.*;
 
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.configs.TorqueCurrentConfigs;
@@ -17,9 +18,11 @@ import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.FeedbackSensorSourceValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.units.measure.Angle;
 import frc.robot.utils.RobotParameters.*;
 import frc.robot.utils.pingu.*;
 import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
@@ -32,7 +35,7 @@ public class SwerveModule {
   private final PositionTorqueCurrentFOC positionSetter;
   private final VelocityTorqueCurrentFOC velocitySetter;
   private final SwerveModulePosition swerveModulePosition;
-  private SwerveModuleState state;
+  private final SwerveModuleState state;
   private double driveVelocity;
   private double drivePosition;
   private double steerPosition;
@@ -41,6 +44,23 @@ public class SwerveModule {
   private final TalonFXConfiguration steerConfigs;
   private final TorqueCurrentConfigs driveTorqueConfigs;
 
+  // Handles into the per-loop signal snapshot
+  private final int driveVelocitySignal;
+  private final int drivePositionSignal;
+  private final int driveRotorVelocitySignal;
+  private final int steerVelocitySignal;
+  private final int steerPositionSignal;
+  private final int absolutePositionSignal;
+
+  // Log keys, shared by every module
+  private static final DoubleKey DRIVE_ACTUAL_SPEED_KEY = new DoubleKey("Swerve/Drive actual sped");
+  private static final DoubleKey DRIVE_SET_SPEED_KEY = new DoubleKey("Swerve/Drive set sped");
+  private static final DoubleKey STEER_ACTUAL_ANGLE_KEY =
+      new DoubleKey("Swerve/Steer actual angle");
+  private static final DoubleKey STEER_SET_ANGLE_KEY = new DoubleKey("Swerve/Steer set angle");
+  private static final DoubleKey DESIRED_ANGLE_KEY =
+      new DoubleKey("Swerve/Desired state after optimize");
+
   private NetworkPingu networkPinguDrive;
   private NetworkPingu networkPinguSteer;
 
@@ -109,10 +129,17 @@ public class SwerveModule {
     steerMotor.getConfigurator().apply(steerConfigs);
     canCoder.getConfigurator().apply(canCoderConfiguration);
 
-    driveVelocity = driveMotor.getVelocity().getValueAsDouble();
-    drivePosition = driveMotor.getPosition().getValueAsDouble();
-    steerVelocity = steerMotor.getVelocity().getValueAsDouble();
-    steerPosition = steerMotor.getPosition().getValueAsDouble();
+    driveVelocitySignal = SignalPingu.register(driveMotor.getVelocity());
+    drivePositionSignal = SignalPingu.register(driveMotor.getPosition());
+    driveRotorVelocitySignal = SignalPingu.register(driveMotor.getRotorVelocity());
+    steerVelocitySignal = SignalPingu.register(steerMotor.getVelocity());
+    steerPositionSignal = SignalPingu.register(steerMotor.getPosition());
+    absolutePositionSignal = SignalPingu.register(canCoder.getAbsolutePosition());
+
+    driveVelocity = SignalPingu.get(driveVelocitySignal);
+    drivePosition = SignalPingu.get(drivePositionSignal);
+    steerVelocity = SignalPingu.get(steerVelocitySignal);
+    steerPosition = SignalPingu.get(steerPositionSignal);
 
     initializeLoggedNetworkPID();
     initializeAlarms(driveId, steerId, canCoderID);
@@ -124,12 +151,12 @@ public class SwerveModule {
    * @return SwerveModulePosition, The current position of the swerve module.
    */
   public SwerveModulePosition getPosition() {
-    driveVelocity = driveMotor.getVelocity().getValueAsDouble();
-    drivePosition = driveMotor.getPosition().getValueAsDouble();
-    steerVelocity = steerMotor.getVelocity().getValueAsDouble();
-    steerPosition = steerMotor.getPosition().getValueAsDouble();
+    driveVelocity = SignalPingu.get(driveVelocitySignal);
+    drivePosition = SignalPingu.get(drivePositionSignal);
+    steerVelocity = SignalPingu.get(steerVelocitySignal);
+    steerPosition = SignalPingu.get(steerPositionSignal);
 
-    swerveModulePosition.angle = fromRotations(canCoder.getAbsolutePosition().getValueAsDouble());
+    swerveModulePosition.angle = fromRotations(SignalPingu.get(absolutePositionSignal));
     swerveModulePosition.distanceMeters = drivePosition / DRIVE_MOTOR_GEAR_RATIO * METERS_PER_REV;
 
     return swerveModulePosition;
@@ -142,9 +169,9 @@ public class SwerveModule {
    *     speed.
    */
   public SwerveModuleState getState() {
-    state.angle = fromRotations(canCoder.getAbsolutePosition().getValueAsDouble());
+    state.angle = fromRotations(SignalPingu.get(absolutePositionSignal));
     state.speedMetersPerSecond =
-        driveMotor.getRotorVelocity().getValueAsDouble() / DRIVE_MOTOR_GEAR_RATIO * METERS_PER_REV;
+        SignalPingu.get(driveRotorVelocitySignal) / DRIVE_MOTOR_GEAR_RATIO * METERS_PER_REV;
     return state;
   }
 
@@ -154,33 +181,74 @@ public class SwerveModule {
    * @param desiredState The desired state of the swerve module.
    */
   public void setState(SwerveModuleState desiredState) {
-    // Get the current angle
-    Rotation2d currentAngle = fromRotations(canCoder.getAbsolutePosition().getValueAsDouble());
+    setState(desiredState.speedMetersPerSecond, desiredState.angle.getRotations());
+  }
+
+  /**
+   * Sets the state of the swerve module from primitive values so the drive loop does not allocate.
+   * The state is optimized against the current angle so the module never turns more than a quarter
+   * rotation.
+   *
+   * @param speedMetersPerSecond The desired speed of the swerve module in meters per second.
+   * @param angleRotations The desired angle of the swerve module in rotations.
+   */
+  public void setState(double speedMetersPerSecond, double angleRotations) {
+    setState(speedMetersPerSecond, angleRotations, SignalPingu.get(absolutePositionSignal));
+  }
 
+  /**
+   * Sets the state of the swerve module against an angle sampled by the caller. Used by the {@link
+   * DriveThread}, which must not read the main loop's signal snapshot.
+   *
+   * @param speedMetersPerSecond The desired speed of the swerve module in meters per second.
+   * @param angleRotations The desired angle of the swerve module in rotations.
+   * @param currentAngle The current angle of the swerve module in rotations.
+   */
+  public void setState(double speedMetersPerSecond, double angleRotations, double currentAngle) {
     // Optimize the desired state based on current angle
-    desiredState.optimize(currentAngle);
+    if (Math.abs(MathUtil.inputModulus(angleRotations - currentAngle, -0.5, 0.5)) > 0.25) {
+      speedMetersPerSecond = -speedMetersPerSecond;
+      angleRotations = MathUtil.inputModulus(angleRotations + 0.5, -0.5, 0.5);
+    }
 
     // Set the angle for the steer motor
-    double angleToSet = desiredState.angle.getRotations();
+    double angleToSet = angleRotations;
     steerMotor.setControl(positionSetter.withPosition(angleToSet));
 
     // Set the velocity for the drive motor
-    double velocityToSet =
-        (desiredState.speedMetersPerSecond * (DRIVE_MOTOR_GEAR_RATIO / METERS_PER_REV));
+    double velocityToSet = speedMetersPerSecond * (DRIVE_MOTOR_GEAR_RATIO / METERS_PER_REV);
     driveMotor.setControl(velocitySetter.withVelocity(velocityToSet));
 
-    // Log the actual and set values for debugging
-    logs(
-        () -> {
-          log("Swerve/Drive actual sped", driveMotor.getVelocity().getValueAsDouble());
-          log("Swerve/Drive set sped", velocityToSet);
-          log("Swerve/Steer actual angle", canCoder.getAbsolutePosition().getValueAsDouble());
-          log("Swerve/Steer set angle", angleToSet);
-          log("Swerve/Desired state after optimize", desiredState.angle.getRotations());
-        });
-
-    // Update the state with the optimized values
-    state = desiredState;
+    // Log the set values for debugging, the actual speed is logged by the main loop in logSpeed
+    DRIVE_SET_SPEED_KEY.log(velocityToSet);
+    STEER_ACTUAL_ANGLE_KEY.log(currentAngle);
+    STEER_SET_ANGLE_KEY.log(angleToSet);
+    DESIRED_ANGLE_KEY.log(angleToSet);
+  }
+
+  /** Logs the actual drive speed from the main loop's signal snapshot. */
+  public void logSpeed() {
+    DRIVE_ACTUAL_SPEED_KEY.log(SignalPingu.get(driveVelocitySignal));
+  }
+
+  /**
+   * Gets the position status signal of the drive motor. The {@link DriveThread} samples the drive
+   * distance from a clone of it, the signal itself is refreshed by the main loop.
+   *
+   * @return StatusSignal<Angle>, The position signal of the drive motor in rotor rotations.
+   */
+  public StatusSignal<Angle> getDrivePositionSignal() {
+    return driveMotor.getPosition();
+  }
+
+  /**
+   * Gets the absolute position status signal of the CANcoder. The {@link DriveThread} samples the
+   * module angle from a clone of it, the signal itself is refreshed by the main loop.
+   *
+   * @return StatusSignal<Angle>, The absolute position signal of the CANcoder in rotations.
+   */
+  public StatusSignal<Angle> getAbsolutePositionSignal() {
+    return canCoder.getAbsolutePosition();
   }
 
   /** Stops the swerve module motors. */
@@ -0,0 +1,122 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.AutoLog;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * The hardware layer of a single PhotonVision camera. Everything a {@link PhotonModule} reads from
+ * the camera goes through {@link #updateInputs(VisionIOInputs)} and is logged as an AdvantageKit
+ * input, so the vision pipeline can be replayed from a match log exactly as it ran on the robot.
+ * The IO also solves each result, and the solved observations are logged with the results, so
+ * neither the main loop nor replay has to solve them again.
+ */
+public interface VisionIO {
+  /**
+   * The inputs of one camera for one loop. The pipeline results are stored in PhotonVision's own
+   * serialization, back to back, since the log cannot hold a list of byte arrays. The observation
+   * arrays hold the solve of the result at the same index, and the tag ids and timestamp of an
+   * observation are read from its result.
+   */
+  @AutoLog
+  class VisionIOInputs {
+    public boolean connected = false;
+
+    // Serialized pipeline results received since the last loop, oldest first
+    public byte[] results = new byte[0];
+    public int[] resultSizes = new int[0];
+
+    // Time each result reached the robot, which is not part of the serialized result
+    public long[] receiveTimestampsMicros = new long[0];
+
+    // Camera calibration, empty until the camera has published it
+    public double[] cameraMatrix = new double[0];
+    public double[] distCoeffs = new double[0];
+
+    // Whether each result was solved, its pose is only meaningful if it was
+    public boolean[] solved = new boolean[0];
+    public Pose3d[] poses = new Pose3d[0];
+
+    // PhotonPoseEstimator.PoseStrategy ordinal each result was solved with, -1 if unsolved
+    public int[] strategies = new int[0];
+
+    // Standard deviations of each solve, x, y, theta for the 2D and x, y, z, theta for the 3D
+    public double[] stdDevs = new double[0];
+    public double[] stdDevs3d = new double[0];
+
+    // How long the last result took to solve
+    public long solveNanos = 0;
+
+    // Results the reader could not hand to the main loop because it fell behind
+    public long resultsDropped = 0;
+  }
+
+  /**
+   * Updates the inputs with everything the camera sent since the last loop.
+   *
+   * @param inputs The inputs to update.
+   */
+  default void updateInputs(VisionIOInputs inputs) {}
+
+  /**
+   * Gets the name of the camera in the PhotonVision interface.
+   *
+   * @return String, The name of the camera.
+   */
+  String getName();
+
+  /**
+   * Serializes pipeline results into the inputs.
+   *
+   * @param inputs The inputs to write the results to.
+   * @param results The results to serialize, oldest first.
+   * @param packet A packet to serialize into, cleared before each result.
+   */
+  static void pack(VisionIOInputs inputs, List<PhotonPipelineResult> results, Packet packet) {
+    byte[][] packed = new byte[results.size()][];
+    int total = 0;
+    inputs.resultSizes = new int[results.size()];
+    inputs.receiveTimestampsMicros = new long[results.size()];
+    for (int i = 0; i < results.size(); i++) {
+      PhotonPipelineResult result = results.get(i);
+      packet.clear();
+      PhotonPipelineResult.photonStruct.pack(packet, result);
+      packed[i] = packet.getWrittenDataCopy();
+      total += packed[i].length;
+      inputs.resultSizes[i] = packed[i].length;
+      inputs.receiveTimestampsMicros[i] = result.ntReceiveTimestampMicros;
+    }
+
+    inputs.results = new byte[total];
+    int offset = 0;
+    for (byte[] result : packed) {
+      System.arraycopy(result, 0, inputs.results, offset, result.length);
+      offset += result.length;
+    }
+  }
+
+  /**
+   * Deserializes the pipeline results in the inputs. Both the robot and replay read the results
+   * back this way, so the code after it runs on exactly the same values.
+   *
+   * @param inputs The inputs to read the results from.
+   * @return List<PhotonPipelineResult>, The results, oldest first.
+   */
+  static List<PhotonPipelineResult> unpack(VisionIOInputs inputs) {
+    List<PhotonPipelineResult> results = new ArrayList<>(inputs.resultSizes.length);
+    int offset = 0;
+    for (int i = 0; i < inputs.resultSizes.length; i++) {
+      byte[] data = new byte[inputs.resultSizes[i]];
+      System.arraycopy(inputs.results, offset, data, 0, data.length);
+      offset += data.length;
+
+      PhotonPipelineResult result = PhotonPipelineResult.photonStruct.unpack(new Packet(data));
+      result.setReceiveTimestampMicros(inputs.receiveTimestampsMicros[i]);
+      results.add(result);
+    }
+    return results;
+  }
+}
@@ -0,0 +1,153 @@
+package frc.robot.subsystems;
+
+import static frc.robot.utils.RobotParameters.LiveRobotValues.*;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import frc.robot.utils.RobotParameters.PhotonVisionConstants;
+import frc.robot.utils.pingu.QueuePingu;
+import frc.robot.utils.pingu.TagPingu;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonCamera;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * The {@link VisionIO} of a real PhotonVision camera.
+ *
+ * <p>A reader thread takes every pipeline result off NetworkTables as it arrives, solves it with
+ * the camera's {@link VisionSolver} against the last estimated robot pose, and hands the result and
+ * its solve to the main loop through a lock-free queue. So no result is missed, and neither reading
+ * nor solving blocks the loop. The main loop serializes the results and observations of each loop
+ * into the inputs.
+ */
+public class VisionIOPhoton implements VisionIO {
+  private final PhotonCamera camera;
+  private final VisionSolver solver;
+  private final Thread reader;
+  private final QueuePingu<Observation> observations =
+      new QueuePingu<>(PhotonVisionConstants.VISION_QUEUE_SIZE);
+  private final List<Observation> loopObservations = new ArrayList<>();
+  private final List<PhotonPipelineResult> loopResults = new ArrayList<>();
+  private final Packet packet = new Packet(1);
+
+  // Written by the reader thread only
+  private volatile long resultsDropped = 0;
+  private volatile long solveNanos = 0;
+
+  /** A pipeline result and its solve, handed from the reader thread to the main loop. */
+  private static final class Observation {
+    private final PhotonPipelineResult result;
+    private final EstimatedRobotPose pose;
+    private final double[] stdDevs;
+    private final double[] stdDevs3d;
+
+    private Observation(
+        PhotonPipelineResult result, EstimatedRobotPose pose, double[] stdDevs, double[] stdDevs3d) {
+      this.result = result;
+      this.pose = pose;
+      this.stdDevs = stdDevs;
+      this.stdDevs3d = stdDevs3d;
+    }
+  }
+
+  /**
+   * Creates the IO of a camera and starts its reader thread.
+   *
+   * @param cameraName The name of the camera in the PhotonVision interface.
+   * @param cameraPos The 3D transform representing the camera's position relative to the robot.
+   */
+  public VisionIOPhoton(String cameraName, Transform3d cameraPos) {
+    this.camera = new PhotonCamera(cameraName);
+    this.solver = new VisionSolver(cameraPos, TagPingu.LAYOUT);
+    this.reader = new Thread(this::runReader, "PhotonReader-" + cameraName);
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /** Reads and solves every unread pipeline result until the thread is interrupted. */
+  private void runReader() {
+    while (!Thread.currentThread().isInterrupted()) {
+      for (PhotonPipelineResult result : camera.getAllUnreadResults()) {
+        long start = System.nanoTime();
+        Optional<EstimatedRobotPose> pose = solver.solve(result, robotPos);
+        solveNanos = System.nanoTime() - start;
+
+        // The solver reuses its arrays, so the observation keeps copies
+        Observation observation =
+            new Observation(
+                result,
+                pose.orElse(null),
+                solver.getStdDevs().clone(),
+                solver.getStdDevs3d().clone());
+        if (!observations.offer(observation)) {
+          resultsDropped++;
+        }
+      }
+
+      try {
+        Thread.sleep(PhotonVisionConstants.VISION_POLL_PERIOD_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    inputs.connected = camera.isConnected();
+
+    loopObservations.clear();
+    loopResults.clear();
+    Observation observation;
+    while ((observation = observations.poll()) != null) {
+      loopObservations.add(observation);
+      loopResults.add(observation.result);
+    }
+    VisionIO.pack(inputs, loopResults, packet);
+
+    int count = loopObservations.size();
+    inputs.solved = new boolean[count];
+    inputs.poses = new Pose3d[count];
+    inputs.strategies = new int[count];
+    inputs.stdDevs = new double[count * 3];
+    inputs.stdDevs3d = new double[count * 4];
+    for (int i = 0; i < count; i++) {
+      observation = loopObservations.get(i);
+      inputs.solved[i] = observation.pose != null;
+      inputs.poses[i] = inputs.solved[i] ? observation.pose.estimatedPose : Pose3d.kZero;
+      inputs.strategies[i] = inputs.solved[i] ? observation.pose.strategy.ordinal() : -1;
+      System.arraycopy(observation.stdDevs, 0, inputs.stdDevs, i * 3, 3);
+      System.arraycopy(observation.stdDevs3d, 0, inputs.stdDevs3d, i * 4, 4);
+    }
+    inputs.solveNanos = solveNanos;
+    inputs.resultsDropped = resultsDropped;
+
+    // The calibration does not change once it is published
+    if (inputs.cameraMatrix.length == 0) {
+      Optional<double[]> cameraMatrix = camera.getCameraMatrix().map(matrix -> matrix.getData());
+      Optional<double[]> distCoeffs = camera.getDistCoeffs().map(matrix -> matrix.getData());
+      if (cameraMatrix.isPresent() && distCoeffs.isPresent()) {
+        inputs.cameraMatrix = cameraMatrix.get();
+        inputs.distCoeffs = distCoeffs.get();
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return camera.getName();
+  }
+
+  /**
+   * Gets the PhotonVision camera behind this IO.
+   *
+   * @return PhotonCamera, The camera.
+   */
+  public PhotonCamera getCamera() {
+    return camera;
+  }
+}
@@ -0,0 +1,23 @@
+package frc.robot.subsystems;
+
+/**
+ * The {@link VisionIO} used when replaying a log. It reads nothing, since AdvantageKit fills the
+ * inputs from the log when they are processed.
+ */
+public class VisionIOReplay implements VisionIO {
+  private final String name;
+
+  /**
+   * Creates a replay camera.
+   *
+   * @param name The name of the camera, which the logged inputs are keyed by.
+   */
+  public VisionIOReplay(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,77 @@
+package frc.robot.subsystems;
+
+import static frc.robot.utils.RobotParameters.PhotonVisionConstants.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import frc.robot.utils.pingu.TagPingu;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+
+/**
+ * The {@link VisionIO} of a simulated PhotonVision camera.
+ *
+ * <p>Every simulated camera is added to one {@link VisionSystemSim} holding the tags of the field
+ * layout, which renders synthetic frames from the simulated robot pose and publishes them to
+ * NetworkTables like a coprocessor would. The results are then read by the same reader thread and
+ * queue as a real camera, so the whole robot side of the pipeline runs as it does on the robot.
+ */
+public class VisionIOSim extends VisionIOPhoton {
+  private static VisionSystemSim system;
+
+  private final PhotonCameraSim cameraSim;
+
+  /**
+   * Creates a simulated camera and adds it to the vision simulation.
+   *
+   * @param cameraName The name of the camera.
+   * @param robotToCamera The transform from the robot to the camera.
+   */
+  public VisionIOSim(String cameraName, Transform3d robotToCamera) {
+    super(cameraName, robotToCamera);
+
+    SimCameraProperties properties = new SimCameraProperties();
+    properties.setCalibration(
+        VISION_SIM_WIDTH, VISION_SIM_HEIGHT, Rotation2d.fromDegrees(VISION_SIM_FOV));
+    properties.setCalibError(0.25, 0.08);
+    properties.setFPS(VISION_SIM_FPS);
+    properties.setAvgLatencyMs(VISION_SIM_LATENCY_MS);
+    properties.setLatencyStdDevMs(VISION_SIM_LATENCY_STD_DEV_MS);
+
+    cameraSim = new PhotonCameraSim(getCamera(), properties, TagPingu.LAYOUT);
+    // Drawing the streams is by far the most expensive part of the simulation and is not needed
+    cameraSim.enableRawStream(false);
+    cameraSim.enableProcessedStream(false);
+    cameraSim.enableDrawWireframe(false);
+
+    getSystem().addCamera(cameraSim, robotToCamera);
+  }
+
+  /**
+   * Gets the vision simulation every simulated camera is added to, creating it with the tags of the
+   * field layout on first use.
+   *
+   * @return VisionSystemSim, The vision simulation.
+   */
+  private static VisionSystemSim getSystem() {
+    if (system == null) {
+      system = new VisionSystemSim("main");
+      system.addAprilTags(TagPingu.LAYOUT);
+    }
+    return system;
+  }
+
+  /**
+   * Renders the frames every simulated camera captures at the given robot pose. Cameras only
+   * publish a frame once their frame period has passed. Must only be called from the main loop.
+   *
+   * @param robotPose The simulated pose of the robot.
+   */
+  public static void update(Pose2d robotPose) {
+    if (system != null) {
+      system.update(robotPose);
+    }
+  }
+}
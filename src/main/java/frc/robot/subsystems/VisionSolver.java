@@ -0,0 +1,160 @@
+package frc.robot.subsystems;
+
+import static org.photonvision.PhotonPoseEstimator.PoseStrategy.*;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import frc.robot.utils.RobotParameters.PhotonVisionConstants;
+import frc.robot.utils.pingu.TagPingu;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+/**
+ * Solves the robot pose and its standard deviations from the pipeline results of one camera.
+ *
+ * <p>Each camera's {@link VisionIOPhoton} reader thread owns a solver and solves every result as it
+ * arrives, so adding cameras does not add solves to the main loop. The solved poses are logged
+ * with the camera inputs, which replay reads instead of solving again. A solver must only be used
+ * from one thread.
+ */
+public class VisionSolver {
+  private final PhotonPoseEstimator photonPoseEstimator;
+
+  // The standard deviations of the last solve, x, y, theta and x, y, z, theta
+  private final double[] stdDevs = new double[3];
+  private final double[] stdDevs3d = new double[4];
+
+  /**
+   * Creates a solver for a camera.
+   *
+   * @param cameraPos The 3D transform representing the camera's position relative to the robot
+   * @param fieldLayout The AprilTag field layout used for pose estimation
+   */
+  public VisionSolver(Transform3d cameraPos, AprilTagFieldLayout fieldLayout) {
+    this.photonPoseEstimator =
+        new PhotonPoseEstimator(fieldLayout, MULTI_TAG_PNP_ON_COPROCESSOR, cameraPos);
+    photonPoseEstimator.setMultiTagFallbackStrategy(LOWEST_AMBIGUITY);
+  }
+
+  /**
+   * Solves the robot pose and standard deviations of a single pipeline result. The standard
+   * deviations are read with {@link #getStdDevs()} and {@link #getStdDevs3d()} afterwards.
+   *
+   * @param result The pipeline result to solve.
+   * @param referencePose The last estimated robot pose, used as the reference by the estimator.
+   * @return Optional<EstimatedRobotPose>, The solved pose, empty if the result could not be solved.
+   */
+  public Optional<EstimatedRobotPose> solve(PhotonPipelineResult result, Pose2d referencePose) {
+    photonPoseEstimator.setReferencePose(referencePose);
+    Optional<EstimatedRobotPose> pose = photonPoseEstimator.update(result);
+    updateEstimatedStdDevs(pose, result.getTargets());
+    return pose;
+  }
+
+  /**
+   * Updates the 2D and 3D estimated standard deviations based on the provided estimated pose and
+   * list of tracked targets.
+   *
+   * <p>This method calculates the number of visible tags and their average planar and 3D distance
+   * to the estimated pose in a single pass, reading the tag positions from {@link TagPingu} so no
+   * objects are allocated per target. It then uses this information to adjust the standard
+   * deviations used for robot pose estimation, a rejected axis gets {@code Double.MAX_VALUE}.
+   *
+   * @param estimatedPose An Optional containing the estimated robot pose.
+   * @param targets A list of PhotonTrackedTarget objects representing the tracked targets.
+   */
+  public void updateEstimatedStdDevs(
+      Optional<EstimatedRobotPose> estimatedPose, List<PhotonTrackedTarget> targets) {
+    if (estimatedPose.isEmpty()) {
+      scale(PhotonVisionConstants.SINGLE_TARGET_STD_DEV, 1.0, stdDevs);
+      scale(PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D, 1.0, stdDevs3d);
+      return;
+    }
+    Translation3d estimatedTranslation = estimatedPose.get().estimatedPose.getTranslation();
+    double estimatedX = estimatedTranslation.getX();
+    double estimatedY = estimatedTranslation.getY();
+    double estimatedZ = estimatedTranslation.getZ();
+
+    int numTags = 0;
+    double totalDistance = 0;
+    double totalDistance3d = 0;
+
+    // Calculate the number of visible tags and their average distances to the estimated pose
+    for (int i = 0; i < targets.size(); i++) {
+      int id = targets.get(i).getFiducialId();
+      if (!TagPingu.has(id)) continue;
+
+      numTags++;
+      double deltaX = TagPingu.x(id) - estimatedX;
+      double deltaY = TagPingu.y(id) - estimatedY;
+      double deltaZ = TagPingu.z(id) - estimatedZ;
+      double planarSquared = deltaX * deltaX + deltaY * deltaY;
+      totalDistance += Math.sqrt(planarSquared);
+      totalDistance3d += Math.sqrt(planarSquared + deltaZ * deltaZ);
+    }
+
+    if (numTags == 0) {
+      scale(PhotonVisionConstants.SINGLE_TARGET_STD_DEV, 1.0, stdDevs);
+      scale(PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D, 1.0, stdDevs3d);
+      return;
+    }
+
+    double avgDistance = totalDistance / numTags;
+    double avgDistance3d = totalDistance3d / numTags;
+
+    if (numTags == 1 && avgDistance > 4) {
+      Arrays.fill(stdDevs, Double.MAX_VALUE);
+    } else {
+      var base =
+          (numTags > 1)
+              ? PhotonVisionConstants.MULTI_TARGET_STD_DEV
+              : PhotonVisionConstants.SINGLE_TARGET_STD_DEV;
+      scale(base, 1 + (avgDistance * avgDistance / 30), stdDevs);
+    }
+
+    if (numTags == 1 && avgDistance3d > 4) {
+      Arrays.fill(stdDevs3d, Double.MAX_VALUE);
+    } else {
+      var base =
+          (numTags > 1)
+              ? PhotonVisionConstants.MULTI_TARGET_STD_DEV_3D
+              : PhotonVisionConstants.SINGLE_TARGET_STD_DEV_3D;
+      scale(base, 1 + (avgDistance3d * avgDistance3d / 30), stdDevs3d);
+    }
+  }
+
+  /**
+   * Gets the standard deviations of the last solve for the 2D pose estimator. The array is reused
+   * by the next solve.
+   *
+   * @return double[], x and y in meters and theta in radians.
+   */
+  public double[] getStdDevs() {
+    return stdDevs;
+  }
+
+  /**
+   * Gets the standard deviations of the last solve for the 3D pose estimator. The array is reused
+   * by the next solve.
+   *
+   * @return double[], x, y and z in meters and theta in radians.
+   */
+  public double[] getStdDevs3d() {
+    return stdDevs3d;
+  }
+
+  /** Writes a column vector of standard deviations multiplied by a factor into an array. */
+  private static void scale(Matrix<?, ?> base, double factor, double[] out) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = base.get(i, 0) * factor;
+    }
+  }
+}
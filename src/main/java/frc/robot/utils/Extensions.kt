@@ -1,88 +1,18 @@
 package frc.robot.utils
 
 import com.ctre.phoenix6.configs.TalonFXConfiguration
-import edu.wpi.first.math.geometry.Pose2d
-import frc.robot.subsystems.PhotonModule
 import frc.robot.utils.pingu.NetworkPingu
 import frc.robot.utils.pingu.Pingu
-import org.photonvision.EstimatedRobotPose
-import org.photonvision.targeting.PhotonPipelineResult
-import java.util.Optional
 
 /**
- * Extension function for a list of PhotonModule objects to get the best PhotonPipelineResult.
+ * Extension function for a list of VisionMeasurement objects to check if any have targets.
  *
- * This function iterates through each PhotonModule in the list, retrieves the latest result,
- * and checks if it has targets. If it does, it compares the pose ambiguity of the target
- * with the current best ambiguity. If the current target's ambiguity is lower, it updates
- * the best result.
+ * This function iterates through each measurement in the list and checks if its PhotonPipelineResult has targets.
  *
- * @receiver List<PhotonModule> The list of PhotonModule objects to search through.
- * @return List<Pair<PhotonModule, PhotonPipelineResult>> The list of PhotonModule and PhotonPipelineResult pairs ordered by pose ambiguity.
+ * @receiver List<VisionMeasurement> The list of measurements to check.
+ * @return Boolean True if any measurement has targets, false otherwise.
  */
-fun List<PhotonModule>.getDecentResultPairs(): List<Pair<PhotonModule, PhotonPipelineResult>> =
-    this
-        .mapNotNull { module ->
-            module.allUnreadResults
-                .getOrNull(0)
-                // TODO make sure this isnt rejecting too much maybe lower it idk
-                ?.takeIf {
-                    it.hasTargets() // && module.currentStdDevs.normF() < 0.9
-                }?.let { module to it }
-        }.sortedBy { it.second.bestTarget.poseAmbiguity }
-
-/**
- * Extension function for a list of Pair<PhotonModule, PhotonPipelineResult> objects to check if any have targets.
- *
- * This function iterates through each pair in the list and checks if the PhotonPipelineResult has targets.
- *
- * @receiver List<Pair<PhotonModule, PhotonPipelineResult>> The list of pairs to check.
- * @return Boolean True if any pair has targets, false otherwise.
- */
-fun List<Pair<PhotonModule, PhotonPipelineResult>>.hasTargets(): Boolean = this.any { it.second.hasTargets() }
-
-/**
- * Extension function for a Pair of PhotonModule and PhotonPipelineResult to get estimated poses.
- *
- * This function sets the reference pose for the pose estimator of the PhotonModule and updates it
- * with the PhotonPipelineResult. If an estimated robot pose is present, it adds it to the list of poses.
- *
- * @receiver Pair<PhotonModule, PhotonPipelineResult> The pair of PhotonModule and PhotonPipelineResult.
- * @param prevEstimatedRobotPose Pose2d? The previous estimated robot pose to set as reference.
- * @return List<EstimatedRobotPose> The list of estimated robot poses.
- */
-fun Pair<PhotonModule, PhotonPipelineResult>.getEstimatedPose(prevEstimatedRobotPose: Pose2d?): EstimatedRobotPose? {
-    first.poseEstimator.apply {
-        setReferencePose(prevEstimatedRobotPose)
-        return update(second).orElse(null)
-    }
-}
-
-/**
- * Extension function for a Pair of PhotonModule and PhotonPipelineResult to update the standard deviations of the estimated robot pose.
- *
- * This function updates the estimated standard deviations of the robot pose using the provided estimated robot pose
- * and the targets from the PhotonPipelineResult.
- *
- * @receiver Pair<PhotonModule, PhotonPipelineResult> The pair of PhotonModule and PhotonPipelineResult.
- * @param estimatedRobotPose Optional<EstimatedRobotPose> The estimated robot pose to use for updating the standard deviations.
- */
-fun Pair<PhotonModule, PhotonPipelineResult>.updateStdDev(estimatedRobotPose: Optional<EstimatedRobotPose>) {
-    first.updateEstimatedStdDevs(estimatedRobotPose, second.getTargets())
-}
-
-/**
- * Extension function for a Pair of PhotonModule and PhotonPipelineResult to update the 3d standard deviations of the estimated robot pose.
- *
- * This function updates the estimated 3d standard deviations of the robot pose using the provided estimated robot pose
- * and the targets from the PhotonPipelineResult.
- *
- * @receiver Pair<PhotonModule, PhotonPipelineResult> The pair of PhotonModule and PhotonPipelineResult.
- * @param estimatedRobotPose Optional<EstimatedRobotPose> The estimated robot pose to use for updating the standard deviations.
- */
-fun Pair<PhotonModule, PhotonPipelineResult>.updateStdDev3d(estimatedRobotPose: Optional<EstimatedRobotPose>) {
-    first.updateEstimatedStdDevs3d(estimatedRobotPose, second.getTargets())
-}
+fun List<VisionMeasurement>.hasTargets(): Boolean = this.any { it.result.hasTargets() }
 
 /**
  * Extension function to set the Pingu values of a TalonFXConfiguration using a Pingu object.
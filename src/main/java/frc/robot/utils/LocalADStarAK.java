@@ -7,7 +7,13 @@ import com.pathplanner.lib.path.PathPoint;
 import com.pathplanner.lib.pathfinding.LocalADStar;
 import com.pathplanner.lib.pathfinding.Pathfinder;
 import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.utils.RobotParameters.FieldParameters;
+import frc.robot.utils.pingu.LogPingu.DoubleKey;
+import frc.robot.utils.pingu.LogPingu.IntKey;
+import frc.robot.utils.pingu.NavGridPingu;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -24,10 +30,40 @@ import org.littletonrobotics.junction.inputs.LoggableInputs;
  * autonomously on the field. It calculates the optimal path from a start position to a goal
  * position while avoiding obstacles. The path is updated dynamically based on the current state of
  * the field and the robot's position.
+ *
+ * <p>Before a request is handed to the AD* search, the straight segment from the start to the goal
+ * is checked against the compiled navgrid with {@link NavGridPingu#isClear}. If it is clear of
+ * obstacles, dynamic obstacles included, the straight path is used right away and the search is
+ * skipped. The number of skipped searches and the planning time they saved, estimated from the
+ * average measured search time, are logged.
  */
 public class LocalADStarAK implements Pathfinder {
+  private static final IntKey FAST_PATHS_KEY = new IntKey("LocalADStarAK/Fast Paths");
+  private static final IntKey SEARCHES_KEY = new IntKey("LocalADStarAK/Searches");
+  private static final DoubleKey SEARCH_LATENCY_KEY =
+      new DoubleKey("LocalADStarAK/Search Latency (ms)");
+  private static final DoubleKey FAST_PATH_LATENCY_KEY =
+      new DoubleKey("LocalADStarAK/Fast Path Latency (ms)");
+  private static final DoubleKey LATENCY_SAVED_KEY =
+      new DoubleKey("LocalADStarAK/Latency Saved (ms)");
+
+  // Placeholders the straight path is built with, the real ones are applied when it is rebuilt
+  private static final PathConstraints FAST_PATH_CONSTRAINTS =
+      PathConstraints.unlimitedConstraints(12.0);
+  private static final GoalEndState FAST_PATH_END_STATE = new GoalEndState(0.0, Rotation2d.kZero);
+
   private final ADStarIO io = new ADStarIO();
 
+  private Translation2d startPosition;
+  private Translation2d goalPosition;
+  private List<Pair<Translation2d, Translation2d>> dynamicObstacles = Collections.emptyList();
+
+  private int fastPaths = 0;
+  private int searches = 0;
+  private long searchRequestedNanos = -1;
+  private double totalSearchMillis = 0.0;
+  private double latencySavedMillis = 0.0;
+
   /**
    * Get if a new path has been calculated since the last time a path was retrieved. This method
    * checks if a new path is available and logs the current state.
@@ -38,6 +74,14 @@ public class LocalADStarAK implements Pathfinder {
   public boolean isNewPathAvailable() {
     if (!Logger.hasReplaySource()) {
       io.updateIsNewPathAvailable();
+      if (io.isNewPathAvailable && searchRequestedNanos >= 0) {
+        double searchMillis = (System.nanoTime() - searchRequestedNanos) / 1e6;
+        searchRequestedNanos = -1;
+        searches++;
+        totalSearchMillis += searchMillis;
+        SEARCHES_KEY.log(searches);
+        SEARCH_LATENCY_KEY.log(searchMillis);
+      }
     }
 
     Logger.processInputs("LocalADStarAK", io);
@@ -47,7 +91,8 @@ public class LocalADStarAK implements Pathfinder {
 
   /**
    * Get the most recently calculated path. This method retrieves the current path based on the
-   * provided constraints and goal end state.
+   * provided constraints and goal end state. The path is only rebuilt when the pathfinder has
+   * calculated new points or the constraints or goal end state changed.
    *
    * @param constraints The path constraints to use when creating the path.
    * @param goalEndState The goal end state to use when creating the path.
@@ -61,11 +106,7 @@ public class LocalADStarAK implements Pathfinder {
 
     Logger.processInputs("LocalADStarAK", io);
 
-    if (io.currentPathPoints.isEmpty()) {
-      return null;
-    }
-
-    return PathPlannerPath.fromPathPoints(io.currentPathPoints, constraints, goalEndState);
+    return io.getPath(constraints, goalEndState);
   }
 
   /**
@@ -78,7 +119,10 @@ public class LocalADStarAK implements Pathfinder {
   @Override
   public void setStartPosition(Translation2d startPosition) {
     if (!Logger.hasReplaySource()) {
-      io.adStar.setStartPosition(startPosition);
+      this.startPosition = startPosition;
+      if (!io.fastPathActive) {
+        io.adStar.setStartPosition(startPosition);
+      }
     }
   }
 
@@ -92,7 +136,8 @@ public class LocalADStarAK implements Pathfinder {
   @Override
   public void setGoalPosition(Translation2d goalPosition) {
     if (!Logger.hasReplaySource()) {
-      io.adStar.setGoalPosition(goalPosition);
+      this.goalPosition = goalPosition;
+      plan();
     }
   }
 
@@ -109,24 +154,162 @@ public class LocalADStarAK implements Pathfinder {
   public void setDynamicObstacles(
       List<Pair<Translation2d, Translation2d>> obs, Translation2d currentRobotPos) {
     if (!Logger.hasReplaySource()) {
+      dynamicObstacles = obs;
+      startPosition = currentRobotPos;
+      if (io.fastPathActive && !isClear(currentRobotPos, goalPosition)) {
+        // The straight path is blocked now, so the search has to take over from where the robot is
+        io.fastPathActive = false;
+        io.adStar.setGoalPosition(goalPosition);
+        searchRequestedNanos = System.nanoTime();
+      }
       io.adStar.setDynamicObstacles(obs, currentRobotPos);
     }
   }
 
+  /**
+   * Uses the straight path from the start to the goal if it is clear, otherwise hands the request
+   * to the AD* search.
+   */
+  private void plan() {
+    long startNanos = System.nanoTime();
+    if (startPosition != null && isClear(startPosition, goalPosition)) {
+      Rotation2d heading = goalPosition.minus(startPosition).getAngle();
+      PathPlannerPath path =
+          new PathPlannerPath(
+              PathPlannerPath.waypointsFromPoses(
+                  new Pose2d(startPosition, heading), new Pose2d(goalPosition, heading)),
+              FAST_PATH_CONSTRAINTS,
+              null,
+              FAST_PATH_END_STATE);
+      io.setFastPath(path.getAllPathPoints());
+      searchRequestedNanos = -1;
+
+      double fastPathMillis = (System.nanoTime() - startNanos) / 1e6;
+      double searchMillis = searches > 0 ? totalSearchMillis / searches : 0.0;
+      fastPaths++;
+      latencySavedMillis += Math.max(0.0, searchMillis - fastPathMillis);
+      FAST_PATHS_KEY.log(fastPaths);
+      FAST_PATH_LATENCY_KEY.log(fastPathMillis);
+      LATENCY_SAVED_KEY.log(latencySavedMillis);
+      return;
+    }
+
+    io.fastPathActive = false;
+    if (startPosition != null) {
+      io.adStar.setStartPosition(startPosition);
+    }
+    io.adStar.setGoalPosition(goalPosition);
+    searchRequestedNanos = System.nanoTime();
+  }
+
+  /**
+   * Checks if the straight segment between two positions is long enough to be worth a path, keeps
+   * {@link FieldParameters#NAVGRID_FAST_PATH_CLEARANCE} nodes from the navgrid obstacles, and
+   * misses every dynamic obstacle.
+   */
+  private boolean isClear(Translation2d start, Translation2d goal) {
+    if (start.getDistance(goal) < NavGridPingu.nodeSize()) {
+      return false;
+    }
+    if (!NavGridPingu.isClear(
+        start.getX(),
+        start.getY(),
+        goal.getX(),
+        goal.getY(),
+        FieldParameters.NAVGRID_FAST_PATH_CLEARANCE)) {
+      return false;
+    }
+
+    double margin = NavGridPingu.nodeSize() * FieldParameters.NAVGRID_FAST_PATH_CLEARANCE;
+    for (Pair<Translation2d, Translation2d> obstacle : dynamicObstacles) {
+      Translation2d a = obstacle.getFirst();
+      Translation2d b = obstacle.getSecond();
+      if (intersects(
+          start,
+          goal,
+          Math.min(a.getX(), b.getX()) - margin,
+          Math.min(a.getY(), b.getY()) - margin,
+          Math.max(a.getX(), b.getX()) + margin,
+          Math.max(a.getY(), b.getY()) + margin)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Checks if a segment crosses an axis-aligned box, clipping the segment against each slab. */
+  private static boolean intersects(
+      Translation2d start,
+      Translation2d end,
+      double minX,
+      double minY,
+      double maxX,
+      double maxY) {
+    double dx = end.getX() - start.getX();
+    double dy = end.getY() - start.getY();
+    double enter = 0.0;
+    double exit = 1.0;
+
+    double[] origins = {start.getX(), start.getY()};
+    double[] directions = {dx, dy};
+    double[] mins = {minX, minY};
+    double[] maxs = {maxX, maxY};
+    for (int axis = 0; axis < 2; axis++) {
+      if (Math.abs(directions[axis]) < 1e-12) {
+        if (origins[axis] < mins[axis] || origins[axis] > maxs[axis]) {
+          return false;
+        }
+        continue;
+      }
+      double t0 = (mins[axis] - origins[axis]) / directions[axis];
+      double t1 = (maxs[axis] - origins[axis]) / directions[axis];
+      enter = Math.max(enter, Math.min(t0, t1));
+      exit = Math.min(exit, Math.max(t0, t1));
+      if (enter > exit) return false;
+    }
+    return true;
+  }
+
   /**
    * A class that handles the input/output operations for the LocalADStar pathfinding algorithm.
    * Implements the LoggableInputs interface to allow logging of pathfinding data. This class is
    * responsible for managing the state of the pathfinding algorithm, including whether a new path
    * is available and the current path points.
+   *
+   * <p>Every new set of path points gets a new generation. The points are only flattened and
+   * logged when the generation changes, and replay only rebuilds them when it reads a new
+   * generation, so an unchanged path costs nothing per loop. The last built path is cached for its
+   * generation.
    */
   private static class ADStarIO implements LoggableInputs {
     public LocalADStar adStar = new LocalADStar();
     public boolean isNewPathAvailable = false;
     public List<PathPoint> currentPathPoints = Collections.emptyList();
 
+    // True while the current plan is a straight path, so results of older searches are ignored
+    public boolean fastPathActive = false;
+
+    // Straight path points waiting to be picked up as the current path points
+    private List<PathPoint> fastPathPoints;
+
+    // Incremented every time currentPathPoints changes
+    public long pathGeneration = 0;
+
+    // Generations of the points last written to and read from the log
+    private long writtenGeneration = -1;
+    private long readGeneration = -1;
+
+    // The last path built from the points, and what it was built with
+    private PathPlannerPath cachedPath;
+    private long cachedGeneration = -1;
+    private PathConstraints cachedConstraints;
+    private GoalEndState cachedGoalEndState;
+
     @Override
     public void toLog(LogTable table) {
       table.put("IsNewPathAvailable", isNewPathAvailable);
+      table.put("PathGeneration", pathGeneration);
+      if (pathGeneration == writtenGeneration) return;
 
       double[] pointsLogged = new double[currentPathPoints.size() * 2];
       int idx = 0;
@@ -137,11 +320,14 @@ public class LocalADStarAK implements Pathfinder {
       }
 
       table.put("CurrentPathPoints", pointsLogged);
+      writtenGeneration = pathGeneration;
     }
 
     @Override
     public void fromLog(LogTable table) {
       isNewPathAvailable = table.get("IsNewPathAvailable", false);
+      pathGeneration = table.get("PathGeneration", 0L);
+      if (pathGeneration == readGeneration) return;
 
       double[] pointsLogged = table.get("CurrentPathPoints", new double[0]);
 
@@ -152,6 +338,7 @@ public class LocalADStarAK implements Pathfinder {
       }
 
       currentPathPoints = pathPoints;
+      readGeneration = pathGeneration;
     }
 
     /**
@@ -159,25 +346,76 @@ public class LocalADStarAK implements Pathfinder {
      * if a new path has been calculated by the pathfinding algorithm.
      */
     public void updateIsNewPathAvailable() {
-      isNewPathAvailable = adStar.isNewPathAvailable();
+      isNewPathAvailable = fastPathActive ? fastPathPoints != null : adStar.isNewPathAvailable();
+    }
+
+    /**
+     * Makes a straight path the current plan, skipping the search. The points are picked up by the
+     * next call to {@link #updateCurrentPathPoints}.
+     *
+     * @param points The points of the straight path.
+     */
+    public void setFastPath(List<PathPoint> points) {
+      List<PathPoint> pathPoints = new ArrayList<>(points.size());
+      for (PathPoint point : points) {
+        pathPoints.add(new PathPoint(point.position, null));
+      }
+      fastPathPoints = pathPoints;
+      fastPathActive = true;
     }
 
     /**
      * Updates the current path points by querying the LocalADStar instance with the provided
-     * constraints and goal end state. This method retrieves the latest path points calculated by
-     * the pathfinding algorithm.
+     * constraints and goal end state. The LocalADStar instance is only queried if it has calculated
+     * a new path since the points were last updated, or there are no points yet. While a straight
+     * path is the current plan, its points are used instead and the search is not queried.
      *
      * @param constraints The path constraints to use when creating the path.
      * @param goalEndState The goal end state to use when creating the path.
      */
     public void updateCurrentPathPoints(PathConstraints constraints, GoalEndState goalEndState) {
+      if (fastPathActive) {
+        if (fastPathPoints != null) {
+          currentPathPoints = fastPathPoints;
+          fastPathPoints = null;
+          pathGeneration++;
+        }
+        return;
+      }
+      if (!adStar.isNewPathAvailable() && !currentPathPoints.isEmpty()) return;
+
       PathPlannerPath currentPath = adStar.getCurrentPath(constraints, goalEndState);
+      List<PathPoint> points =
+          currentPath != null ? currentPath.getAllPathPoints() : Collections.emptyList();
+      if (points.isEmpty() && currentPathPoints.isEmpty()) return;
+
+      currentPathPoints = points;
+      pathGeneration++;
+    }
+
+    /**
+     * Gets the path built from the current path points, reusing the last built path if neither the
+     * points, the constraints, nor the goal end state changed.
+     *
+     * @param constraints The path constraints to use when creating the path.
+     * @param goalEndState The goal end state to use when creating the path.
+     * @return The path, or null if there are no path points.
+     */
+    public PathPlannerPath getPath(PathConstraints constraints, GoalEndState goalEndState) {
+      if (currentPathPoints.isEmpty()) {
+        return null;
+      }
 
-      if (currentPath != null) {
-        currentPathPoints = currentPath.getAllPathPoints();
-      } else {
-        currentPathPoints = Collections.emptyList();
+      if (cachedPath == null
+          || cachedGeneration != pathGeneration
+          || !constraints.equals(cachedConstraints)
+          || !goalEndState.equals(cachedGoalEndState)) {
+        cachedPath = PathPlannerPath.fromPathPoints(currentPathPoints, constraints, goalEndState);
+        cachedGeneration = pathGeneration;
+        cachedConstraints = constraints;
+        cachedGoalEndState = goalEndState;
       }
+      return cachedPath;
     }
   }
 }
@@ -0,0 +1,206 @@
+package frc.robot.utils
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.zip.CRC32
+import kotlin.math.floor
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * Compiles the PathPlanner `navgrid.json` into the packed binary grid [frc.robot.utils.pingu.NavGridPingu] reads.
+ *
+ * The JSON stores every 0.3 m node as a boolean, so the grid is parsed once at build time by the
+ * `compileNavgrid` gradle task instead of on every robot boot. The binary file is laid out as:
+ *
+ * - `int` [MAGIC] and `int` [VERSION]
+ * - `int` length and `int` CRC32 of the navgrid JSON the grid was compiled from, see [isCompiledFrom]
+ * - `double` node size, field length and field width in meters
+ * - `int` columns (x) and rows (y)
+ * - `long` words of the obstacle bitset, bit `row * columns + column` set for a blocked node
+ * - one `byte` per node of clearance, the distance in nodes to the nearest obstacle, 0 for an obstacle
+ *
+ * All values are big-endian, the [ByteBuffer] default.
+ */
+object NavGridCompiler {
+    const val MAGIC: Int = 0x4E415647 // "NAVG"
+    const val VERSION: Int = 2
+
+    // Clearance stored for nodes that are further than this from every obstacle
+    const val MAX_CLEARANCE: Int = 127
+
+    /**
+     * Compiles a navgrid JSON file. Used by the gradle task.
+     *
+     * @param args The navgrid JSON path and the binary output path.
+     */
+    @JvmStatic
+    fun main(args: Array<String>) {
+        require(args.size == 2) { "Usage: NavGridCompiler <navgrid.json> <navgrid.bin>" }
+        val output = File(args[1])
+        output.parentFile?.mkdirs()
+        output.writeBytes(compile(File(args[0])))
+    }
+
+    /**
+     * Parses a navgrid JSON file and packs it into the binary layout.
+     *
+     * @param json The PathPlanner navgrid JSON file.
+     * @return ByteArray, the contents of the binary file.
+     */
+    @JvmStatic
+    fun compile(json: File): ByteArray {
+        val source = json.readBytes()
+        val grid = parse(json)
+        val clearance = clearance(grid.blocked, grid.columns, grid.rows)
+
+        val buffer = ByteBuffer.allocate(16 + 24 + 8 + grid.blocked.size * 8 + clearance.size)
+        buffer.putInt(MAGIC).putInt(VERSION)
+        buffer.putInt(source.size).putInt(checksum(source))
+        buffer.putDouble(grid.nodeSize)
+        buffer.putDouble(grid.fieldLength)
+        buffer.putDouble(grid.fieldWidth)
+        buffer.putInt(grid.columns).putInt(grid.rows)
+        grid.blocked.forEach { buffer.putLong(it) }
+        buffer.put(clearance)
+        return buffer.array()
+    }
+
+    /**
+     * Checks if a compiled navgrid is the current version and was compiled from the given JSON. The
+     * robot checks the file contents rather than modification times, which deploys do not keep and the
+     * roboRIO clock often gets wrong at boot.
+     *
+     * @param binary The contents of the compiled navgrid.
+     * @param json The contents of the navgrid JSON file.
+     * @return Boolean, true if the compiled navgrid is up to date.
+     */
+    @JvmStatic
+    fun isCompiledFrom(
+        binary: ByteArray,
+        json: ByteArray,
+    ): Boolean {
+        if (binary.size < 16) return false
+        val buffer = ByteBuffer.wrap(binary)
+        return buffer.getInt(0) == MAGIC &&
+            buffer.getInt(4) == VERSION &&
+            buffer.getInt(8) == json.size &&
+            buffer.getInt(12) == checksum(json)
+    }
+
+    /**
+     * Gets the CRC32 of some file contents, as stored in compiled headers.
+     *
+     * @param bytes The file contents.
+     * @return Int, the CRC32.
+     */
+    @JvmStatic
+    fun checksum(bytes: ByteArray): Int = CRC32().apply { update(bytes) }.value.toInt()
+
+    /**
+     * Parses a navgrid JSON file into an obstacle bitset.
+     *
+     * @param json The PathPlanner navgrid JSON file.
+     * @return Grid, the parsed navgrid.
+     */
+    internal fun parse(json: File): Grid {
+        val root = ObjectMapper().readTree(json)
+        val nodes = root["grid"]
+        val rows = nodes.size()
+        val columns = nodes[0].size()
+
+        val blocked = LongArray((rows * columns + 63) / 64)
+        for (row in 0 until rows) {
+            for (column in 0 until columns) {
+                if (nodes[row][column].asBoolean()) {
+                    val index = row * columns + column
+                    blocked[index ushr 6] = blocked[index ushr 6] or (1L shl index)
+                }
+            }
+        }
+        return Grid(
+            root["nodeSizeMeters"].asDouble(),
+            root["field_size"]["x"].asDouble(),
+            root["field_size"]["y"].asDouble(),
+            columns,
+            rows,
+            blocked,
+        )
+    }
+
+    /**
+     * Builds the obstacle distance field with a two pass chamfer transform, 1 node for straight steps
+     * and sqrt(2) for diagonal ones. The result is within a few percent of the true distance, which is
+     * plenty for deciding how many nodes a path stays away from an obstacle.
+     */
+    private fun clearance(
+        blocked: LongArray,
+        columns: Int,
+        rows: Int,
+    ): ByteArray {
+        val diagonal = sqrt(2.0)
+        val distance = DoubleArray(rows * columns) { if (isBlockedBit(blocked, it)) 0.0 else Double.MAX_VALUE }
+
+        fun relax(
+            index: Int,
+            column: Int,
+            row: Int,
+            cost: Double,
+        ) {
+            if (column < 0 || column >= columns || row < 0 || row >= rows) return
+            distance[index] = min(distance[index], distance[row * columns + column] + cost)
+        }
+
+        for (row in 0 until rows) {
+            for (column in 0 until columns) {
+                val index = row * columns + column
+                relax(index, column - 1, row, 1.0)
+                relax(index, column - 1, row - 1, diagonal)
+                relax(index, column, row - 1, 1.0)
+                relax(index, column + 1, row - 1, diagonal)
+            }
+        }
+        for (row in rows - 1 downTo 0) {
+            for (column in columns - 1 downTo 0) {
+                val index = row * columns + column
+                relax(index, column + 1, row, 1.0)
+                relax(index, column + 1, row + 1, diagonal)
+                relax(index, column, row + 1, 1.0)
+                relax(index, column - 1, row + 1, diagonal)
+            }
+        }
+
+        return ByteArray(distance.size) { min(floor(distance[it]), MAX_CLEARANCE.toDouble()).toInt().toByte() }
+    }
+
+    private fun isBlockedBit(
+        blocked: LongArray,
+        index: Int,
+    ) = blocked[index ushr 6] and (1L shl index) != 0L
+
+    /**
+     * A parsed navgrid.
+     *
+     * @property nodeSize The size of one node in meters.
+     * @property fieldLength The field length in meters.
+     * @property fieldWidth The field width in meters.
+     * @property columns The number of nodes along the field length.
+     * @property rows The number of nodes along the field width.
+     * @property blocked The obstacle bitset, bit `row * columns + column` set for a blocked node.
+     */
+    internal class Grid(
+        val nodeSize: Double,
+        val fieldLength: Double,
+        val fieldWidth: Double,
+        val columns: Int,
+        val rows: Int,
+        val blocked: LongArray,
+    ) {
+        /** Checks if a node is blocked, nodes off the grid count as blocked. */
+        fun isBlocked(
+            column: Int,
+            row: Int,
+        ) = column < 0 || column >= columns || row < 0 || row >= rows || isBlockedBit(blocked, row * columns + column)
+    }
+}
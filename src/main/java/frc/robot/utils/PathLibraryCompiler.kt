@@ -0,0 +1,214 @@
+package frc.robot.utils
+
+import edu.wpi.first.math.geometry.Pose2d
+import frc.robot.utils.RobotParameters.FieldParameters.RobotPoses
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.PriorityQueue
+import java.util.zip.CRC32
+import kotlin.math.hypot
+import kotlin.math.min
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Precomputes the shortest path from every navgrid node to every [RobotPoses.PATH_LIBRARY_GOALS] pose
+ * and its red alliance copy, for [frc.robot.utils.pingu.PathLibraryPingu].
+ *
+ * One Dijkstra expansion per goal, over 8-connected free nodes without cutting obstacle corners, gives
+ * every node the direction of its next step towards the goal and its distance along the way. Following
+ * the steps from any node is the path; the library straightens it at runtime. The `compilePathLibrary`
+ * gradle task writes the binary file, laid out as:
+ *
+ * - `int` [MAGIC] and `int` [VERSION]
+ * - `int` length of the navgrid JSON and `int` CRC32 of it and the goals, see [isCompiledFrom]
+ * - `int` columns (x) and rows (y), `double` node size in meters
+ * - `int` goal count, then per goal `double` x, y, and heading in radians and `int` approach node
+ * - per goal, one `byte` per node of next step direction ([GOAL] at the approach node, [UNREACHABLE])
+ * - per goal, one `short` per node of path length in centimeters, -1 if unreachable
+ *
+ * The approach node is the free node the path ends at, the goal node itself unless the goal is inside
+ * an obstacle, as the scoring poses against the reef are.
+ */
+object PathLibraryCompiler {
+    const val MAGIC: Int = 0x504C4942 // "PLIB"
+    const val VERSION: Int = 2
+
+    // Step directions, index d moves by (DX[d], DY[d]) and (d + 4) % 8 is its opposite
+    @JvmField
+    val DX: IntArray = intArrayOf(1, 1, 0, -1, -1, -1, 0, 1)
+
+    @JvmField
+    val DY: IntArray = intArrayOf(0, 1, 1, 1, 0, -1, -1, -1)
+
+    const val GOAL: Byte = 8
+    const val UNREACHABLE: Byte = -1
+
+    /**
+     * Compiles the path library for a navgrid JSON file. Used by the gradle task.
+     *
+     * @param args The navgrid JSON path and the binary output path.
+     */
+    @JvmStatic
+    fun main(args: Array<String>) {
+        require(args.size == 2) { "Usage: PathLibraryCompiler <navgrid.json> <pathlibrary.bin>" }
+        val output = File(args[1])
+        output.parentFile?.mkdirs()
+        output.writeBytes(compile(File(args[0])))
+    }
+
+    /**
+     * Gets every goal of the library: the blue goals followed by their red copies.
+     *
+     * @return List<Pose2d>, the goals in the order they are stored.
+     */
+    @JvmStatic
+    fun goals(): List<Pose2d> = RobotPoses.PATH_LIBRARY_GOALS + RobotPoses.PATH_LIBRARY_GOALS.map(RobotPoses::getRedAlliancePose)
+
+    /**
+     * Builds the path library for a navgrid.
+     *
+     * @param json The PathPlanner navgrid JSON file.
+     * @return ByteArray, the contents of the binary file.
+     */
+    @JvmStatic
+    fun compile(json: File): ByteArray {
+        val source = json.readBytes()
+        val grid = NavGridCompiler.parse(json)
+        val goals = goals()
+        val cells = grid.columns * grid.rows
+
+        val buffer = ByteBuffer.allocate(36 + goals.size * 28 + goals.size * cells * 3)
+        buffer.putInt(MAGIC).putInt(VERSION)
+        buffer.putInt(source.size).putInt(checksum(source, goals))
+        buffer.putInt(grid.columns).putInt(grid.rows).putDouble(grid.nodeSize)
+        buffer.putInt(goals.size)
+
+        val approaches = IntArray(goals.size) { approachNode(grid, goals[it]) }
+        goals.forEachIndexed { i, goal ->
+            buffer.putDouble(goal.x).putDouble(goal.y).putDouble(goal.rotation.radians)
+            buffer.putInt(approaches[i])
+        }
+
+        val costs = ArrayList<ShortArray>(goals.size)
+        for (approach in approaches) {
+            val steps = ByteArray(cells)
+            costs.add(expand(grid, approach, steps))
+            buffer.put(steps)
+        }
+        costs.forEach { cost -> cost.forEach { buffer.putShort(it) } }
+        return buffer.array()
+    }
+
+    /**
+     * Checks if a compiled path library is the current version and was compiled from the given navgrid
+     * JSON and goals. Compares file contents rather than modification times, which deploys do not keep
+     * and the roboRIO clock often gets wrong at boot.
+     *
+     * @param binary The contents of the compiled path library.
+     * @param json The contents of the navgrid JSON file.
+     * @param goals The goals the library should hold, as returned by [goals].
+     * @return Boolean, true if the compiled path library is up to date.
+     */
+    @JvmStatic
+    fun isCompiledFrom(
+        binary: ByteArray,
+        json: ByteArray,
+        goals: List<Pose2d>,
+    ): Boolean {
+        if (binary.size < 16) return false
+        val buffer = ByteBuffer.wrap(binary)
+        return buffer.getInt(0) == MAGIC &&
+            buffer.getInt(4) == VERSION &&
+            buffer.getInt(8) == json.size &&
+            buffer.getInt(12) == checksum(json, goals)
+    }
+
+    /** Gets the CRC32 of the navgrid JSON followed by the x, y, and heading of every goal. */
+    private fun checksum(
+        json: ByteArray,
+        goals: List<Pose2d>,
+    ): Int {
+        val crc = CRC32()
+        crc.update(json)
+        val pose = ByteBuffer.allocate(24)
+        for (goal in goals) {
+            pose.clear()
+            pose.putDouble(goal.x).putDouble(goal.y).putDouble(goal.rotation.radians)
+            crc.update(pose.array())
+        }
+        return crc.value.toInt()
+    }
+
+    /** Finds the free node a path to a goal ends at, the free node with its center closest to the goal. */
+    private fun approachNode(
+        grid: NavGridCompiler.Grid,
+        goal: Pose2d,
+    ): Int {
+        var best = -1
+        var bestDistance = Double.MAX_VALUE
+        for (row in 0 until grid.rows) {
+            for (column in 0 until grid.columns) {
+                if (grid.isBlocked(column, row)) continue
+                val distance = hypot((column + 0.5) * grid.nodeSize - goal.x, (row + 0.5) * grid.nodeSize - goal.y)
+                if (distance < bestDistance) {
+                    bestDistance = distance
+                    best = row * grid.columns + column
+                }
+            }
+        }
+        check(best >= 0) { "The navgrid has no free nodes" }
+        return best
+    }
+
+    /**
+     * Runs Dijkstra outwards from the approach node, filling in the step each node takes towards it.
+     *
+     * @return ShortArray, the path length of every node in centimeters, -1 if unreachable.
+     */
+    private fun expand(
+        grid: NavGridCompiler.Grid,
+        approach: Int,
+        steps: ByteArray,
+    ): ShortArray {
+        val distance = DoubleArray(steps.size) { Double.MAX_VALUE }
+        steps.fill(UNREACHABLE)
+        distance[approach] = 0.0
+        steps[approach] = GOAL
+
+        val open = PriorityQueue<Pair<Double, Int>>(compareBy { it.first })
+        open.add(0.0 to approach)
+        while (open.isNotEmpty()) {
+            val (cost, node) = open.poll()
+            if (cost > distance[node]) continue
+            val column = node % grid.columns
+            val row = node / grid.columns
+
+            for (d in 0 until 8) {
+                val nextColumn = column + DX[d]
+                val nextRow = row + DY[d]
+                if (grid.isBlocked(nextColumn, nextRow)) continue
+
+                // A diagonal step may not cut the corner of an obstacle
+                val diagonal = DX[d] != 0 && DY[d] != 0
+                if (diagonal && (grid.isBlocked(nextColumn, row) || grid.isBlocked(column, nextRow))) continue
+
+                val next = nextRow * grid.columns + nextColumn
+                val nextCost = cost + if (diagonal) sqrt(2.0) else 1.0
+                if (nextCost < distance[next]) {
+                    distance[next] = nextCost
+                    steps[next] = ((d + 4) % 8).toByte()
+                    open.add(nextCost to next)
+                }
+            }
+        }
+
+        return ShortArray(steps.size) {
+            if (distance[it] == Double.MAX_VALUE) {
+                -1
+            } else {
+                min(distance[it] * grid.nodeSize * 100, Short.MAX_VALUE.toDouble()).roundToInt().toShort()
+            }
+        }
+    }
+}
@@ -20,14 +20,15 @@ import edu.wpi.first.units.Units.Feet
 import edu.wpi.first.units.Units.Inches
 import edu.wpi.first.units.measure.Distance
 import edu.wpi.first.wpilibj.DriverStation
+import edu.wpi.first.wpilibj.RobotBase
 import frc.robot.utils.emu.AlgaeCounter
 import frc.robot.utils.emu.AlgaePivotState
 import frc.robot.utils.emu.CoralState
 import frc.robot.utils.emu.ElevatorState
+import frc.robot.utils.emu.RobotMode
 import frc.robot.utils.pingu.CoralScore
 import frc.robot.utils.pingu.LogPingu.metaLogs
 import frc.robot.utils.pingu.MagicPingu
-import frc.robot.utils.pingu.PathPingu
 import frc.robot.utils.pingu.Pingu
 import kotlin.math.PI
 import kotlin.math.cos
@@ -107,6 +108,10 @@ object RobotParameters {
             @JvmField
             val PROFILE_CONSTRAINTS = Constraints(0.4, 0.4)
 
+            // Degrees, for the heading controller of AlignToPose
+            @JvmField
+            val ROTATION_PROFILE_CONSTRAINTS = Constraints(5.0, 5.0)
+
             // TODO remember to update path planner config values and measure everything (cameras etc)
             @JvmField
             val PATH_CONSTRAINTS: PathConstraints =
@@ -141,6 +146,14 @@ object RobotParameters {
             @JvmField
             val kinematics: SwerveDriveKinematics =
                 SwerveDriveKinematics(FRONT_LEFT, FRONT_RIGHT, BACK_LEFT, BACK_RIGHT)
+
+            /** Module x offsets from the robot center in meters, in the same order as [kinematics]. */
+            @JvmField
+            val MODULE_X: DoubleArray = doubleArrayOf(FRONT_LEFT.x, FRONT_RIGHT.x, BACK_LEFT.x, BACK_RIGHT.x)
+
+            /** Module y offsets from the robot center in meters, in the same order as [kinematics]. */
+            @JvmField
+            val MODULE_Y: DoubleArray = doubleArrayOf(FRONT_LEFT.y, FRONT_RIGHT.y, BACK_LEFT.y, BACK_RIGHT.y)
         }
 
         /** Class containing various thresholds and constants for the swerve drive system.  */
@@ -162,20 +175,78 @@ object RobotParameters {
             const val X_DEADZONE: Double = 0.1
             const val Y_DEADZONE: Double = 0.1
 
+            // Rate (Hz) the drive thread samples the drive encoders, CANcoders, and pidgey and sends the module
+            // setpoints at. Everything is on the roboRIO CAN bus (1 Mbit/s, roughly 8000 frames/s), where the 9
+            // status signals and 8 control frames cost about 1700 frames/s at 100 Hz. That is around a fifth of
+            // the bus, leaving room for the other devices' default status frames; 250 Hz would take over half.
+            const val ODOMETRY_FREQUENCY: Double = 100.0
+
+            // Number of odometry samples buffered between main loop iterations, new samples are dropped when it is full
+            const val ODOMETRY_QUEUE_SIZE: Int = 20
+
+            // Real-time priority of the drive thread, above the main loop which runs at normal priority
+            const val DRIVE_THREAD_PRIORITY: Int = 50
+
+            // Seconds a drive request is followed before the drive thread stops the modules
+            const val DRIVE_REQUEST_TIMEOUT: Double = 0.1
+
             // Testing boolean for logging (to not slow down the robot)
 //            val TEST_MODE: Boolean = !DriverStation.isFMSAttached()
             val TEST_MODE: Boolean = true
         }
     }
 
+    /** Class for the parameters of PerfPingu's loop timing reports. */
+    object PerfParameters {
+        // Number of samples each loop time histogram keeps, 250 loops is the last 5 seconds
+        const val PERF_WINDOW: Int = 250
+
+        // Seconds between loop time percentiles being logged
+        const val PERF_REPORT_PERIOD: Double = 1.0
+    }
+
+    /** Class for the parameters of MemoryPingu's allocation tracking and garbage collection. */
+    object MemoryParameters {
+        // Bytes the main loop is expected to allocate per loop, loops above it are counted
+        const val ALLOCATION_BUDGET: Long = 64 * 1024
+
+        // Seconds between explicit garbage collections while the robot is disabled
+        const val GC_DISABLED_PERIOD: Double = 5.0
+    }
+
+    /** Class for the parameters of AlertPingu's device checks. */
+    object AlertParameters {
+        // Rate (Hz) the CAN devices are checked for disconnections at
+        const val ALERT_RATE: Double = 2.0
+    }
+
+    /** Class for the parameters of LogPingu's log ring, drain thread, and log policies. */
+    object LoggingParameters {
+        // Number of log records buffered between the loop and the log drain thread before new ones are dropped
+        const val LOG_RING_SIZE: Int = 4096
+
+        // Rate (Hz) current and voltage readings are logged at, they are noisy and change every loop
+        const val LOG_CURRENT_RATE: Double = 10.0
+
+        // Smallest change in a mechanism position (rotations) that is worth logging
+        const val LOG_POSITION_EPSILON: Double = 0.01
+
+        // Seconds between checks of the LogPolicy NetworkTables tree for policy overrides
+        const val LOG_POLICY_POLL_PERIOD: Double = 1.0
+    }
+
     /** CLass for robot values that change and affect the robot. */
     object LiveRobotValues {
         const val LOW_BATTERY_VOLTAGE: Double = 11.8
 
         // make this a supplier
+        // Read by the camera reader threads as the reference pose, so it has to be volatile
+        @Volatile
         @JvmField
         var robotPos: Pose2d = Pose2d(0.0, 0.0, Rotation2d(0.0, 0.0))
 
+        // Read by the LED task thread, so it has to be volatile
+        @Volatile
         @JvmField
         var lowBattery: Boolean = false
 
@@ -195,6 +266,53 @@ object RobotParameters {
         const val LEFT_OFFSET: Double = 0.163
         const val RIGHT_OFFSET: Double = -0.163
 
+        // Results older than the 1.5 s pose estimator buffer would be thrown away by the estimator anyway
+        const val MAX_RESULT_AGE: Double = 1.5
+
+        // Solved results buffered per camera between main loop iterations before new ones are dropped
+        const val VISION_QUEUE_SIZE: Int = 32
+
+        // How long (ms) a camera reader thread sleeps between checks for new pipeline results
+        const val VISION_POLL_PERIOD_MS: Long = 5
+
+        // Seconds apart results from different cameras can be and still be solved together as one pose
+        const val FUSION_TIME_WINDOW: Double = 0.015
+
+        // Most tag corners the fused solver takes at once, 4 per tag
+        const val FUSED_MAX_CORNERS: Int = 64
+
+        // Gauss-Newton iterations the fused solver may take before giving up
+        const val FUSED_MAX_ITERATIONS: Int = 10
+
+        // Step size (meters and radians) below which the fused solve counts as converged
+        const val FUSED_CONVERGED_STEP: Double = 1e-5
+
+        // Largest RMS corner error (normalized image units, about pixels / focal length) a fused solve may have
+        const val FUSED_MAX_RMS: Double = 0.01
+
+        // Cameras in the vision simulation, the first two are the real left and right cameras
+        const val VISION_SIM_CAMERAS: Int = 2
+
+        // Frame rate (Hz), average latency, and latency jitter (ms) of each simulated camera
+        const val VISION_SIM_FPS: Double = 30.0
+        const val VISION_SIM_LATENCY_MS: Double = 35.0
+        const val VISION_SIM_LATENCY_STD_DEV_MS: Double = 5.0
+
+        // Resolution (pixels) and diagonal field of view (degrees) of each simulated camera
+        const val VISION_SIM_WIDTH: Int = 1280
+        const val VISION_SIM_HEIGHT: Int = 800
+        const val VISION_SIM_FOV: Double = 75.0
+
+        // The simulated robot orbits the blue reef at this radius (m) and period (s) so tags come in and out of view
+        const val VISION_SIM_ORBIT_RADIUS: Double = 2.5
+        const val VISION_SIM_ORBIT_PERIOD: Double = 20.0
+
+        // Seconds between reports of the vision frame rates and latency percentiles
+        const val VISION_REPORT_PERIOD: Double = 1.0
+
+        // Results kept per camera for the latency and frame age percentiles
+        const val VISION_METRICS_WINDOW: Int = 200
+
         // THESE NEED TO BE REPLACED WITH TESTED VALUES PLS (BUT I KNOW WE WON'T HAVE TIME FOR THIS)
         @JvmField
         val SINGLE_TARGET_STD_DEV: Matrix<N3, N1> = VecBuilder.fill(0.08, 0.08, 0.05)
@@ -223,6 +341,8 @@ object RobotParameters {
 
         const val ELEVATOR_SOFT_LIMIT_UP: Double = 65.0
 
+        // Read by the LED task thread, so it has to be volatile
+        @Volatile
         @JvmField
         var elevatorToBeSetState: ElevatorState = ElevatorState.L4
 
@@ -280,6 +400,23 @@ object RobotParameters {
 
         val AprilTagFieldLayout = AprilTagFields.k2025ReefscapeWelded
 
+        // Center of the blue reef, halfway between its opposite faces
+        @JvmField
+        val BLUE_REEF_CENTER: Translation2d = Translation2d(4.489, 4.026)
+
+        // PathPlanner navgrid, and the packed copy the compileNavgrid gradle task builds, in the deploy directory
+        const val NAVGRID_JSON: String = "pathplanner/navgrid.json"
+        const val NAVGRID_FILE: String = "pathplanner/navgrid.bin"
+
+        // Nodes a straight path has to stay from every obstacle to skip the AD* search, 1 only needs free nodes
+        const val NAVGRID_FAST_PATH_CLEARANCE: Int = 1
+
+        // Precomputed paths to every PATH_LIBRARY_GOALS pose, built by the compilePathLibrary gradle task
+        const val PATH_LIBRARY_FILE: String = "pathplanner/pathlibrary.bin"
+
+        // Meters a pathfinding target may be from a library goal and still use its precomputed paths
+        const val PATH_LIBRARY_GOAL_TOLERANCE: Double = 0.15
+
         val FIELD_LENGTH: Distance = Feet.of(57.0).plus(Inches.of(6.0 + 7.0 / 8.0))
         val FIELD_WIDTH: Distance = Feet.of(26.0).plus(Inches.of(5.0))
 
@@ -392,29 +529,6 @@ object RobotParameters {
                     FIELD_WIDTH_METERS - blueTranslation.y,
                 )
 
-            @JvmStatic
-            fun addCoralPosList() {
-                if (DriverStation.getAlliance().isPresent) {
-                    if (DriverStation.getAlliance().get() == DriverStation.Alliance.Blue) {
-                        PathPingu.addCoralScoringPositions(coralScoreBlueList)
-                        PathPingu.addCoralScoringPositionsNotL4(coralScoreBlueListNotL4)
-                    } else {
-                        val coralScoreRedList =
-                            coralScoreBlueList.map {
-                                Triple(getRedAllianceTranslation(it.first), getRedAlliancePose(it.second), getRedAlliancePose(it.third))
-                            }
-                        val coralScoreRedListNotL4 =
-                            coralScoreBlueListNotL4.map {
-                                Triple(getRedAllianceTranslation(it.first), getRedAlliancePose(it.second), getRedAlliancePose(it.third))
-                            }
-                        PathPingu.addCoralScoringPositions(coralScoreRedList)
-                        PathPingu.addCoralScoringPositionsNotL4(coralScoreRedListNotL4)
-                    }
-                }
-//                PathPingu.addCoralScoringPositions(coralScoreBlueList)
-//                PathPingu.addCoralScoringPositionsNotL4(coralScoreBlueListNotL4)
-            }
-
             // TODO convert to red, now we need to implement it so that we do not have to swap sides every deploy
             // REMEMBER EVERY DEPLOY CHANGE THE DRIVERSATION TO THE CORRECT COLOR
 
@@ -430,11 +544,41 @@ object RobotParameters {
 
             @JvmField
             val RIGHT_CORAL_STATION_NEAR: Pose2d = Pose2d(0.64, 1.37, fromDegrees(55.0))
+
+            // Blue poses with precomputed paths, the red copies are added by the path library
+            @JvmField
+            val PATH_LIBRARY_GOALS: List<Pose2d> =
+                listOf(
+                    SCORING_A_BLUE,
+                    SCORING_B_BLUE,
+                    SCORING_C_BLUE,
+                    SCORING_D_BLUE,
+                    SCORING_E_BLUE,
+                    SCORING_F_BLUE,
+                    SCORING_G_BLUE,
+                    SCORING_H_BLUE,
+                    SCORING_I_BLUE,
+                    SCORING_J_BLUE,
+                    SCORING_K_BLUE,
+                    SCORING_L_BLUE,
+                    LEFT_CORAL_STATION_FAR,
+                    LEFT_CORAL_STATION_NEAR,
+                    RIGHT_CORAL_STATION_FAR,
+                    RIGHT_CORAL_STATION_NEAR,
+                )
         }
     }
 
     /** Important external information */
     object Info {
+        // System property and environment variable that pick SIM or REPLAY when not running on the robot
+        const val SIM_MODE_PROPERTY: String = "robot.mode"
+        const val SIM_MODE_ENVIRONMENT: String = "ROBOT_MODE"
+
+        // Where the code gets its inputs when it is not running on the robot, SIM unless REPLAY is asked for
+        @JvmField
+        val SIM_MODE: RobotMode = readSimMode()
+
         private const val ROBOT_NAME: String = "Nautilus"
         private const val TEAM_NUMBER: String = "4079"
         private const val TEAM_NAME: String = "Quantum Leap"
@@ -442,6 +586,31 @@ object RobotParameters {
         private val MATCH_NUMBER: String = DriverStation.getMatchNumber().toString()
         private val ALLIANCE: String = DriverStation.getAlliance().toString()
 
+        /**
+         * Gets where the code is running and where its inputs come from.
+         *
+         * @return RobotMode, REAL on the robot, otherwise [SIM_MODE].
+         */
+        @JvmStatic
+        val mode: RobotMode
+            get() = if (RobotBase.isReal()) RobotMode.REAL else SIM_MODE
+
+        /**
+         * Reads the desktop mode from the [SIM_MODE_PROPERTY] system property, or the
+         * [SIM_MODE_ENVIRONMENT] environment variable, which the replayWatch gradle task sets to REPLAY.
+         *
+         * @return RobotMode, SIM or REPLAY, SIM if neither is set to a desktop mode.
+         */
+        private fun readSimMode(): RobotMode {
+            val text = System.getProperty(SIM_MODE_PROPERTY) ?: System.getenv(SIM_MODE_ENVIRONMENT) ?: return RobotMode.SIM
+            val mode = RobotMode.entries.firstOrNull { it.name.equals(text.trim(), ignoreCase = true) }
+            if (mode == null || mode == RobotMode.REAL) {
+                println("Unsupported robot mode $text, running as SIM")
+                return RobotMode.SIM
+            }
+            return mode
+        }
+
         @JvmStatic
         fun logInfo() {
             metaLogs("Robot Name", ROBOT_NAME)
@@ -455,5 +624,8 @@ object RobotParameters {
 
     object LEDValues {
         const val LED_COUNT: Int = 120
+
+        // Rate (Hz) the LED patterns are updated at, faster than this is not visible
+        const val LED_RATE: Double = 20.0
     }
 }
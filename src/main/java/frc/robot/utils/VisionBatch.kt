@@ -0,0 +1,290 @@
+package frc.robot.utils
+
+import edu.wpi.first.math.VecBuilder
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator3d
+import edu.wpi.first.math.geometry.Pose2d
+import edu.wpi.first.math.geometry.Pose3d
+import edu.wpi.first.math.geometry.Rotation2d
+import edu.wpi.first.math.geometry.Rotation3d
+import edu.wpi.first.wpilibj.Timer
+import frc.robot.utils.pingu.LogPingu.DoubleKey
+import frc.robot.utils.pingu.LogPingu.IntKey
+import frc.robot.utils.pingu.PerfPingu.PerfTimer
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.asin
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+import kotlin.math.withSign
+
+/**
+ * Applies all the vision measurements of one loop to the pose estimators as a single update.
+ *
+ * Each pose estimator call with a past timestamp looks up the odometry and estimate at that time and
+ * throws away every vision update after it, so the cost grows with the number of cameras and their
+ * frame rate. Instead, every measurement of the loop is moved to the timestamp of the newest one along
+ * the estimated trajectory, and the moved poses are merged with inverse-variance weights. Each estimator
+ * then gets one measurement per loop, no matter how many cameras there are.
+ *
+ * A measurement is moved with the same rigid transform as `transformBy(Transform3d(then, latest))`,
+ * but worked out on primitives and scratch arrays, so the move itself allocates no transform, pose,
+ * or quaternion. Looking up the estimate at the measurement's timestamp with `sampleAt` still
+ * allocates an Optional and an interpolated pose per measurement. Only the main thread may apply
+ * measurements.
+ *
+ * @property poseEstimator The 2D pose estimator.
+ * @property poseEstimator3d The 3D pose estimator.
+ */
+class VisionBatch(
+    private val poseEstimator: SwerveDrivePoseEstimator,
+    private val poseEstimator3d: SwerveDrivePoseEstimator3d,
+) {
+    private val timer = PerfTimer("Swerve/Vision Batch")
+    private val sizeKey = IntKey("Swerve/Vision Batch Size")
+    private val depthKey = DoubleKey("Swerve/Vision Batch Depth (s)")
+
+    // Scratch quaternions (w, x, y, z) and offset (x, y, z) for moving a 3D measurement
+    private val delta = DoubleArray(4)
+    private val moved = DoubleArray(4)
+    private val offset = DoubleArray(3)
+
+    /**
+     * Merges the measurements of this loop and applies them to both pose estimators.
+     *
+     * @param measurements The measurements of this loop, ordered oldest first.
+     * @return The number of measurements with a pose that were applied.
+     */
+    fun apply(measurements: List<VisionMeasurement>): Int {
+        timer.start()
+        var count = 0
+        var oldest = Double.MAX_VALUE
+        var newest = -Double.MAX_VALUE
+        for (i in measurements.indices) {
+            val pose = measurements[i].pose ?: continue
+            count++
+            oldest = minOf(oldest, pose.timestampSeconds)
+            newest = maxOf(newest, pose.timestampSeconds)
+        }
+
+        if (count == 1) {
+            applyEach(measurements)
+        } else if (count > 1) {
+            val latest = poseEstimator.sampleAt(newest)
+            val latest3d = poseEstimator3d.sampleAt(newest)
+            if (latest.isEmpty || latest3d.isEmpty) {
+                applyEach(measurements)
+            } else {
+                merge(measurements, newest, latest.get())
+                merge3d(measurements, newest, latest3d.get())
+            }
+        }
+
+        sizeKey.log(count)
+        depthKey.log(if (count == 0) 0.0 else Timer.getFPGATimestamp() - oldest)
+        timer.stop()
+        return count
+    }
+
+    /** Applies each measurement on its own, used when there is nothing to merge or no trajectory yet. */
+    private fun applyEach(measurements: List<VisionMeasurement>) {
+        for (i in measurements.indices) {
+            val measurement = measurements[i]
+            val pose = measurement.pose ?: continue
+            poseEstimator.addVisionMeasurement(
+                pose.estimatedPose.toPose2d(),
+                pose.timestampSeconds,
+                measurement.stdDevs,
+            )
+            poseEstimator3d.addVisionMeasurement(pose.estimatedPose, pose.timestampSeconds, measurement.stdDevs3d)
+        }
+    }
+
+    /**
+     * Moves every measurement to the newest timestamp and applies their weighted mean to the 2D estimator.
+     * An axis that every measurement rejects with an infinite standard deviation is left out.
+     */
+    private fun merge(
+        measurements: List<VisionMeasurement>,
+        timestamp: Double,
+        latest: Pose2d,
+    ) {
+        var sumX = 0.0
+        var weightX = 0.0
+        var sumY = 0.0
+        var weightY = 0.0
+        var sumCos = 0.0
+        var sumSin = 0.0
+        var weightTheta = 0.0
+
+        for (i in measurements.indices) {
+            val measurement = measurements[i]
+            val pose = measurement.pose ?: continue
+            val then = poseEstimator.sampleAt(pose.timestampSeconds)
+            if (then.isEmpty) continue
+
+            // Rotate the odometry's motion from then to latest into the measurement's frame and add it
+            val start = then.get()
+            val turn = pose.estimatedPose.rotation.z - start.rotation.radians
+            val cosTurn = cos(turn)
+            val sinTurn = sin(turn)
+            val dx = latest.x - start.x
+            val dy = latest.y - start.y
+            val movedYaw = turn + latest.rotation.radians
+
+            val wx = weight(measurement.stdDevs[0, 0])
+            val wy = weight(measurement.stdDevs[1, 0])
+            val wTheta = weight(measurement.stdDevs[2, 0])
+            sumX += wx * (pose.estimatedPose.x + dx * cosTurn - dy * sinTurn)
+            weightX += wx
+            sumY += wy * (pose.estimatedPose.y + dx * sinTurn + dy * cosTurn)
+            weightY += wy
+            sumCos += wTheta * cos(movedYaw)
+            sumSin += wTheta * sin(movedYaw)
+            weightTheta += wTheta
+        }
+        if (weightX == 0.0 || weightY == 0.0 || weightTheta == 0.0) return
+
+        poseEstimator.addVisionMeasurement(
+            Pose2d(sumX / weightX, sumY / weightY, Rotation2d(atan2(sumSin, sumCos))),
+            timestamp,
+            VecBuilder.fill(deviation(weightX), deviation(weightY), deviation(weightTheta)),
+        )
+    }
+
+    /**
+     * Moves every measurement to the newest timestamp and applies their weighted mean to the 3D estimator.
+     * Roll and pitch stay small on the carpet, so they are averaged directly, and yaw is averaged on the
+     * unit circle.
+     */
+    private fun merge3d(
+        measurements: List<VisionMeasurement>,
+        timestamp: Double,
+        latest: Pose3d,
+    ) {
+        var sumX = 0.0
+        var weightX = 0.0
+        var sumY = 0.0
+        var weightY = 0.0
+        var sumZ = 0.0
+        var weightZ = 0.0
+        var sumRoll = 0.0
+        var sumPitch = 0.0
+        var sumCos = 0.0
+        var sumSin = 0.0
+        var weightTheta = 0.0
+
+        for (i in measurements.indices) {
+            val measurement = measurements[i]
+            val pose = measurement.pose ?: continue
+            val then = poseEstimator3d.sampleAt(pose.timestampSeconds)
+            if (then.isEmpty) continue
+
+            // The rotation from then to the measurement, delta = q * then⁻¹, carries the odometry's
+            // motion from then to latest into the measurement's frame
+            val start = then.get()
+            val q = pose.estimatedPose.rotation.quaternion
+            val qStart = start.rotation.quaternion
+            val qLatest = latest.rotation.quaternion
+            multiply(q.w, q.x, q.y, q.z, qStart.w, -qStart.x, -qStart.y, -qStart.z, delta)
+            rotate(delta, latest.x - start.x, latest.y - start.y, latest.z - start.z, offset)
+            multiply(delta[0], delta[1], delta[2], delta[3], qLatest.w, qLatest.x, qLatest.y, qLatest.z, moved)
+
+            val wx = weight(measurement.stdDevs3d[0, 0])
+            val wy = weight(measurement.stdDevs3d[1, 0])
+            val wz = weight(measurement.stdDevs3d[2, 0])
+            val wTheta = weight(measurement.stdDevs3d[3, 0])
+            val movedYaw = yaw(moved)
+            sumX += wx * (pose.estimatedPose.x + offset[0])
+            weightX += wx
+            sumY += wy * (pose.estimatedPose.y + offset[1])
+            weightY += wy
+            sumZ += wz * (pose.estimatedPose.z + offset[2])
+            weightZ += wz
+            sumRoll += wTheta * roll(moved)
+            sumPitch += wTheta * pitch(moved)
+            sumCos += wTheta * cos(movedYaw)
+            sumSin += wTheta * sin(movedYaw)
+            weightTheta += wTheta
+        }
+        if (weightX == 0.0 || weightY == 0.0 || weightZ == 0.0 || weightTheta == 0.0) return
+
+        poseEstimator3d.addVisionMeasurement(
+            Pose3d(
+                sumX / weightX,
+                sumY / weightY,
+                sumZ / weightZ,
+                Rotation3d(sumRoll / weightTheta, sumPitch / weightTheta, atan2(sumSin, sumCos)),
+            ),
+            timestamp,
+            VecBuilder.fill(deviation(weightX), deviation(weightY), deviation(weightZ), deviation(weightTheta)),
+        )
+    }
+
+    /** Gets the inverse-variance weight of a standard deviation, zero for a rejected measurement. */
+    private fun weight(stdDev: Double) = 1 / (stdDev * stdDev)
+
+    /** Gets the standard deviation of a weighted mean from its total weight. */
+    private fun deviation(weight: Double) = 1 / sqrt(weight)
+
+    /** Stores the Hamilton product a * b of two quaternions in [out] as w, x, y, z. */
+    private fun multiply(
+        aw: Double,
+        ax: Double,
+        ay: Double,
+        az: Double,
+        bw: Double,
+        bx: Double,
+        by: Double,
+        bz: Double,
+        out: DoubleArray,
+    ) {
+        out[0] = aw * bw - ax * bx - ay * by - az * bz
+        out[1] = aw * bx + ax * bw + ay * bz - az * by
+        out[2] = aw * by - ax * bz + ay * bw + az * bx
+        out[3] = aw * bz + ax * by - ay * bx + az * bw
+    }
+
+    /** Stores the vector (x, y, z) rotated by the unit quaternion [q] in [out]. */
+    private fun rotate(
+        q: DoubleArray,
+        x: Double,
+        y: Double,
+        z: Double,
+        out: DoubleArray,
+    ) {
+        // v + w * t + u × t, where u is the vector part of q and t = 2 * u × v
+        val tx = 2 * (q[2] * z - q[3] * y)
+        val ty = 2 * (q[3] * x - q[1] * z)
+        val tz = 2 * (q[1] * y - q[2] * x)
+        out[0] = x + q[0] * tx + q[2] * tz - q[3] * ty
+        out[1] = y + q[0] * ty + q[3] * tx - q[1] * tz
+        out[2] = z + q[0] * tz + q[1] * ty - q[2] * tx
+    }
+
+    /** Gets the roll of a unit quaternion in radians, the same as [Rotation3d.getX]. */
+    private fun roll(q: DoubleArray): Double {
+        val cxcy = 1 - 2 * (q[1] * q[1] + q[2] * q[2])
+        val sxcy = 2 * (q[0] * q[1] + q[2] * q[3])
+        return if (cxcy * cxcy + sxcy * sxcy > 1e-20) atan2(sxcy, cxcy) else 0.0
+    }
+
+    /** Gets the pitch of a unit quaternion in radians, the same as [Rotation3d.getY]. */
+    private fun pitch(q: DoubleArray): Double {
+        val ratio = 2 * (q[0] * q[2] - q[3] * q[1])
+        return if (abs(ratio) >= 1) (PI / 2).withSign(ratio) else asin(ratio)
+    }
+
+    /** Gets the yaw of a unit quaternion in radians, the same as [Rotation3d.getZ]. */
+    private fun yaw(q: DoubleArray): Double {
+        val cycz = 1 - 2 * (q[2] * q[2] + q[3] * q[3])
+        val cysz = 2 * (q[0] * q[3] + q[1] * q[2])
+        return if (cycz * cycz + cysz * cysz > 1e-20) {
+            atan2(cysz, cycz)
+        } else {
+            atan2(2 * q[0] * q[3], q[0] * q[0] - q[3] * q[3])
+        }
+    }
+}
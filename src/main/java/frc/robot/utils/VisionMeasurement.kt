@@ -0,0 +1,30 @@
+package frc.robot.utils
+
+import edu.wpi.first.math.Matrix
+import edu.wpi.first.math.numbers.N1
+import edu.wpi.first.math.numbers.N3
+import edu.wpi.first.math.numbers.N4
+import frc.robot.subsystems.PhotonModule
+import org.photonvision.EstimatedRobotPose
+import org.photonvision.targeting.PhotonPipelineResult
+
+/**
+ * A pipeline result that has already been solved by a PhotonModule.
+ *
+ * @property camera The PhotonModule that produced the result.
+ * @property result The pipeline result from the camera.
+ * @property pose The estimated robot pose, or null if the pose estimator could not solve the result.
+ * @property stdDevs The standard deviations to use with the 2D pose estimator.
+ * @property stdDevs3d The standard deviations to use with the 3D pose estimator.
+ */
+data class VisionMeasurement(
+    val camera: PhotonModule,
+    val result: PhotonPipelineResult,
+    val pose: EstimatedRobotPose?,
+    val stdDevs: Matrix<N3, N1>,
+    val stdDevs3d: Matrix<N4, N1>,
+) {
+    /** The capture timestamp of the result in seconds. */
+    val timestamp: Double
+        get() = result.timestampSeconds
+}
@@ -4,29 +4,31 @@ import edu.wpi.first.wpilibj.XboxController
 
 /**
  * Enum class representing the buttons on a joystick or game controller.
+ *
+ * @property isHeld Whether the button is currently held down. Presses are detected from its rising edge.
  */
 enum class Button(
-    val checkPressed: (XboxController) -> Boolean,
+    val isHeld: (XboxController) -> Boolean,
 ) {
-    A({ it.aButtonPressed }),
+    A({ it.aButton }),
 
-    B({ it.bButtonPressed }),
+    B({ it.bButton }),
 
-    X({ it.xButtonPressed }),
+    X({ it.xButton }),
 
-    Y({ it.yButtonPressed }),
+    Y({ it.yButton }),
 
-    START({ it.startButtonPressed }),
+    START({ it.startButton }),
 
-    LEFT_BUMPER({ it.leftBumperButtonPressed }),
+    LEFT_BUMPER({ it.leftBumperButton }),
 
-    RIGHT_BUMPER({ it.rightBumperButtonPressed }),
+    RIGHT_BUMPER({ it.rightBumperButton }),
 
-    BACK({ it.backButtonPressed }),
+    BACK({ it.backButton }),
 
-    LEFT_STICK({ it.leftStickButtonPressed }),
+    LEFT_STICK({ it.leftStickButton }),
 
-    RIGHT_STICK({ it.rightStickButtonPressed }),
+    RIGHT_STICK({ it.rightStickButton }),
 
     LEFT_TRIGGER({ it.leftTriggerAxis > 0.5 }),
 
@@ -0,0 +1,15 @@
+package frc.robot.utils.emu
+
+/**
+ * The LogMode enum represents when a log key hands its value to AdvantageKit.
+ */
+enum class LogMode {
+    /** Log every value, for keys used in control or tuning.  */
+    ALWAYS,
+
+    /** Only log a value once it differs from the last logged value by more than an epsilon.  */
+    ON_CHANGE,
+
+    /** Log the latest value at a fixed rate, for noisy values such as current readings.  */
+    RATE,
+}
@@ -0,0 +1,15 @@
+package frc.robot.utils.emu
+
+/**
+ * The RobotMode enum represents where the robot code is running and where its inputs come from.
+ */
+enum class RobotMode {
+    /** Running on the roboRIO with real hardware.  */
+    REAL,
+
+    /** Running on a desktop against simulated hardware.  */
+    SIM,
+
+    /** Running on a desktop, reading the inputs back from a log file.  */
+    REPLAY,
+}
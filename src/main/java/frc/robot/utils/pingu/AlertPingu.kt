@@ -5,6 +5,8 @@ import com.ctre.phoenix6.hardware.TalonFX
 import edu.wpi.first.wpilibj.Alert
 import edu.wpi.first.wpilibj.Alert.AlertType.kError
 import edu.wpi.first.wpilibj2.command.SubsystemBase
+import frc.robot.utils.RobotParameters.AlertParameters.ALERT_RATE
+import java.util.concurrent.CopyOnWriteArrayList
 
 /**
  * Type alias for a pair consisting of a device and its corresponding alert.
@@ -19,23 +21,46 @@ typealias DeviceAlert = Pair<Any, Alert>
  * providing real-time monitoring through WPILib's alert system. It's designed for early
  * detection of CAN bus or device issues during matches and testing.
  *
+ * The devices are polled at [ALERT_RATE] on a RatePingu task instead of every loop. Alerts are read by
+ * the main loop, so the task only publishes the connection states, and [periodic] applies them.
+ *
  * @property devicePairs Pairs of monitored devices and their corresponding alerts
  */
 object AlertPingu : SubsystemBase() {
-    private val devicePairs = mutableListOf<DeviceAlert>()
+    private val devicePairs = CopyOnWriteArrayList<DeviceAlert>()
+    private val periodicTimer = PerfPingu.PerfTimer("Subsystems/AlertPingu")
+
+    // Disconnected flag of each device in devicePairs order, replaced as a whole by the poll task
+    @Volatile
+    private var disconnected = BooleanArray(0)
+
+    private val pollTask = RatePingu.schedule("AlertPingu", ALERT_RATE, ::pollDevices)
+
+    /** Checks every monitored device for a connection. Runs on the poll task thread. */
+    private fun pollDevices() {
+        val flags = BooleanArray(devicePairs.size)
+        for (i in flags.indices) {
+            flags[i] =
+                when (val device = devicePairs[i].first) {
+                    is TalonFX -> !device.isConnected
+                    is CANcoder -> !device.isConnected
+                    else -> false
+                }
+        }
+        disconnected = flags
+    }
 
     /**
-     * Updates connection status for all monitored devices.
+     * Updates the alerts from the connection states last published by the poll task.
      * Called periodically by the CommandScheduler during robot operation.
-     * Uses parallel processing for efficient handling of multiple devices.
      */
     override fun periodic() {
-        devicePairs.stream().forEach { (device, alert) ->
-            when (device) {
-                is TalonFX -> alert.set(!device.isConnected)
-                is CANcoder -> alert.set(!device.isConnected)
-            }
+        periodicTimer.start()
+        val flags = disconnected
+        for (i in flags.indices) {
+            devicePairs[i].second.set(flags[i])
         }
+        periodicTimer.stop()
     }
 
     /**
@@ -1,15 +1,13 @@
 package frc.robot.utils.pingu
 
+import edu.wpi.first.wpilibj.DriverStation
 import edu.wpi.first.wpilibj.XboxController
+import edu.wpi.first.wpilibj.event.BooleanEvent
+import edu.wpi.first.wpilibj.event.EventLoop
 import edu.wpi.first.wpilibj2.command.Command
 import edu.wpi.first.wpilibj2.command.SubsystemBase
 import frc.robot.utils.emu.Button
 
-/**
- * Type alias for a Triple consisting of an XboxController, a Button, and a command supplier function.
- */
-typealias ControllerButtonBinding = Triple<XboxController, Button, () -> Command>
-
 /**
  * Type alias for a Pair consisting of a Button and a command supplier function.
  */
@@ -17,10 +15,15 @@ typealias ButtonBinding = Pair<Button, () -> Command>
 
 /**
  * Bingu is a utility object for binding Xbox controller buttons to commands.
+ *
+ * Every binding is a rising edge [BooleanEvent] on an [EventLoop] that is only polled when a new
+ * Driver Station packet has arrived, since the buttons cannot change in between. The command supplier
+ * is only called on a press, and should hand back a cached command rather than build a new one.
  */
 object Bingu : SubsystemBase() {
-    /** List to store the mappings of controllers, buttons, and command suppliers */
-    private val buttonMaps: MutableList<ControllerButtonBinding> = mutableListOf()
+    /** Event loop holding every button binding */
+    private val loop = EventLoop()
+    private val periodicTimer = PerfPingu.PerfTimer("Subsystems/Bingu")
 
     /**
      * Extension function for XboxController to bind multiple button-command pairs.
@@ -31,7 +34,9 @@ object Bingu : SubsystemBase() {
     @SafeVarargs
     fun XboxController.bindings(vararg pair: ButtonBinding) =
         pair.forEach { (button, commandSupplier) ->
-            buttonMaps.add(Triple(this, button, commandSupplier))
+            BooleanEvent(loop) { button.isHeld(this) }
+                .rising()
+                .ifHigh { commandSupplier().schedule() }
         }
 
     /**
@@ -48,13 +53,27 @@ object Bingu : SubsystemBase() {
     ): ButtonBinding = button to commandSupplier
 
     /**
-     * Periodically checks the state of each button and schedules the corresponding command if the button is pressed.
+     * Creates a pair of a Button and a command that is built once and scheduled on every press.
+     *
+     * @param button The button to bind.
+     * @param command The command to be executed when the button is pressed.
+     * @return A pair of the button and a supplier of the command.
+     */
+    @JvmStatic
+    fun bind(
+        button: Button,
+        command: Command,
+    ): ButtonBinding = button to { command }
+
+    /**
+     * Polls the button bindings if a new Driver Station packet has arrived, scheduling the commands of
+     * the buttons that were just pressed.
      */
     override fun periodic() {
-        buttonMaps.forEach { (controller, button, commandSupplier) ->
-            if (button.checkPressed(controller)) {
-                commandSupplier().schedule()
-            }
+        periodicTimer.start()
+        if (DriverStation.isNewControlData()) {
+            loop.poll()
         }
+        periodicTimer.stop()
     }
 }
@@ -1,10 +1,28 @@
 package frc.robot.utils.pingu
 
+import edu.wpi.first.networktables.MultiSubscriber
+import edu.wpi.first.networktables.NetworkTableEvent
+import edu.wpi.first.networktables.NetworkTableInstance
+import edu.wpi.first.networktables.NetworkTableListenerPoller
 import edu.wpi.first.util.WPISerializable
+import edu.wpi.first.util.struct.Struct
 import edu.wpi.first.util.struct.StructSerializable
+import frc.robot.utils.RobotParameters.LoggingParameters.LOG_POLICY_POLL_PERIOD
+import frc.robot.utils.RobotParameters.LoggingParameters.LOG_RING_SIZE
 import frc.robot.utils.RobotParameters.SwerveParameters.Thresholds.TEST_MODE
+import frc.robot.utils.emu.LogMode
+import org.littletonrobotics.junction.Logger
 import org.littletonrobotics.junction.Logger.recordMetadata
 import org.littletonrobotics.junction.Logger.recordOutput
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.EnumSet
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.math.abs
 
 /**
  * Type alias for a pair consisting of a log message and any associated data.
@@ -14,10 +32,72 @@ typealias Log = Pair<String, Any>
 /**
  * Utility class for logging. Provides methods to update PID
  * values, retrieve double values, create pairs, and perform test logging.
+ *
+ * Values logged every loop should go through the typed keys ([DoubleKey], [IntKey], [BooleanKey],
+ * [StringKey] and [StructKey]) instead of [log], which boxes every value into a [Log].
+ *
+ * Logging never calls into AdvantageKit directly. Every value is written as a fixed size record into a
+ * lock-free ring buffer, which never blocks the caller and counts a drop when it is full. Struct values
+ * are packed into the record when they are logged, so the caller may change or reuse the object right
+ * away. A low priority drain thread decodes the records and coalesces them into the latest value of each
+ * key in the back one of two banks. [flush] swaps the banks once per loop on the main thread and hands
+ * the changed keys to `Logger.recordOutput`. AdvantageKit's log table is not thread safe and is captured
+ * at the end of every loop, so it can only be written from the main thread; the NetworkTables publishing
+ * and file writing already happen on AdvantageKit's own receiver thread.
+ *
+ * Each key has a [LogPolicy] deciding when its value is actually handed over: always, only once it
+ * changes, or at a fixed rate. The policy given in code can be overridden at runtime by publishing a
+ * string such as `ON_CHANGE 0.05`, `RATE 10` or `ALWAYS` to `/LogPolicy/<key>` in NetworkTables;
+ * publishing an empty string goes back to the policy given in code.
  */
 object LogPingu {
     private val capturedLogs = mutableListOf<Log>()
 
+    private val ring = LogRing(LOG_RING_SIZE)
+
+    // Keys drained into each bank. The drain thread fills the back bank, guarded by slotLock, while flush
+    // reads the front one
+    private val slotLock = ReentrantLock()
+    private val bankKeys = arrayOf(ArrayList<LogKey>(512), ArrayList<LogKey>(512))
+    private var backBank = 0
+
+    // Keys with a value that has not been handed to AdvantageKit yet, only touched by the main thread
+    private val pendingKeys = ArrayList<LogKey>(512)
+
+    // Keys created on the fly for the untyped logs calls
+    private val doubleKeys = ConcurrentHashMap<String, DoubleKey>()
+    private val intKeys = ConcurrentHashMap<String, IntKey>()
+    private val booleanKeys = ConcurrentHashMap<String, BooleanKey>()
+    private val stringKeys = ConcurrentHashMap<String, StringKey>()
+    private val serializableKeys = ConcurrentHashMap<String, SerializableKey>()
+    private val structArrayKeys = ConcurrentHashMap<String, StructArrayKey>()
+
+    private const val DRAIN_PERIOD_NANOS: Long = 1_000_000
+
+    // Records the drain thread decodes per hold of slotLock, so flush never waits long for the swap
+    private const val DRAIN_BATCH: Int = 256
+
+    // Bytes of packed struct each ring record can hold, enough for a Pose3d
+    private const val STRUCT_RECORD_BYTES: Int = 64
+
+    // Policies published to NetworkTables, only touched by the main thread in flush
+    private const val POLICY_TABLE = "/LogPolicy/"
+    private val policyOverrides = HashMap<String, LogPolicy>()
+    private var policyVersion = 0
+    private var lastPolicyPoll = Double.NEGATIVE_INFINITY
+    private val policyPoller = NetworkTableListenerPoller(NetworkTableInstance.getDefault())
+    private val policySubscriber = MultiSubscriber(NetworkTableInstance.getDefault(), arrayOf(POLICY_TABLE))
+
+    init {
+        policyPoller.addListener(policySubscriber, EnumSet.of(NetworkTableEvent.Kind.kValueAll))
+
+        Thread(::runDrain, "LogPinguDrain").apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+            start()
+        }
+    }
+
     /**
      * Logs a key-value pair.
      *
@@ -77,12 +157,10 @@ object LogPingu {
      */
     @JvmStatic
     fun logs(
-        key: String?,
+        key: String,
         value: Double,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, value)
-        }
+        doubleKeys.computeIfAbsent(key, ::DoubleKey).log(value)
     }
 
     /**
@@ -93,12 +171,10 @@ object LogPingu {
      */
     @JvmStatic
     fun logs(
-        key: String?,
+        key: String,
         value: Int,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, value)
-        }
+        intKeys.computeIfAbsent(key, ::IntKey).log(value)
     }
 
     /**
@@ -109,12 +185,10 @@ object LogPingu {
      */
     @JvmStatic
     fun logs(
-        key: String?,
+        key: String,
         value: Boolean,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, value)
-        }
+        booleanKeys.computeIfAbsent(key, ::BooleanKey).log(value)
     }
 
     /**
@@ -125,12 +199,10 @@ object LogPingu {
      */
     @JvmStatic
     fun logs(
-        key: String?,
-        value: String?,
+        key: String,
+        value: String,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, value)
-        }
+        stringKeys.computeIfAbsent(key, ::StringKey).log(value)
     }
 
     /**
@@ -140,13 +212,11 @@ object LogPingu {
      * @param value The WPISerializable value to log.
      */
     @JvmStatic
-    fun <T : WPISerializable?> logs(
-        key: String?,
+    fun <T : WPISerializable> logs(
+        key: String,
         value: T,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, value)
-        }
+        serializableKeys.computeIfAbsent(key, ::SerializableKey).log(value)
     }
 
     /**
@@ -156,13 +226,11 @@ object LogPingu {
      * @param value The SwerveModuleState value to log.
      */
     @JvmStatic
-    fun <T : StructSerializable?> logs(
-        key: String?,
+    fun <T : StructSerializable> logs(
+        key: String,
         vararg value: T,
     ) {
-        if (TEST_MODE) {
-            recordOutput(key, *value)
-        }
+        structArrayKeys.computeIfAbsent(key, ::StructArrayKey).log(value)
     }
 
     /**
@@ -180,4 +248,527 @@ object LogPingu {
             recordMetadata(key, value)
         }
     }
+
+    /**
+     * Hands the latest value of every key logged since the last flush to AdvantageKit, as allowed by each
+     * key's policy. Must be called once per loop from the main thread, after everything else has logged.
+     * Waits for at most one batch of the drain thread, then drains the rest of the ring and swaps the
+     * banks, so no loop's values are ever skipped.
+     */
+    @JvmStatic
+    fun flush() {
+        val now = Logger.getTimestamp() / 1e6
+        if (now - lastPolicyPoll >= LOG_POLICY_POLL_PERIOD) {
+            lastPolicyPoll = now
+            pollPolicies()
+        }
+
+        val front: Int
+        slotLock.lock()
+        try {
+            // Pick up whatever the drain thread has not gotten to yet so this loop's values are complete
+            ring.drainInto(backBank, bankKeys[backBank], Int.MAX_VALUE)
+            front = backBank
+            backBank = 1 - backBank
+        } finally {
+            slotLock.unlock()
+        }
+
+        // The drain thread only writes the other bank now, so the front one is read without the lock
+        val drained = bankKeys[front]
+        for (i in drained.indices) {
+            val key = drained[i]
+            key.takeBank(front)
+            if (!key.pending) {
+                key.pending = true
+                pendingKeys.add(key)
+            }
+        }
+        drained.clear()
+
+        // Keys held back by their rate stay pending so their latest value still goes out later
+        var kept = 0
+        for (i in pendingKeys.indices) {
+            val key = pendingKeys[i]
+            if (key.policyVersion != policyVersion) {
+                key.policy = policyOverrides[key.key] ?: key.defaultPolicy
+                key.policyVersion = policyVersion
+            }
+            if (!key.flush(now)) {
+                pendingKeys[kept++] = key
+            }
+        }
+        pendingKeys.subList(kept, pendingKeys.size).clear()
+
+        if (TEST_MODE) {
+            recordOutput("Logging/Dropped Records", ring.dropped.get())
+        }
+    }
+
+    /** Applies every policy published to NetworkTables since the last poll. */
+    private fun pollPolicies() {
+        val events = policyPoller.readQueue()
+        if (events.isEmpty()) return
+
+        for (event in events) {
+            val data = event.valueData ?: continue
+            val key = data.topic.name.removePrefix(POLICY_TABLE)
+            val text = if (data.value.isString) data.value.string.trim() else ""
+            if (text.isEmpty()) {
+                policyOverrides.remove(key)
+                continue
+            }
+
+            val policy = LogPolicy.parse(text)
+            if (policy == null) {
+                println("Unsupported log policy $text for key $key")
+            } else {
+                policyOverrides[key] = policy
+            }
+        }
+        policyVersion++
+    }
+
+    /** Decodes records from the ring into the back bank until the robot program ends. */
+    private fun runDrain() {
+        while (true) {
+            slotLock.lock()
+            val drained =
+                try {
+                    ring.drainInto(backBank, bankKeys[backBank], DRAIN_BATCH)
+                } finally {
+                    slotLock.unlock()
+                }
+
+            if (drained == 0) {
+                LockSupport.parkNanos(DRAIN_PERIOD_NANOS)
+            }
+        }
+    }
+
+    /**
+     * A pre-registered log key. Logging through a key writes a record into the ring buffer and never
+     * boxes the value or calls into AdvantageKit on the calling thread.
+     *
+     * @property key The key the value is logged under.
+     */
+    abstract class LogKey(
+        @JvmField val key: String,
+        internal val defaultPolicy: LogPolicy,
+    ) {
+        // Latest value drained from the ring into each bank, the back bank guarded by slotLock
+        private val bankBits = LongArray(2)
+        private val bankValues = arrayOfNulls<Any>(2)
+        private val bankDirty = BooleanArray(2)
+
+        // Latest value waiting to be handed to AdvantageKit, only touched by the main thread in flush
+        internal var bits: Long = 0
+        internal var value: Any? = null
+        internal var pending: Boolean = false
+
+        // Policy state, only touched by the main thread in flush
+        internal var policy: LogPolicy = defaultPolicy
+        internal var policyVersion = 0
+        internal var recorded = false
+        internal var recordedBits: Long = 0
+        private var lastRecordTime = 0.0
+
+        /** Hands the latest value to AdvantageKit. Only called from [flush]. */
+        internal abstract fun record()
+
+        /**
+         * Decodes the object value of a record. Only called by the ring's consumer.
+         *
+         * @param value The object value of the record.
+         * @param payload The packed struct of the record, positioned at its start.
+         * @return Any?, the value to hand to AdvantageKit.
+         */
+        internal open fun decode(
+            value: Any?,
+            payload: ByteBuffer,
+        ): Any? = value
+
+        /** Stores a record drained from the ring as the latest value in a bank, listing the key once. */
+        internal fun drain(
+            bank: Int,
+            bits: Long,
+            value: Any?,
+            payload: ByteBuffer,
+            keys: MutableList<LogKey>,
+        ) {
+            bankBits[bank] = bits
+            bankValues[bank] = decode(value, payload)
+            if (!bankDirty[bank]) {
+                bankDirty[bank] = true
+                keys.add(this)
+            }
+        }
+
+        /** Moves the latest value out of a bank that was just swapped to the front. */
+        internal fun takeBank(bank: Int) {
+            bits = bankBits[bank]
+            value = bankValues[bank]
+            bankValues[bank] = null
+            bankDirty[bank] = false
+        }
+
+        /**
+         * Checks if the latest value differs from the last value handed to AdvantageKit. Keys that cannot
+         * tell, such as struct keys whose value may be a reused object, always report a change.
+         *
+         * @param epsilon The smallest change that counts.
+         * @return Boolean, true if the latest value should be logged under [LogMode.ON_CHANGE].
+         */
+        internal open fun changed(epsilon: Double): Boolean = true
+
+        /**
+         * Hands the latest value to AdvantageKit if the policy allows it.
+         *
+         * @param now The current log timestamp in seconds.
+         * @return Boolean, false if the policy's rate is holding the value back and the key must stay pending.
+         */
+        internal fun flush(now: Double): Boolean {
+            val policy = policy
+            if (policy.mode == LogMode.RATE && recorded && now - lastRecordTime < policy.period) return false
+
+            if (policy.mode != LogMode.ON_CHANGE || !recorded || changed(policy.epsilon)) {
+                record()
+                recorded = true
+                recordedBits = bits
+                lastRecordTime = now
+            }
+            pending = false
+            value = null
+            return true
+        }
+
+        /**
+         * Writes a record for this key into the ring buffer if the system is in test mode.
+         *
+         * @param bits The primitive value of the record.
+         * @param value The object value of the record, or null for primitive keys.
+         */
+        protected fun publish(
+            bits: Long,
+            value: Any?,
+        ) {
+            if (TEST_MODE) {
+                ring.offer(this, bits, value)
+            }
+        }
+    }
+
+    /**
+     * A pre-registered key for logging double values. Create it once and log through it every loop,
+     * so the value is not boxed into a [Log] and no intermediate list is built.
+     */
+    class DoubleKey
+        @JvmOverloads
+        constructor(
+            key: String,
+            policy: LogPolicy = LogPolicy.ALWAYS,
+        ) : LogKey(key, policy) {
+        /**
+         * Logs a double value under this key if the system is in test mode.
+         *
+         * @param value The double value to log.
+         */
+        fun log(value: Double) = publish(value.toRawBits(), null)
+
+        override fun record() = recordOutput(key, Double.fromBits(bits))
+
+        // Written so a NaN always counts as a change
+        override fun changed(epsilon: Double) =
+            !(abs(Double.fromBits(bits) - Double.fromBits(recordedBits)) <= epsilon)
+    }
+
+    /** A pre-registered key for logging integer values. */
+    class IntKey
+        @JvmOverloads
+        constructor(
+            key: String,
+            policy: LogPolicy = LogPolicy.ALWAYS,
+        ) : LogKey(key, policy) {
+        /**
+         * Logs an integer value under this key if the system is in test mode.
+         *
+         * @param value The integer value to log.
+         */
+        fun log(value: Int) = publish(value.toLong(), null)
+
+        override fun record() = recordOutput(key, bits.toInt())
+
+        override fun changed(epsilon: Double) = abs(bits - recordedBits) > epsilon
+    }
+
+    /** A pre-registered key for logging boolean values. */
+    class BooleanKey
+        @JvmOverloads
+        constructor(
+            key: String,
+            policy: LogPolicy = LogPolicy.ALWAYS,
+        ) : LogKey(key, policy) {
+        /**
+         * Logs a boolean value under this key if the system is in test mode.
+         *
+         * @param value The boolean value to log.
+         */
+        fun log(value: Boolean) = publish(if (value) 1L else 0L, null)
+
+        override fun record() = recordOutput(key, bits != 0L)
+
+        override fun changed(epsilon: Double) = bits != recordedBits
+    }
+
+    /** A pre-registered key for logging String values. */
+    class StringKey
+        @JvmOverloads
+        constructor(
+            key: String,
+            policy: LogPolicy = LogPolicy.ALWAYS,
+        ) : LogKey(key, policy) {
+        private var recordedValue: String? = null
+
+        /**
+         * Logs a String value under this key if the system is in test mode.
+         *
+         * @param value The String value to log.
+         */
+        fun log(value: String) = publish(0L, value)
+
+        override fun record() {
+            recordedValue = value as String
+            recordOutput(key, recordedValue)
+        }
+
+        override fun changed(epsilon: Double) = value != recordedValue
+    }
+
+    /**
+     * A pre-registered key for logging struct values. The struct is given up front so it does not
+     * have to be looked up from the value every time it is logged. The value is packed into the ring
+     * when it is logged, so any thread may log a mutable object and keep changing it afterwards.
+     *
+     * @property struct The struct used to serialize the value.
+     */
+    class StructKey<T>
+        @JvmOverloads
+        constructor(
+            key: String,
+            private val struct: Struct<T>,
+            policy: LogPolicy = LogPolicy.ALWAYS,
+        ) : LogKey(key, policy) {
+        init {
+            require(struct.size <= STRUCT_RECORD_BYTES) {
+                "Struct ${struct.typeName} is ${struct.size} bytes, log records hold $STRUCT_RECORD_BYTES"
+            }
+        }
+
+        /**
+         * Logs a struct value under this key if the system is in test mode.
+         *
+         * @param value The struct value to log.
+         */
+        fun log(value: T) {
+            if (TEST_MODE) {
+                ring.offerStruct(this, struct, value)
+            }
+        }
+
+        override fun decode(
+            value: Any?,
+            payload: ByteBuffer,
+        ): Any? = struct.unpack(payload)
+
+        @Suppress("UNCHECKED_CAST")
+        override fun record() = recordOutput(key, struct, value as T)
+    }
+
+    /**
+     * Key for the untyped WPISerializable logs calls, the serializer is looked up from the value. The value
+     * is queued by reference, so only the main thread may log mutable values through the untyped calls.
+     */
+    private class SerializableKey(
+        key: String,
+    ) : LogKey(key, LogPolicy.ALWAYS) {
+        fun log(value: WPISerializable) = publish(0L, value)
+
+        override fun record() = recordOutput(key, value as WPISerializable)
+    }
+
+    /** Key for the untyped struct array logs calls. Queued by reference like [SerializableKey]. */
+    private class StructArrayKey(
+        key: String,
+    ) : LogKey(key, LogPolicy.ALWAYS) {
+        fun log(value: Array<out StructSerializable>) = publish(0L, value)
+
+        @Suppress("UNCHECKED_CAST")
+        override fun record() = recordOutput(key, *(value as Array<out StructSerializable>))
+    }
+
+    /**
+     * Decides when a key hands its value to AdvantageKit.
+     *
+     * @property mode When the value is logged.
+     * @property epsilon The smallest change logged under [LogMode.ON_CHANGE].
+     * @property rate The rate in Hz the value is logged at under [LogMode.RATE].
+     */
+    class LogPolicy private constructor(
+        @JvmField val mode: LogMode,
+        @JvmField val epsilon: Double,
+        @JvmField val rate: Double,
+    ) {
+        // Seconds between logged values under RATE
+        internal val period = if (rate > 0.0) 1.0 / rate else 0.0
+
+        override fun toString() =
+            when (mode) {
+                LogMode.ALWAYS -> "ALWAYS"
+                LogMode.ON_CHANGE -> "ON_CHANGE $epsilon"
+                LogMode.RATE -> "RATE $rate"
+            }
+
+        companion object {
+            /** Logs every value. */
+            @JvmField
+            val ALWAYS = LogPolicy(LogMode.ALWAYS, 0.0, 0.0)
+
+            /**
+             * Creates a policy that only logs a value once it changes.
+             *
+             * @param epsilon The smallest change that is logged, 0 logs any change.
+             * @return LogPolicy, the change-only policy.
+             */
+            @JvmStatic
+            @JvmOverloads
+            fun onChange(epsilon: Double = 0.0) = LogPolicy(LogMode.ON_CHANGE, epsilon, 0.0)
+
+            /**
+             * Creates a policy that logs the latest value at a fixed rate.
+             *
+             * @param rate The rate in Hz to log at.
+             * @return LogPolicy, the fixed rate policy.
+             */
+            @JvmStatic
+            fun rate(rate: Double) = LogPolicy(LogMode.RATE, 0.0, rate)
+
+            /**
+             * Parses a policy in the form published to NetworkTables: `ALWAYS`, `ON_CHANGE [epsilon]` or
+             * `RATE <hz>`.
+             *
+             * @param text The text to parse.
+             * @return LogPolicy?, the parsed policy, or null if the text is not a valid policy.
+             */
+            @JvmStatic
+            fun parse(text: String): LogPolicy? {
+                val parts = text.trim().split(Regex("\\s+"))
+                val mode = LogMode.entries.firstOrNull { it.name.equals(parts[0], ignoreCase = true) } ?: return null
+                val argument = parts.getOrNull(1)?.toDoubleOrNull()
+                return when (mode) {
+                    LogMode.ALWAYS -> ALWAYS
+                    LogMode.ON_CHANGE -> onChange(argument ?: 0.0)
+                    LogMode.RATE -> if (argument != null && argument > 0.0) rate(argument) else null
+                }
+            }
+        }
+    }
+
+    /**
+     * A bounded lock-free multi-producer/single-consumer ring of fixed size log records. Producers claim a
+     * slot with a single compare-and-set and never wait; when the ring is full the record is dropped and
+     * counted. Every slot has its own buffer that struct values are packed into by the producer. The
+     * consumer side must be called by one thread at a time, which [slotLock] guarantees.
+     */
+    private class LogRing(
+        capacity: Int,
+    ) {
+        private val mask: Int = Integer.highestOneBit(maxOf(capacity, 2) * 2 - 1) - 1
+        private val sequence = AtomicLongArray(mask + 1)
+        private val keys = arrayOfNulls<LogKey>(mask + 1)
+        private val bits = LongArray(mask + 1)
+        private val values = arrayOfNulls<Any>(mask + 1)
+        private val payloads = Array(mask + 1) { ByteBuffer.allocate(STRUCT_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN) }
+        private val tail = AtomicLong(0)
+        private var head = 0L
+
+        @JvmField
+        val dropped = AtomicLong(0)
+
+        init {
+            for (i in 0..mask) {
+                sequence.set(i, i.toLong())
+            }
+        }
+
+        fun offer(
+            key: LogKey,
+            bits: Long,
+            value: Any?,
+        ): Boolean {
+            val position = claim()
+            if (position < 0L) return false
+
+            val index = (position and mask.toLong()).toInt()
+            keys[index] = key
+            this.bits[index] = bits
+            values[index] = value
+            sequence.setRelease(index, position + 1)
+            return true
+        }
+
+        fun <T> offerStruct(
+            key: LogKey,
+            struct: Struct<T>,
+            value: T,
+        ): Boolean {
+            val position = claim()
+            if (position < 0L) return false
+
+            val index = (position and mask.toLong()).toInt()
+            keys[index] = key
+            payloads[index].clear()
+            struct.pack(payloads[index], value)
+            sequence.setRelease(index, position + 1)
+            return true
+        }
+
+        /** Claims the next slot, returning its position, or -1 after counting a drop if the ring is full. */
+        private fun claim(): Long {
+            var position = tail.get()
+            while (true) {
+                val index = (position and mask.toLong()).toInt()
+                val difference = sequence.getAcquire(index) - position
+                if (difference == 0L) {
+                    if (tail.compareAndSet(position, position + 1)) return position
+                    position = tail.get()
+                } else if (difference < 0L) {
+                    dropped.incrementAndGet()
+                    return -1L
+                } else {
+                    position = tail.get()
+                }
+            }
+        }
+
+        fun drainInto(
+            bank: Int,
+            bankKeys: MutableList<LogKey>,
+            limit: Int,
+        ): Int {
+            var drained = 0
+            while (drained < limit) {
+                val index = (head and mask.toLong()).toInt()
+                if (sequence.getAcquire(index) != head + 1) return drained
+
+                keys[index]!!.drain(bank, bits[index], values[index], payloads[index].rewind(), bankKeys)
+
+                keys[index] = null
+                values[index] = null
+                sequence.setRelease(index, head + mask + 1)
+                head++
+                drained++
+            }
+            return drained
+        }
+    }
 }
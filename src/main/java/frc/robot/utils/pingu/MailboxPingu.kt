@@ -0,0 +1,58 @@
+package frc.robot.utils.pingu
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+/**
+ * A lock-free mailbox that hands the latest value from one thread to another, built on a triple buffer.
+ *
+ * Exactly one thread may write and exactly one other thread may read. The writer fills the buffer from
+ * [write] and then calls [publish]; the reader calls [read] and always gets the most recently published
+ * value. Older values that were never read are overwritten, neither side ever blocks, and the three
+ * buffers are created once up front so nothing is allocated while running.
+ *
+ * @param factory Creates each of the three buffers.
+ */
+class MailboxPingu<T : Any>(factory: Supplier<T>) {
+    private val buffers = listOf(factory.get(), factory.get(), factory.get())
+
+    // Index of the buffer shared between the two sides, with FRESH set while it holds an unread value
+    private val middle = AtomicInteger(1)
+
+    // Only touched by the writer
+    private var back = 0
+
+    // Only touched by the reader
+    private var front = 2
+
+    /**
+     * Gets the buffer to fill with the next value. Must only be called from the writer thread, and the
+     * buffer must be filled completely since it holds an older value.
+     *
+     * @return T, The buffer to fill.
+     */
+    fun write(): T = buffers[back]
+
+    /** Publishes the buffer returned by [write] to the reader. Must only be called from the writer thread. */
+    fun publish() {
+        back = middle.getAndSet(back or FRESH) and INDEX_MASK
+    }
+
+    /**
+     * Gets the most recently published value. Must only be called from the reader thread, and the value
+     * is only valid until the next call.
+     *
+     * @return T, The latest value, or the initial buffer contents if nothing has been published yet.
+     */
+    fun read(): T {
+        if (middle.get() and FRESH != 0) {
+            front = middle.getAndSet(front) and INDEX_MASK
+        }
+        return buffers[front]
+    }
+
+    private companion object {
+        const val FRESH = 4
+        const val INDEX_MASK = 3
+    }
+}
@@ -0,0 +1,132 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.wpilibj.DriverStation
+import edu.wpi.first.wpilibj.Timer
+import frc.robot.utils.RobotParameters.MemoryParameters.ALLOCATION_BUDGET
+import frc.robot.utils.RobotParameters.MemoryParameters.GC_DISABLED_PERIOD
+import frc.robot.utils.RobotParameters.PerfParameters.PERF_REPORT_PERIOD
+import frc.robot.utils.RobotParameters.PerfParameters.PERF_WINDOW
+import frc.robot.utils.pingu.LogPingu.BooleanKey
+import frc.robot.utils.pingu.LogPingu.DoubleKey
+import frc.robot.utils.pingu.LogPingu.IntKey
+import frc.robot.utils.pingu.PerfPingu.RollingHistogram
+import java.lang.management.GarbageCollectorMXBean
+import java.lang.management.ManagementFactory
+
+/**
+ * Tracks how much the main loop allocates and how long the garbage collector pauses, and decides when
+ * an explicit garbage collection is safe.
+ *
+ * Allocation is measured per loop with `ThreadMXBean.getCurrentThreadAllocatedBytes`, and collections
+ * with the `GarbageCollectorMXBean`s. Everything is logged under `Memory/` so allocation budgets can be
+ * checked after each change. Explicit collections only run while the robot is disabled: once when it
+ * becomes disabled, which covers the gap between auto and teleop, and then every [GC_DISABLED_PERIOD]
+ * seconds until it is enabled again.
+ *
+ * Only the main thread may use this object.
+ */
+object MemoryPingu {
+    private val threadBean =
+        ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+    private val allocationSupported =
+        threadBean != null &&
+            threadBean.isThreadAllocatedMemorySupported &&
+            threadBean.isThreadAllocatedMemoryEnabled
+    private val gcBeans: Array<GarbageCollectorMXBean> =
+        ManagementFactory.getGarbageCollectorMXBeans().toTypedArray()
+    private val runtime = Runtime.getRuntime()
+
+    private val allocations = RollingHistogram(PERF_WINDOW)
+    private val reportPeriodNanos = (PERF_REPORT_PERIOD * 1e9).toLong()
+
+    private val LOOP_ALLOCATED_KEY = DoubleKey("Memory/Loop Allocated (KB)")
+    private val ALLOCATED_P50_KEY = DoubleKey("Memory/Loop Allocated p50 (KB)")
+    private val ALLOCATED_P99_KEY = DoubleKey("Memory/Loop Allocated p99 (KB)")
+    private val ALLOCATED_MAX_KEY = DoubleKey("Memory/Loop Allocated max (KB)")
+    private val OVER_BUDGET_KEY = BooleanKey("Memory/Over Budget")
+    private val OVER_BUDGET_LOOPS_KEY = IntKey("Memory/Over Budget Loops")
+    private val HEAP_USED_KEY = DoubleKey("Memory/Heap Used (MB)")
+    private val GC_COUNT_KEY = IntKey("Memory/GC Count")
+    private val GC_TIME_KEY = DoubleKey("Memory/GC Time (ms)")
+    private val LOOP_GC_TIME_KEY = DoubleKey("Memory/Loop GC Time (ms)")
+    private val EXPLICIT_GC_COUNT_KEY = IntKey("Memory/Explicit GC Count")
+
+    private var lastAllocatedBytes = -1L
+    private var lastGcTime = 0L
+    private var overBudgetLoops = 0
+    private var explicitCollections = 0
+    private var lastReport = 0L
+
+    private var wasDisabled = false
+    private var lastCollection = 0.0
+
+    init {
+        // Collections from before the first loop should not show up as a pause in it
+        for (bean in gcBeans) {
+            lastGcTime += maxOf(bean.collectionTime, 0)
+        }
+    }
+
+    /**
+     * Measures the allocation and collections since the last loop, logs them, and runs an explicit
+     * collection if the robot is disabled and one is due. Must be called once per loop from the main
+     * thread.
+     */
+    @JvmStatic
+    fun update() {
+        if (allocationSupported) {
+            val allocated = threadBean!!.currentThreadAllocatedBytes
+            if (lastAllocatedBytes >= 0) {
+                val loopBytes = allocated - lastAllocatedBytes
+                allocations.add(loopBytes)
+                LOOP_ALLOCATED_KEY.log(loopBytes / 1024.0)
+
+                val overBudget = loopBytes > ALLOCATION_BUDGET
+                if (overBudget) overBudgetLoops++
+                OVER_BUDGET_KEY.log(overBudget)
+                OVER_BUDGET_LOOPS_KEY.log(overBudgetLoops)
+            }
+            lastAllocatedBytes = allocated
+        }
+
+        var gcCount = 0L
+        var gcTime = 0L
+        for (bean in gcBeans) {
+            gcCount += maxOf(bean.collectionCount, 0)
+            gcTime += maxOf(bean.collectionTime, 0)
+        }
+        LOOP_GC_TIME_KEY.log((gcTime - lastGcTime).toDouble())
+        GC_COUNT_KEY.log(gcCount.toInt())
+        GC_TIME_KEY.log(gcTime.toDouble())
+        lastGcTime = gcTime
+
+        HEAP_USED_KEY.log((runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0))
+
+        val now = System.nanoTime()
+        if (now - lastReport >= reportPeriodNanos && allocations.sort() > 0) {
+            lastReport = now
+            ALLOCATED_P50_KEY.log(allocations.percentile(0.5) / 1024.0)
+            ALLOCATED_P99_KEY.log(allocations.percentile(0.99) / 1024.0)
+            ALLOCATED_MAX_KEY.log(allocations.max() / 1024.0)
+        }
+
+        collectIfSafe()
+    }
+
+    /** Runs an explicit collection when the robot becomes disabled, then periodically while it stays disabled. */
+    private fun collectIfSafe() {
+        val disabled = DriverStation.isDisabled()
+        val time = Timer.getFPGATimestamp()
+
+        if (disabled && (!wasDisabled || time - lastCollection >= GC_DISABLED_PERIOD)) {
+            System.gc()
+            lastCollection = time
+            explicitCollections++
+            EXPLICIT_GC_COUNT_KEY.log(explicitCollections)
+
+            // The collection itself should not count against the next loop's allocation
+            if (allocationSupported) lastAllocatedBytes = threadBean!!.currentThreadAllocatedBytes
+        }
+        wasDisabled = disabled
+    }
+}
@@ -0,0 +1,177 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.wpilibj.DriverStation
+import edu.wpi.first.wpilibj.Filesystem
+import frc.robot.utils.NavGridCompiler
+import frc.robot.utils.RobotParameters.FieldParameters
+import java.io.File
+import java.nio.ByteBuffer
+import kotlin.math.abs
+import kotlin.math.floor
+
+/**
+ * Shared, immutable copy of the pathfinding navgrid as a packed bitset with an obstacle distance field.
+ *
+ * The grid is read from the binary file the `compileNavgrid` gradle task builds out of `navgrid.json`.
+ * If that file is missing or was compiled from a different JSON, going by the length and CRC32 in its
+ * header, the JSON is compiled at startup instead so the checks below always see the same grid as the
+ * AD* pathfinder.
+ *
+ * [isClear] walks every node a straight segment touches (a supercover line, so a segment passing
+ * exactly through a node corner checks both neighbours) and checks it against the distance field, so
+ * a segment can be required to keep any number of nodes away from obstacles without inflating the grid
+ * again.
+ */
+object NavGridPingu {
+    private val nodeSize: Double
+    private val columns: Int
+    private val rows: Int
+    private val blocked: LongArray
+    private val clearance: ByteArray
+
+    init {
+        val deploy = Filesystem.getDeployDirectory()
+        val json = File(deploy, FieldParameters.NAVGRID_JSON)
+        val binary = File(deploy, FieldParameters.NAVGRID_FILE)
+
+        val deployed = if (binary.isFile) binary.readBytes() else null
+        val bytes =
+            if (deployed != null && NavGridCompiler.isCompiledFrom(deployed, json.readBytes())) {
+                deployed
+            } else {
+                DriverStation.reportWarning("Compiled navgrid missing or stale, compiling $json", false)
+                NavGridCompiler.compile(json)
+            }
+
+        val buffer = ByteBuffer.wrap(bytes)
+        buffer.position(16) // magic, version, and the source length and CRC32 checked above
+        nodeSize = buffer.getDouble()
+        buffer.getDouble() // field length
+        buffer.getDouble() // field width
+        columns = buffer.getInt()
+        rows = buffer.getInt()
+        blocked = LongArray((rows * columns + 63) / 64) { buffer.getLong() }
+        clearance = ByteArray(rows * columns).also { buffer.get(it) }
+    }
+
+    /**
+     * Gets the size of one navgrid node.
+     *
+     * @return Double, the node size in meters.
+     */
+    @JvmStatic
+    fun nodeSize() = nodeSize
+
+    /**
+     * Checks if the node containing a field position is an obstacle. Positions off the grid count as
+     * obstacles.
+     *
+     * @param x The field X position in meters.
+     * @param y The field Y position in meters.
+     * @return Boolean, true if the node is blocked.
+     */
+    @JvmStatic
+    fun isBlocked(
+        x: Double,
+        y: Double,
+    ): Boolean {
+        val column = floor(x / nodeSize).toInt()
+        val row = floor(y / nodeSize).toInt()
+        if (column < 0 || column >= columns || row < 0 || row >= rows) return true
+        val index = row * columns + column
+        return blocked[index ushr 6] and (1L shl index) != 0L
+    }
+
+    /**
+     * Gets how far the node containing a field position is from the nearest obstacle.
+     *
+     * @param x The field X position in meters.
+     * @param y The field Y position in meters.
+     * @return Int, the distance in nodes, 0 for an obstacle or a position off the grid.
+     */
+    @JvmStatic
+    fun clearance(
+        x: Double,
+        y: Double,
+    ) = clearanceAt(floor(x / nodeSize).toInt(), floor(y / nodeSize).toInt())
+
+    /**
+     * Checks if a straight segment only crosses nodes at least [minClearance] nodes from every
+     * obstacle. Allocation free, so it is cheap enough to run before every pathfinding request.
+     *
+     * @param startX The field X position the segment starts at, in meters.
+     * @param startY The field Y position the segment starts at, in meters.
+     * @param endX The field X position the segment ends at, in meters.
+     * @param endY The field Y position the segment ends at, in meters.
+     * @param minClearance The smallest clearance, in nodes, every crossed node may have. 1 only
+     *     requires the nodes to be free.
+     * @return Boolean, true if the whole segment keeps the clearance.
+     */
+    @JvmStatic
+    fun isClear(
+        startX: Double,
+        startY: Double,
+        endX: Double,
+        endY: Double,
+        minClearance: Int,
+    ): Boolean {
+        val x0 = startX / nodeSize
+        val y0 = startY / nodeSize
+        val dx = endX / nodeSize - x0
+        val dy = endY / nodeSize - y0
+
+        var column = floor(x0).toInt()
+        var row = floor(y0).toInt()
+        val endColumn = floor(x0 + dx).toInt()
+        val endRow = floor(y0 + dy).toInt()
+        val stepColumn = if (dx > 0) 1 else -1
+        val stepRow = if (dy > 0) 1 else -1
+
+        // Segment parameter t (0 to 1) of the next column and row boundary, and the t between boundaries
+        val deltaX = if (dx != 0.0) abs(1 / dx) else Double.MAX_VALUE
+        val deltaY = if (dy != 0.0) abs(1 / dy) else Double.MAX_VALUE
+        var nextX =
+            when {
+                dx > 0 -> (column + 1 - x0) * deltaX
+                dx < 0 -> (x0 - column) * deltaX
+                else -> Double.MAX_VALUE
+            }
+        var nextY =
+            when {
+                dy > 0 -> (row + 1 - y0) * deltaY
+                dy < 0 -> (y0 - row) * deltaY
+                else -> Double.MAX_VALUE
+            }
+
+        var steps = abs(endColumn - column) + abs(endRow - row)
+        while (true) {
+            if (clearanceAt(column, row) < minClearance) return false
+            if (steps-- <= 0) return true
+
+            if (abs(nextX - nextY) < 1e-9) {
+                // Through a corner, the two nodes beside it are touched too
+                if (clearanceAt(column + stepColumn, row) < minClearance) return false
+                if (clearanceAt(column, row + stepRow) < minClearance) return false
+                column += stepColumn
+                row += stepRow
+                nextX += deltaX
+                nextY += deltaY
+                steps--
+            } else if (nextX < nextY) {
+                column += stepColumn
+                nextX += deltaX
+            } else {
+                row += stepRow
+                nextY += deltaY
+            }
+        }
+    }
+
+    private fun clearanceAt(
+        column: Int,
+        row: Int,
+    ): Int {
+        if (column < 0 || column >= columns || row < 0 || row >= rows) return 0
+        return clearance[row * columns + column].toInt()
+    }
+}
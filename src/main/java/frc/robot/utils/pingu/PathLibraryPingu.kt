@@ -0,0 +1,261 @@
+package frc.robot.utils.pingu
+
+import com.pathplanner.lib.auto.AutoBuilder
+import com.pathplanner.lib.path.GoalEndState
+import com.pathplanner.lib.path.PathConstraints
+import com.pathplanner.lib.path.PathPlannerPath
+import edu.wpi.first.math.geometry.Pose2d
+import edu.wpi.first.math.geometry.Rotation2d
+import edu.wpi.first.math.geometry.Translation2d
+import edu.wpi.first.wpilibj.DriverStation
+import edu.wpi.first.wpilibj.Filesystem
+import edu.wpi.first.wpilibj2.command.Command
+import frc.robot.utils.PathLibraryCompiler
+import frc.robot.utils.PathLibraryCompiler.DX
+import frc.robot.utils.PathLibraryCompiler.DY
+import frc.robot.utils.PathLibraryCompiler.GOAL
+import frc.robot.utils.PathLibraryCompiler.UNREACHABLE
+import frc.robot.utils.RobotParameters.FieldParameters
+import frc.robot.utils.pingu.LogPingu.IntKey
+import frc.robot.utils.pingu.PerfPingu.PerfTimer
+import java.io.File
+import java.nio.ByteBuffer
+import kotlin.math.floor
+import kotlin.math.hypot
+
+/**
+ * Precomputed paths from anywhere on the field to every scoring pose and coral station, for both
+ * alliances.
+ *
+ * The library is read from the binary file the `compilePathLibrary` gradle task builds with
+ * [PathLibraryCompiler]. If the file is missing, or its header shows it was built from a different
+ * `navgrid.json` or different goals, it is compiled at startup instead. A path is looked up by
+ * following the precomputed steps from the robot's node to the goal, keeping only the nodes where the
+ * straight line from the last kept point stops being clear in [NavGridPingu], then stitching the
+ * robot's pose to the front and the exact target pose to the end. That takes microseconds, where an AD* plan takes a full search on its thread.
+ *
+ * Only the main thread may look up paths. The goal queries only read the library, so any thread may
+ * make them.
+ */
+object PathLibraryPingu {
+    private val columns: Int
+    private val rows: Int
+    private val nodeSize: Double
+    private val goalX: DoubleArray
+    private val goalY: DoubleArray
+    private val approaches: IntArray
+    private val steps: Array<ByteArray>
+    private val costs: Array<ShortArray>
+
+    private val timer = PerfTimer("Path Library/Lookup")
+    private val hitsKey = IntKey("Path Library/Hits")
+    private val missesKey = IntKey("Path Library/Misses")
+    private var hits = 0
+    private var misses = 0
+
+    init {
+        val deploy = Filesystem.getDeployDirectory()
+        val json = File(deploy, FieldParameters.NAVGRID_JSON)
+        val binary = File(deploy, FieldParameters.PATH_LIBRARY_FILE)
+        val goals = PathLibraryCompiler.goals()
+
+        val deployed = if (binary.isFile) binary.readBytes() else null
+        val buffer =
+            if (deployed != null && PathLibraryCompiler.isCompiledFrom(deployed, json.readBytes(), goals)) {
+                ByteBuffer.wrap(deployed)
+            } else {
+                DriverStation.reportWarning("Path library missing or stale, compiling it for $json", false)
+                ByteBuffer.wrap(PathLibraryCompiler.compile(json))
+            }
+
+        buffer.position(16) // magic, version, and the source length and CRC32 checked above
+        columns = buffer.getInt()
+        rows = buffer.getInt()
+        nodeSize = buffer.getDouble()
+        val goalCount = buffer.getInt()
+        goalX = DoubleArray(goalCount)
+        goalY = DoubleArray(goalCount)
+        approaches = IntArray(goalCount)
+        for (i in 0 until goalCount) {
+            goalX[i] = buffer.getDouble()
+            goalY[i] = buffer.getDouble()
+            buffer.getDouble() // heading
+            approaches[i] = buffer.getInt()
+        }
+        steps = Array(goalCount) { ByteArray(columns * rows).also { buffer.get(it) } }
+        costs = Array(goalCount) { ShortArray(columns * rows) { buffer.getShort() } }
+    }
+
+    /**
+     * Gets the number of goals in the library.
+     *
+     * @return Int, the number of goals, blue then red.
+     */
+    @JvmStatic
+    fun goalCount() = goalX.size
+
+    /**
+     * Finds the library goal a pose is, if it is within [FieldParameters.PATH_LIBRARY_GOAL_TOLERANCE] of
+     * one. Scoring poses with a different offset from the reef still share the goal of their branch.
+     *
+     * @param target The pose to find.
+     * @return Int, the index of the closest goal, or -1 if no goal is close enough.
+     */
+    @JvmStatic
+    fun findGoal(target: Pose2d): Int {
+        var best = -1
+        var bestDistance = FieldParameters.PATH_LIBRARY_GOAL_TOLERANCE
+        for (i in goalX.indices) {
+            val distance = hypot(goalX[i] - target.x, goalY[i] - target.y)
+            if (distance <= bestDistance) {
+                bestDistance = distance
+                best = i
+            }
+        }
+        return best
+    }
+
+    /**
+     * Builds a path from the robot to a target from the library, stitched to both exact poses.
+     *
+     * @param start The current robot pose.
+     * @param target The pose to drive to, which has to be within tolerance of a library goal.
+     * @param constraints The constraints of the path.
+     * @param endVelocity The velocity to reach the target at in m/s.
+     * @return PathPlannerPath, the path, or null if the target is not in the library or can not be
+     * reached from the robot's node.
+     */
+    @JvmStatic
+    fun path(
+        start: Pose2d,
+        target: Pose2d,
+        constraints: PathConstraints,
+        endVelocity: Double,
+    ): PathPlannerPath? {
+        timer.start()
+        val goal = findGoal(target)
+        var node = if (goal >= 0) startNode(goal, start.x, start.y) else -1
+        if (node < 0 || start.translation.getDistance(target.translation) < nodeSize / 2) {
+            timer.stop()
+            missesKey.log(++misses)
+            return null
+        }
+
+        val points = ArrayList<Translation2d>()
+        points.add(start.translation)
+        var anchorX = start.x
+        var anchorY = start.y
+
+        // Keep a node only where the line from the last kept point to the next node is blocked
+        val goalSteps = steps[goal]
+        while (goalSteps[node] != GOAL) {
+            val step = goalSteps[node].toInt()
+            val next = node + DX[step] + DY[step] * columns
+            val clear =
+                NavGridPingu.isClear(
+                    anchorX,
+                    anchorY,
+                    centerX(next),
+                    centerY(next),
+                    FieldParameters.NAVGRID_FAST_PATH_CLEARANCE,
+                )
+            if (!clear) {
+                anchorX = centerX(node)
+                anchorY = centerY(node)
+                addPoint(points, anchorX, anchorY)
+            }
+            node = next
+        }
+        if (!NavGridPingu.isClear(anchorX, anchorY, target.x, target.y, FieldParameters.NAVGRID_FAST_PATH_CLEARANCE)) {
+            addPoint(points, centerX(node), centerY(node))
+        }
+        addPoint(points, target.x, target.y)
+
+        val poses = ArrayList<Pose2d>(points.size)
+        for (i in points.indices) {
+            val from = points[maxOf(i - 1, 0)]
+            val to = points[minOf(i + 1, points.size - 1)]
+            poses.add(Pose2d(points[i], Rotation2d(to.x - from.x, to.y - from.y)))
+        }
+
+        val path =
+            PathPlannerPath(
+                PathPlannerPath.waypointsFromPoses(poses),
+                constraints,
+                null,
+                GoalEndState(endVelocity, target.rotation),
+            )
+        // The goals are stored for both alliances, so the path is already on the right side of the field
+        path.preventFlipping = true
+
+        timer.stop()
+        hitsKey.log(++hits)
+        return path
+    }
+
+    /**
+     * Creates a command that drives to a target, following a path from the library if it has one and
+     * pathfinding with AD* otherwise.
+     *
+     * @param start The current robot pose.
+     * @param target The pose to drive to.
+     * @param constraints The constraints of the path.
+     * @param endVelocity The velocity to reach the target at in m/s.
+     * @return Command, the command that drives to the target.
+     */
+    @JvmStatic
+    fun pathfindToPose(
+        start: Pose2d,
+        target: Pose2d,
+        constraints: PathConstraints,
+        endVelocity: Double,
+    ): Command {
+        val path = path(start, target, constraints, endVelocity)
+        return if (path != null) {
+            AutoBuilder.followPath(path)
+        } else {
+            AutoBuilder.pathfindToPose(target, constraints, endVelocity)
+        }
+    }
+
+    /**
+     * Finds the node a path from a field position starts at: the node containing it, or the
+     * neighbouring node closest to the goal if the position is in an obstacle.
+     *
+     * @return Int, the node, or -1 if no node there can reach the goal.
+     */
+    private fun startNode(
+        goal: Int,
+        x: Double,
+        y: Double,
+    ): Int {
+        val column = floor(x / nodeSize).toInt()
+        val row = floor(y / nodeSize).toInt()
+        var best = -1
+        for (d in -1 until 8) {
+            val nodeColumn = if (d < 0) column else column + DX[d]
+            val nodeRow = if (d < 0) row else row + DY[d]
+            if (nodeColumn < 0 || nodeColumn >= columns || nodeRow < 0 || nodeRow >= rows) continue
+
+            val node = nodeRow * columns + nodeColumn
+            if (steps[goal][node] == UNREACHABLE) continue
+            if (d < 0) return node
+            if (best < 0 || costs[goal][node] < costs[goal][best]) best = node
+        }
+        return best
+    }
+
+    /** Adds a path point unless it is on top of the last one, PathPlanner can not handle empty segments. */
+    private fun addPoint(
+        points: MutableList<Translation2d>,
+        x: Double,
+        y: Double,
+    ) {
+        val last = points[points.size - 1]
+        if (hypot(last.x - x, last.y - y) > 0.05) points.add(Translation2d(x, y))
+    }
+
+    private fun centerX(node: Int) = (node % columns + 0.5) * nodeSize
+
+    private fun centerY(node: Int) = (node / columns + 0.5) * nodeSize
+}
@@ -2,87 +2,90 @@ package frc.robot.utils.pingu
 
 import edu.wpi.first.math.geometry.Pose2d
 import edu.wpi.first.math.geometry.Translation2d
+import edu.wpi.first.wpilibj.DriverStation
+import frc.robot.utils.RobotParameters.FieldParameters.RobotPoses
+import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.PROFILE_CONSTRAINTS
+import frc.robot.utils.RobotParameters.SwerveParameters.PinguParameters.ROTATION_PROFILE_CONSTRAINTS
 import frc.robot.utils.emu.Direction
 
 /**
  * Type alias for a list of scoring positions, each defined by an Translation2d AprilTag location,
  * a reef scoring Pose2d location for the left coral, and a Pose2d location for the right coral.
- * The april tag position is to find the closest pair of reef scoring positions.
+ * The april tag position only names the reef face, the scoring positions are chosen by their poses.
  */
 typealias CoralScore = Triple<Translation2d, Pose2d, Pose2d>
 
 /**
- * Object that manages scoring positions but does not store them directly.
- * Instead, it provides methods to retrieve the closest scoring position.
+ * Object that indexes the scoring positions and provides methods to retrieve the scoring position
+ * the robot aligns to soonest.
+ *
+ * The index is built once, for both alliances and for both the L4 and not L4 offsets, the first time
+ * the object is used. It never changes afterwards, so any thread can query it. A query times the six
+ * poses of one side, which is a fixed amount of work, instead of looking up the reef sector the robot
+ * is in, since the face in front of the robot is not always the one it aligns to soonest.
  */
 object PathPingu {
-    private val scoringPositionsL4 = mutableListOf<CoralScore>()
-    private val scoringPositionsNotL4 = mutableListOf<CoralScore>()
+    private val blueL4 = ScoringIndex(RobotPoses.coralScoreBlueList)
+    private val blueNotL4 = ScoringIndex(RobotPoses.coralScoreBlueListNotL4)
+    private val redL4 = ScoringIndex(RobotPoses.coralScoreBlueList, RobotPoses::getRedAlliancePose)
+    private val redNotL4 = ScoringIndex(RobotPoses.coralScoreBlueListNotL4, RobotPoses::getRedAlliancePose)
 
     /**
-     * Adds any number of coral scoring positions to the list of potential scoring positions for L4.
-     *
-     * @param positions One or more lists of triples containing the AprilTag location, left coral position, and right coral position.
-     */
-    fun addCoralScoringPositions(vararg positions: List<CoralScore>) {
-        positions.iterator().forEach {
-            scoringPositionsL4.addAll(it)
-        }
-    }
-
-    /**
-     * Clears the list of potential scoring positions.
+     * Builds the scoring position index. Called at startup so the first alignment does not pay for it.
      */
     @JvmStatic
-    fun clearCoralScoringPositions() {
-        scoringPositionsL4.clear()
-        scoringPositionsNotL4.clear()
-    }
+    fun initialize() {}
 
     /**
-     * Adds any number of coral scoring positions to the list of potential scoring positions for not L4.
+     * Finds the scoring position the robot aligns to soonest from its current pose, driving straight
+     * at it like [frc.robot.commands.AlignToPose] does, see [ScoringSelector].
+     * Based on the direction passed in, it only considers the corresponding scoring positions.
+     * Uses the red positions on the red alliance and the blue ones otherwise.
      *
-     * @param positions One or more lists of triples containing the AprilTag location, left coral position, and right coral position.
-     */
-
-    fun addCoralScoringPositionsNotL4(vararg positions: List<CoralScore>) {
-        positions.iterator().forEach {
-            scoringPositionsNotL4.addAll(it)
-        }
-    }
-
-    /**
-     * Finds the closest scoring position to the robot's current position.
-     * Starts by finding the closest april tag to the robot's current position.
-     * Based on the direction passed in, it returns the corresponding scoring position.
-     * Then it path finds to that position (hopefully).
-     *
-     * @param position The robot's current position.
-     * @param direction The direction in which to find the closest scoring position.
-     * @return The command to move to the closest scoring position.
+     * @param position The robot's current pose.
+     * @param direction The direction in which to find the scoring position.
+     * @return The scoring position to move to.
      */
+    @JvmStatic
     fun findClosestScoringPosition(
         position: Pose2d,
         direction: Direction,
-    ): Pose2d? {
-        val closest = scoringPositionsL4.minByOrNull { position.translation.getDistance(it.first) }
-        return closest?.let { if (direction == Direction.LEFT) it.second else it.third }
-    }
+    ): Pose2d = (if (isRed()) redL4 else blueL4).find(position, direction)
 
     /**
-     * Finds the closest scoring position to the robot's current position.
-     * Starts by finding the closest april tag to the robot's current position.
-     * Based on the direction passed in, it returns the corresponding scoring position.
+     * Finds the not L4 scoring position the robot aligns to soonest from its current pose, driving
+     * straight at it like [frc.robot.commands.AlignToPose] does, see [ScoringSelector].
+     * Based on the direction passed in, it only considers the corresponding scoring positions.
+     * Uses the red positions on the red alliance and the blue ones otherwise.
      *
-     * @param position The robot's current position.
-     * @param direction The direction in which to find the closest scoring position.
-     * @return The command to move to the closest scoring position.
+     * @param position The robot's current pose.
+     * @param direction The direction in which to find the scoring position.
+     * @return The scoring position to move to.
      */
+    @JvmStatic
     fun findClosestScoringPositionNotL4(
         position: Pose2d,
         direction: Direction,
-    ): Pose2d? {
-        val closest = scoringPositionsNotL4.minByOrNull { position.translation.getDistance(it.first) }
-        return closest?.let { if (direction == Direction.LEFT) it.second else it.third }
+    ): Pose2d = (if (isRed()) redNotL4 else blueNotL4).find(position, direction)
+
+    private fun isRed() = DriverStation.getAlliance().map { it == DriverStation.Alliance.Red }.orElse(false)
+
+    /**
+     * The scoring positions of one alliance and offset set, with a selector for each side.
+     *
+     * @param positions The blue scoring positions.
+     * @param alliance Maps a blue scoring pose to the pose of this index's alliance.
+     */
+    private class ScoringIndex(
+        positions: List<CoralScore>,
+        alliance: (Pose2d) -> Pose2d = { it },
+    ) {
+        private val left = ScoringSelector(positions.map { alliance(it.second) }, PROFILE_CONSTRAINTS, ROTATION_PROFILE_CONSTRAINTS)
+        private val right = ScoringSelector(positions.map { alliance(it.third) }, PROFILE_CONSTRAINTS, ROTATION_PROFILE_CONSTRAINTS)
+
+        fun find(
+            position: Pose2d,
+            direction: Direction,
+        ): Pose2d = (if (direction == Direction.LEFT) left else right).select(position)
     }
 }
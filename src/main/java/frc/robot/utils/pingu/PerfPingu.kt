@@ -0,0 +1,196 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.wpilibj2.command.Command
+import frc.robot.utils.RobotParameters.PerfParameters.PERF_REPORT_PERIOD
+import frc.robot.utils.RobotParameters.PerfParameters.PERF_WINDOW
+import frc.robot.utils.pingu.LogPingu.DoubleKey
+import frc.robot.utils.pingu.LogPingu.IntKey
+import frc.robot.utils.pingu.LogPingu.StringKey
+import org.littletonrobotics.junction.LoggedRobot
+
+/**
+ * Loop time profiler. Every subsystem times its periodic with a [PerfTimer], and every command's execute
+ * is timed through the CommandScheduler's execute hook. Each timer keeps a rolling histogram of its
+ * last [PERF_WINDOW] samples and logs the p50, p99 and max in milliseconds under `Perf/`. When a loop
+ * runs past its period, the timer that took the longest during that loop is logged as the culprit.
+ *
+ * Only the main thread may use this object.
+ */
+object PerfPingu {
+    private val timers = ArrayList<PerfTimer>()
+    private val commandTimers = HashMap<String, PerfTimer>()
+
+    private val loopTimer = PerfTimer("Loop")
+    private val loopBudgetNanos = (LoggedRobot.defaultPeriodSecs * 1e9).toLong()
+    private val reportPeriodNanos = (PERF_REPORT_PERIOD * 1e9).toLong()
+
+    private val OVERRUNS_KEY = IntKey("Perf/Overruns")
+    private val OVERRUN_CULPRIT_KEY = StringKey("Perf/Overrun Culprit")
+    private val OVERRUN_CULPRIT_TIME_KEY = DoubleKey("Perf/Overrun Culprit Time (ms)")
+    private val OVERRUN_LOOP_TIME_KEY = DoubleKey("Perf/Overrun Loop Time (ms)")
+
+    // Time the last timed section ended, command execute times are measured from it
+    private var mark = 0L
+    private var loopStart = 0L
+    private var lastReport = 0L
+    private var overruns = 0
+
+    /**
+     * Times a section of the loop, such as a subsystem's periodic. Create it once and call [start] and
+     * [stop] around the section every loop.
+     *
+     * @property name The name the timer is logged under, below `Perf/`.
+     */
+    class PerfTimer(
+        @JvmField val name: String,
+    ) {
+        private val histogram = RollingHistogram(PERF_WINDOW)
+        private val p50Key = DoubleKey("Perf/$name/p50 (ms)")
+        private val p99Key = DoubleKey("Perf/$name/p99 (ms)")
+        private val maxKey = DoubleKey("Perf/$name/max (ms)")
+        private var startNanos = 0L
+
+        // Time spent in this section during the current loop
+        internal var loopNanos = 0L
+
+        init {
+            timers.add(this)
+        }
+
+        /** Starts timing the section. */
+        fun start() {
+            startNanos = System.nanoTime()
+        }
+
+        /** Stops timing the section and records how long it took. */
+        fun stop() {
+            val now = System.nanoTime()
+            record(now - startNanos)
+            mark = now
+        }
+
+        internal fun record(nanos: Long) {
+            histogram.add(nanos)
+            loopNanos += nanos
+        }
+
+        internal fun report() {
+            if (histogram.sort() == 0) return
+
+            p50Key.log(histogram.percentile(0.5) / 1e6)
+            p99Key.log(histogram.percentile(0.99) / 1e6)
+            maxKey.log(histogram.max() / 1e6)
+        }
+    }
+
+    /**
+     * Keeps the last samples added to it and computes percentiles over them. The samples are sorted into
+     * a preallocated array, so reading percentiles does not allocate.
+     *
+     * @param size The number of samples to keep.
+     */
+    class RollingHistogram(
+        private val size: Int,
+    ) {
+        private val samples = LongArray(size)
+        private val sorted = LongArray(size)
+        private var count = 0
+        private var next = 0
+
+        /**
+         * Adds a sample, replacing the oldest one once the histogram is full.
+         *
+         * @param sample The sample to add.
+         */
+        fun add(sample: Long) {
+            samples[next] = sample
+            next = (next + 1) % size
+            if (count < size) count++
+        }
+
+        /**
+         * Sorts the current samples so percentiles can be read from them.
+         *
+         * @return Int, the number of samples sorted.
+         */
+        fun sort(): Int {
+            System.arraycopy(samples, 0, sorted, 0, count)
+            sorted.sort(0, count)
+            return count
+        }
+
+        /**
+         * Gets a percentile of the samples as of the last [sort].
+         *
+         * @param fraction The percentile as a fraction between 0 and 1.
+         * @return Long, the sample at the percentile.
+         */
+        fun percentile(fraction: Double): Long = sorted[((count - 1) * fraction).toInt()]
+
+        /**
+         * Gets the largest sample as of the last [sort].
+         *
+         * @return Long, the largest sample.
+         */
+        fun max(): Long = sorted[count - 1]
+    }
+
+    /** Starts timing a loop. Must be called at the very start of robotPeriodic. */
+    @JvmStatic
+    fun beginLoop() {
+        loopStart = System.nanoTime()
+        mark = loopStart
+        for (i in timers.indices) {
+            timers[i].loopNanos = 0
+        }
+    }
+
+    /**
+     * Records the time since the previous timed section as the execute time of a command. Registered with
+     * `CommandScheduler.onCommandExecute`, which runs right after each command's execute, so this is the
+     * same measurement WPILib's own loop overrun epochs use. The first command of a loop also includes the
+     * button polling that runs after the subsystems.
+     *
+     * @param command The command that just executed.
+     */
+    @JvmStatic
+    fun commandExecuted(command: Command) {
+        val now = System.nanoTime()
+        commandTimers.getOrPut(command.name) { PerfTimer("Commands/${command.name}") }.record(now - mark)
+        mark = now
+    }
+
+    /**
+     * Stops timing a loop, logs the culprit if it overran, and logs the percentiles of every timer once
+     * per report period. Must be called at the end of robotPeriodic, before the logs are flushed.
+     */
+    @JvmStatic
+    fun endLoop() {
+        val now = System.nanoTime()
+        val loopNanos = now - loopStart
+        loopTimer.record(loopNanos)
+
+        if (loopNanos > loopBudgetNanos) {
+            var culprit = loopTimer
+            for (i in timers.indices) {
+                val timer = timers[i]
+                if (timer !== loopTimer && (culprit === loopTimer || timer.loopNanos > culprit.loopNanos)) {
+                    culprit = timer
+                }
+            }
+
+            overruns++
+            OVERRUNS_KEY.log(overruns)
+            OVERRUN_CULPRIT_KEY.log(culprit.name)
+            OVERRUN_CULPRIT_TIME_KEY.log(culprit.loopNanos / 1e6)
+            OVERRUN_LOOP_TIME_KEY.log(loopNanos / 1e6)
+        }
+
+        if (now - lastReport >= reportPeriodNanos) {
+            lastReport = now
+            for (i in timers.indices) {
+                timers[i].report()
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.math.geometry.Transform3d
+import frc.robot.utils.RobotParameters.PhotonVisionConstants.FUSED_CONVERGED_STEP
+import frc.robot.utils.RobotParameters.PhotonVisionConstants.FUSED_MAX_CORNERS
+import frc.robot.utils.RobotParameters.PhotonVisionConstants.FUSED_MAX_ITERATIONS
+import frc.robot.utils.RobotParameters.PhotonVisionConstants.FUSED_MAX_RMS
+import org.photonvision.targeting.PhotonTrackedTarget
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Joint PnP solver that fuses the tags seen by every camera into one robot pose.
+ *
+ * Coprocessor multi-tag PnP can only combine the tags a single camera sees. This solver takes the
+ * detected corners from all cameras, undistorts them with each camera's intrinsics, and solves one
+ * planar robot pose (x, y, heading) with Gauss-Newton, projecting each tag corner from [TagPingu]
+ * through the known robot to camera transforms. The robot is assumed flat on the carpet, which turns a
+ * pair of noisy single-tag solves into one well constrained problem.
+ *
+ * Observations are stored in preallocated arrays, so a solve does not allocate. Only the main thread
+ * may use this object.
+ */
+object PnPPingu {
+    private const val INTRINSIC_COUNT = 4
+    private const val UNDISTORT_ITERATIONS = 5
+
+    // Camera each corner was seen by, as an index into cameras
+    private val cornerCameras = IntArray(FUSED_MAX_CORNERS)
+
+    // Undistorted, normalized image position of each corner
+    private val observedU = DoubleArray(FUSED_MAX_CORNERS)
+    private val observedV = DoubleArray(FUSED_MAX_CORNERS)
+
+    // Field position of each corner
+    private val fieldX = DoubleArray(FUSED_MAX_CORNERS)
+    private val fieldY = DoubleArray(FUSED_MAX_CORNERS)
+    private val fieldZ = DoubleArray(FUSED_MAX_CORNERS)
+
+    private val tagIds = IntArray(FUSED_MAX_CORNERS / 4)
+    private val cameras = ArrayList<DoubleArray>()
+    private var cornerCount = 0
+
+    // Last Gauss-Newton step, kept as fields so step() does not have to return a tuple
+    private var stepX = 0.0
+    private var stepY = 0.0
+    private var stepTheta = 0.0
+
+    /** The X position of the last solved robot pose in meters. */
+    @JvmStatic
+    var x = 0.0
+        private set
+
+    /** The Y position of the last solved robot pose in meters. */
+    @JvmStatic
+    var y = 0.0
+        private set
+
+    /** The heading of the last solved robot pose in radians. */
+    @JvmStatic
+    var theta = 0.0
+        private set
+
+    /** The RMS corner error of the last solve in normalized image units. */
+    @JvmStatic
+    var rmsError = 0.0
+        private set
+
+    /** The number of tag observations added since the last [reset]. */
+    @JvmStatic
+    val tagCount: Int
+        get() = cornerCount / 4
+
+    /**
+     * Computes the extrinsics a camera is added with: the rows of the inverse of its rotation on the
+     * robot followed by its position on the robot.
+     *
+     * @param robotToCamera The transform from the robot to the camera.
+     * @return The 12 extrinsic values of the camera.
+     */
+    @JvmStatic
+    fun extrinsics(robotToCamera: Transform3d): DoubleArray {
+        val q = robotToCamera.rotation.quaternion
+        val w = q.w
+        val qx = q.x
+        val qy = q.y
+        val qz = q.z
+
+        // Rotation matrix of the quaternion, stored transposed so it maps robot to camera
+        return doubleArrayOf(
+            1 - 2 * (qy * qy + qz * qz),
+            2 * (qx * qy + w * qz),
+            2 * (qx * qz - w * qy),
+            2 * (qx * qy - w * qz),
+            1 - 2 * (qx * qx + qz * qz),
+            2 * (qy * qz + w * qx),
+            2 * (qx * qz + w * qy),
+            2 * (qy * qz - w * qx),
+            1 - 2 * (qx * qx + qy * qy),
+            robotToCamera.x,
+            robotToCamera.y,
+            robotToCamera.z,
+        )
+    }
+
+    /** Clears the observations so a new pose can be solved. */
+    @JvmStatic
+    fun reset() {
+        cameras.clear()
+        cornerCount = 0
+    }
+
+    /**
+     * Adds the tags a camera saw in one result. Targets that are not tags on the field are skipped, and
+     * tags past [FUSED_MAX_CORNERS] are ignored.
+     *
+     * @param extrinsics The extrinsics of the camera from [extrinsics].
+     * @param intrinsics The camera's fx, fy, cx, cy followed by its OpenCV distortion coefficients.
+     * @param targets The targets the camera saw.
+     * @return The number of tags added.
+     */
+    @JvmStatic
+    fun addTargets(
+        extrinsics: DoubleArray,
+        intrinsics: DoubleArray,
+        targets: List<PhotonTrackedTarget>,
+    ): Int {
+        val camera = cameras.size
+        cameras.add(extrinsics)
+
+        var added = 0
+        for (i in targets.indices) {
+            val target = targets[i]
+            val id = target.fiducialId
+            val corners = target.detectedCorners
+            if (!TagPingu.has(id) || corners.size != 4 || cornerCount + 4 > FUSED_MAX_CORNERS) continue
+
+            tagIds[cornerCount / 4] = id
+            for (corner in 0 until 4) {
+                cornerCameras[cornerCount] = camera
+                undistort(intrinsics, corners[corner].x, corners[corner].y, cornerCount)
+                fieldX[cornerCount] = TagPingu.cornerX(id, corner)
+                fieldY[cornerCount] = TagPingu.cornerY(id, corner)
+                fieldZ[cornerCount] = TagPingu.cornerZ(id, corner)
+                cornerCount++
+            }
+            added++
+        }
+        return added
+    }
+
+    /**
+     * Undistorts a pixel with the OpenCV rational distortion model and stores it as a normalized image
+     * position. The model has no closed form inverse, so it is inverted by fixed point iteration.
+     */
+    private fun undistort(
+        intrinsics: DoubleArray,
+        u: Double,
+        v: Double,
+        index: Int,
+    ) {
+        val distortedX = (u - intrinsics[2]) / intrinsics[0]
+        val distortedY = (v - intrinsics[3]) / intrinsics[1]
+        val k1 = coefficient(intrinsics, 0)
+        val k2 = coefficient(intrinsics, 1)
+        val p1 = coefficient(intrinsics, 2)
+        val p2 = coefficient(intrinsics, 3)
+        val k3 = coefficient(intrinsics, 4)
+        val k4 = coefficient(intrinsics, 5)
+        val k5 = coefficient(intrinsics, 6)
+        val k6 = coefficient(intrinsics, 7)
+
+        var px = distortedX
+        var py = distortedY
+        for (i in 0 until UNDISTORT_ITERATIONS) {
+            val r2 = px * px + py * py
+            val radial = (1 + r2 * (k1 + r2 * (k2 + r2 * k3))) / (1 + r2 * (k4 + r2 * (k5 + r2 * k6)))
+            val deltaX = 2 * p1 * px * py + p2 * (r2 + 2 * px * px)
+            val deltaY = p1 * (r2 + 2 * py * py) + 2 * p2 * px * py
+            px = (distortedX - deltaX) / radial
+            py = (distortedY - deltaY) / radial
+        }
+        observedU[index] = px
+        observedV[index] = py
+    }
+
+    private fun coefficient(
+        intrinsics: DoubleArray,
+        index: Int,
+    ) = if (INTRINSIC_COUNT + index < intrinsics.size) intrinsics[INTRINSIC_COUNT + index] else 0.0
+
+    /**
+     * Solves the robot pose that best projects every added corner onto where the cameras saw it,
+     * starting from a guess such as a single camera's estimate or the current odometry pose.
+     *
+     * @param guessX The X position to start from in meters.
+     * @param guessY The Y position to start from in meters.
+     * @param guessTheta The heading to start from in radians.
+     * @return Whether the solve converged with a small enough error. The pose is in [x], [y], [theta].
+     */
+    @JvmStatic
+    fun solve(
+        guessX: Double,
+        guessY: Double,
+        guessTheta: Double,
+    ): Boolean {
+        // Two tags are needed for the joint solve to add anything over a single camera
+        if (cornerCount < 8) return false
+
+        x = guessX
+        y = guessY
+        theta = guessTheta
+
+        for (iteration in 0 until FUSED_MAX_ITERATIONS) {
+            if (!step()) return false
+
+            if (abs(stepX) + abs(stepY) + abs(stepTheta) < FUSED_CONVERGED_STEP) {
+                return rmsError <= FUSED_MAX_RMS
+            }
+        }
+        return false
+    }
+
+    /**
+     * Takes one Gauss-Newton step, accumulating the normal equations over every corner and solving them
+     * with Cramer's rule.
+     *
+     * @return Whether the step could be taken, false if a corner is behind its camera or the problem is
+     * degenerate.
+     */
+    private fun step(): Boolean {
+        val c = cos(theta)
+        val s = sin(theta)
+
+        // Upper triangle of J^T J and J^T r
+        var h00 = 0.0
+        var h01 = 0.0
+        var h02 = 0.0
+        var h11 = 0.0
+        var h12 = 0.0
+        var h22 = 0.0
+        var g0 = 0.0
+        var g1 = 0.0
+        var g2 = 0.0
+        var cost = 0.0
+
+        for (i in 0 until cornerCount) {
+            val e = cameras[cornerCameras[i]]
+
+            // Corner in the robot frame
+            val dx = fieldX[i] - x
+            val dy = fieldY[i] - y
+            val rx = c * dx + s * dy
+            val ry = -s * dx + c * dy
+
+            // Corner in the camera frame, X forward, Y left, Z up
+            val qx = rx - e[9]
+            val qy = ry - e[10]
+            val qz = fieldZ[i] - e[11]
+            val cx = e[0] * qx + e[1] * qy + e[2] * qz
+            val cy = e[3] * qx + e[4] * qy + e[5] * qz
+            val cz = e[6] * qx + e[7] * qy + e[8] * qz
+            if (cx < 0.05) return false
+
+            val inverse = 1 / cx
+            val ru = observedU[i] + cy * inverse
+            val rv = observedV[i] + cz * inverse
+            cost += ru * ru + rv * rv
+
+            // Derivatives of the robot frame corner with respect to x, y, and theta
+            val ju0 = jacobianU(e, -c, s, cx, cy, inverse)
+            val jv0 = jacobianV(e, -c, s, cx, cz, inverse)
+            val ju1 = jacobianU(e, -s, -c, cx, cy, inverse)
+            val jv1 = jacobianV(e, -s, -c, cx, cz, inverse)
+            val ju2 = jacobianU(e, ry, -rx, cx, cy, inverse)
+            val jv2 = jacobianV(e, ry, -rx, cx, cz, inverse)
+
+            h00 += ju0 * ju0 + jv0 * jv0
+            h01 += ju0 * ju1 + jv0 * jv1
+            h02 += ju0 * ju2 + jv0 * jv2
+            h11 += ju1 * ju1 + jv1 * jv1
+            h12 += ju1 * ju2 + jv1 * jv2
+            h22 += ju2 * ju2 + jv2 * jv2
+            g0 += ju0 * ru + jv0 * rv
+            g1 += ju1 * ru + jv1 * rv
+            g2 += ju2 * ru + jv2 * rv
+        }
+        rmsError = sqrt(cost / (2 * cornerCount))
+
+        val det = h00 * (h11 * h22 - h12 * h12) - h01 * (h01 * h22 - h12 * h02) + h02 * (h01 * h12 - h11 * h02)
+        if (abs(det) < 1e-12) return false
+
+        stepX = (g0 * (h11 * h22 - h12 * h12) - h01 * (g1 * h22 - h12 * g2) + h02 * (g1 * h12 - h11 * g2)) / det
+        stepY = (h00 * (g1 * h22 - h12 * g2) - g0 * (h01 * h22 - h12 * h02) + h02 * (h01 * g2 - g1 * h02)) / det
+        stepTheta = (h00 * (h11 * g2 - g1 * h12) - h01 * (h01 * g2 - g1 * h02) + g0 * (h01 * h12 - h11 * h02)) / det
+
+        x += stepX
+        y += stepY
+        theta += stepTheta
+        return true
+    }
+
+    /**
+     * Gets the derivative of the predicted normalized u (-Y / X in the camera frame) for a change of the
+     * robot frame corner.
+     */
+    private fun jacobianU(
+        e: DoubleArray,
+        rx: Double,
+        ry: Double,
+        cx: Double,
+        cy: Double,
+        inverse: Double,
+    ): Double {
+        val dcx = e[0] * rx + e[1] * ry
+        val dcy = e[3] * rx + e[4] * ry
+        return (cy * dcx - cx * dcy) * inverse * inverse
+    }
+
+    /**
+     * Gets the derivative of the predicted normalized v (-Z / X in the camera frame) for a change of the
+     * robot frame corner.
+     */
+    private fun jacobianV(
+        e: DoubleArray,
+        rx: Double,
+        ry: Double,
+        cx: Double,
+        cz: Double,
+        inverse: Double,
+    ): Double {
+        val dcx = e[0] * rx + e[1] * ry
+        val dcz = e[6] * rx + e[7] * ry
+        return (cz * dcx - cx * dcz) * inverse * inverse
+    }
+
+    /**
+     * Gets the average planar distance from the last solved pose to the tags that were solved with.
+     *
+     * @return The average distance in meters.
+     */
+    @JvmStatic
+    fun averageDistance(): Double {
+        var total = 0.0
+        for (i in 0 until tagCount) {
+            val dx = TagPingu.x(tagIds[i]) - x
+            val dy = TagPingu.y(tagIds[i]) - y
+            total += sqrt(dx * dx + dy * dy)
+        }
+        return total / tagCount
+    }
+
+    /**
+     * Gets the average 3D distance from the last solved pose, on the carpet, to the tags that were
+     * solved with.
+     *
+     * @return The average distance in meters.
+     */
+    @JvmStatic
+    fun averageDistance3d(): Double {
+        var total = 0.0
+        for (i in 0 until tagCount) {
+            val dx = TagPingu.x(tagIds[i]) - x
+            val dy = TagPingu.y(tagIds[i]) - y
+            val dz = TagPingu.z(tagIds[i])
+            total += sqrt(dx * dx + dy * dy + dz * dz)
+        }
+        return total / tagCount
+    }
+}
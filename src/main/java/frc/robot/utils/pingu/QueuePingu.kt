@@ -0,0 +1,55 @@
+package frc.robot.utils.pingu
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * A bounded lock-free single-producer/single-consumer queue.
+ *
+ * Exactly one thread may call [offer] and exactly one other thread may call [poll]. Neither side ever
+ * blocks or takes a lock, so a worker thread can hand results to the main loop without the main loop
+ * ever waiting on it.
+ *
+ * @param capacity The minimum number of elements the queue can hold, rounded up to a power of two.
+ */
+class QueuePingu<T : Any>(capacity: Int) {
+    private val mask: Int = Integer.highestOneBit(maxOf(capacity, 2) * 2 - 1) - 1
+    private val buffer = AtomicReferenceArray<T?>(mask + 1)
+
+    // Index of the next element to poll, only written by the consumer
+    private val head = AtomicLong(0)
+
+    // Index of the next element to offer, only written by the producer
+    private val tail = AtomicLong(0)
+
+    /**
+     * Adds an element to the queue. Must only be called from the producer thread.
+     *
+     * @param value The element to add.
+     * @return Boolean, false if the queue is full and the element was not added.
+     */
+    fun offer(value: T): Boolean {
+        val t = tail.get()
+        if (t - head.get() > mask) return false
+
+        buffer.lazySet((t and mask.toLong()).toInt(), value)
+        tail.lazySet(t + 1)
+        return true
+    }
+
+    /**
+     * Removes the oldest element from the queue. Must only be called from the consumer thread.
+     *
+     * @return T?, The oldest element, or null if the queue is empty.
+     */
+    fun poll(): T? {
+        val h = head.get()
+        if (h == tail.get()) return null
+
+        val index = (h and mask.toLong()).toInt()
+        val value = buffer.get(index)
+        buffer.lazySet(index, null)
+        head.lazySet(h + 1)
+        return value
+    }
+}
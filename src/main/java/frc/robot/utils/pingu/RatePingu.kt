@@ -0,0 +1,70 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.wpilibj.DriverStation
+import edu.wpi.first.wpilibj.Notifier
+import frc.robot.utils.pingu.LogPingu.DoubleKey
+
+/**
+ * Runs work at its own rate on a WPILib [Notifier] instead of at the 50 Hz CommandScheduler rate.
+ *
+ * Every task runs on its own Notifier thread, and the state it writes belongs to that thread: nothing
+ * else may write it, and anything the main loop reads from it must be volatile. Tasks may read state
+ * the main loop writes only through volatile fields, may log through LogPingu keys, and must not touch
+ * WPILib objects that are read by the main loop, such as Alerts, Field2d or SmartDashboard values.
+ * Work that has to end in one of those is split: the task computes, and the main loop publishes.
+ *
+ * The drive odometry and the camera solves already run on their own threads, see `DriveThread` and
+ * `PhotonModule`, so this is for the slower work that does not need the main loop every 20 ms.
+ */
+object RatePingu {
+    /**
+     * A piece of work run periodically on its own Notifier thread.
+     *
+     * @property name The name of the task, used for the thread name and the logged run time.
+     * @property rate The rate in Hz the task runs at.
+     */
+    class RateTask internal constructor(
+        @JvmField val name: String,
+        @JvmField val rate: Double,
+        private val task: Runnable,
+    ) {
+        private val notifier = Notifier(::run)
+        private val runTimeKey = DoubleKey("Rates/$name/Run Time (ms)")
+
+        init {
+            notifier.setName("RatePingu-$name")
+        }
+
+        /** Starts running the task at its rate. */
+        fun start() = notifier.startPeriodic(1.0 / rate)
+
+        /** Stops running the task. A run that already started finishes first. */
+        fun stop() = notifier.stop()
+
+        private fun run() {
+            val start = System.nanoTime()
+            try {
+                task.run()
+            } catch (e: Exception) {
+                // An exception would otherwise kill the Notifier thread and stop the task for good
+                DriverStation.reportError("RatePingu task $name threw: ${e.message}", e.stackTrace)
+            }
+            runTimeKey.log((System.nanoTime() - start) / 1e6)
+        }
+    }
+
+    /**
+     * Creates a task and starts running it at the given rate.
+     *
+     * @param name The name of the task.
+     * @param rate The rate in Hz to run the task at.
+     * @param task The work to run.
+     * @return RateTask, the running task.
+     */
+    @JvmStatic
+    fun schedule(
+        name: String,
+        rate: Double,
+        task: Runnable,
+    ): RateTask = RateTask(name, rate, task).also { it.start() }
+}
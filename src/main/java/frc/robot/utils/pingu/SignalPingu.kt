@@ -0,0 +1,66 @@
+package frc.robot.utils.pingu
+
+import com.ctre.phoenix6.BaseStatusSignal
+import edu.wpi.first.wpilibj.Timer
+
+/**
+ * Per-loop snapshot of every Phoenix 6 status signal read by the subsystems.
+ *
+ * Subsystems register the signals they read once in their constructor and keep the returned handle.
+ * [refresh] is called once at the start of `robotPeriodic`, refreshing every registered signal with a
+ * single [BaseStatusSignal.refreshAll] call and copying the values into a primitive array. Reads through
+ * [get] never cross into the CAN layer, and every subsystem sees the same instant for the rest of the loop.
+ *
+ * @property timestamp The FPGA timestamp in seconds of the last refresh.
+ */
+object SignalPingu {
+    private val registered = mutableListOf<BaseStatusSignal>()
+
+    // Rebuilt only when a signal is registered, and handed to refreshAll without a copy
+    private var signals: Array<BaseStatusSignal> = emptyArray()
+    private var values = DoubleArray(0)
+
+    @JvmStatic
+    var timestamp: Double = 0.0
+        private set
+
+    /**
+     * Registers a status signal in the snapshot. The current value of the signal is read immediately so
+     * the handle is valid before the first refresh.
+     *
+     * @param signal The status signal to register.
+     * @return The handle used to read the signal from the snapshot.
+     */
+    @JvmStatic
+    fun register(signal: BaseStatusSignal): Int {
+        registered.add(signal)
+        signals = registered.toTypedArray()
+        values = values.copyOf(signals.size)
+        values[signals.lastIndex] = signal.valueAsDouble
+        return signals.lastIndex
+    }
+
+    /**
+     * Refreshes every registered signal with a single batched CAN refresh and takes a new snapshot.
+     * Should only be called once per loop, before the CommandScheduler runs.
+     */
+    @JvmStatic
+    fun refresh() {
+        if (signals.isEmpty()) return
+
+        SignalRefresh.refreshAll(signals)
+        for (i in signals.indices) {
+            values[i] = signals[i].valueAsDouble
+        }
+        timestamp = Timer.getFPGATimestamp()
+    }
+
+    /**
+     * Gets the value of a registered signal from the current snapshot.
+     *
+     * @param handle The handle returned by [register].
+     * @return The value of the signal at the last refresh.
+     */
+    @JvmStatic
+    operator fun get(handle: Int): Double = values[handle]
+}
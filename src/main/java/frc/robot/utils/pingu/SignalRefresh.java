@@ -0,0 +1,22 @@
+package frc.robot.utils.pingu;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+
+/**
+ * Passes a signal array to {@link BaseStatusSignal#refreshAll} as is. Kotlin's spread operator
+ * copies the array on every call, which {@link SignalPingu#refresh} would do every loop.
+ */
+final class SignalRefresh {
+  private SignalRefresh() {}
+
+  /**
+   * Refreshes every signal in the array with one batched CAN refresh.
+   *
+   * @param signals The signals to refresh.
+   * @return StatusCode, The status of the refresh.
+   */
+  static StatusCode refreshAll(BaseStatusSignal[] signals) {
+    return BaseStatusSignal.refreshAll(signals);
+  }
+}
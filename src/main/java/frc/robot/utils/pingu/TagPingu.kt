@@ -0,0 +1,139 @@
+package frc.robot.utils.pingu
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout
+import frc.robot.utils.RobotParameters.FieldParameters
+import org.photonvision.estimation.TargetModel
+
+/**
+ * Shared, immutable table of the AprilTag poses on the field.
+ *
+ * The field layout JSON is parsed once, and every tag pose is copied into primitive arrays indexed by
+ * fiducial ID. Vision math that only needs a tag position reads it through [x], [y], [z], and [yaw]
+ * without the `Optional<Pose3d>` and geometry objects [AprilTagFieldLayout.getTagPose] allocates, so
+ * it is safe to call from the camera reader threads on every target. The field positions of the four
+ * corners of every tag are stored the same way, in the order PhotonVision reports detected corners.
+ */
+object TagPingu {
+    /** The field layout every camera shares, only read after it is loaded */
+    @JvmField
+    val LAYOUT: AprilTagFieldLayout = AprilTagFieldLayout.loadField(FieldParameters.AprilTagFieldLayout)
+
+    private val present: BooleanArray
+    private val xs: DoubleArray
+    private val ys: DoubleArray
+    private val zs: DoubleArray
+    private val yaws: DoubleArray
+
+    // x, y, z of each of the 4 corners, 12 values per tag
+    private val corners: DoubleArray
+
+    init {
+        val size = (LAYOUT.tags.maxOfOrNull { it.ID } ?: -1) + 1
+        present = BooleanArray(size)
+        xs = DoubleArray(size)
+        ys = DoubleArray(size)
+        zs = DoubleArray(size)
+        yaws = DoubleArray(size)
+        corners = DoubleArray(size * 12)
+
+        for (tag in LAYOUT.tags) {
+            if (tag.ID < 0) continue
+            present[tag.ID] = true
+            xs[tag.ID] = tag.pose.x
+            ys[tag.ID] = tag.pose.y
+            zs[tag.ID] = tag.pose.z
+            yaws[tag.ID] = tag.pose.rotation.z
+
+            TargetModel.kAprilTag36h11.getFieldVertices(tag.pose).forEachIndexed { corner, vertex ->
+                val index = tag.ID * 12 + corner * 3
+                corners[index] = vertex.x
+                corners[index + 1] = vertex.y
+                corners[index + 2] = vertex.z
+            }
+        }
+    }
+
+    /**
+     * Checks if a fiducial ID is a tag on the field.
+     *
+     * @param id The fiducial ID.
+     * @return Whether the tag is in the layout.
+     */
+    @JvmStatic
+    fun has(id: Int) = id >= 0 && id < present.size && present[id]
+
+    /**
+     * Gets the field X position of a tag. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @return The X position in meters.
+     */
+    @JvmStatic
+    fun x(id: Int) = xs[id]
+
+    /**
+     * Gets the field Y position of a tag. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @return The Y position in meters.
+     */
+    @JvmStatic
+    fun y(id: Int) = ys[id]
+
+    /**
+     * Gets the height of a tag. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @return The Z position in meters.
+     */
+    @JvmStatic
+    fun z(id: Int) = zs[id]
+
+    /**
+     * Gets the yaw a tag faces on the field. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @return The yaw in radians.
+     */
+    @JvmStatic
+    fun yaw(id: Int) = yaws[id]
+
+    /**
+     * Gets the field X position of a tag corner. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @param corner The corner index, matching the order of the detected corners.
+     * @return The X position in meters.
+     */
+    @JvmStatic
+    fun cornerX(
+        id: Int,
+        corner: Int,
+    ) = corners[id * 12 + corner * 3]
+
+    /**
+     * Gets the field Y position of a tag corner. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @param corner The corner index, matching the order of the detected corners.
+     * @return The Y position in meters.
+     */
+    @JvmStatic
+    fun cornerY(
+        id: Int,
+        corner: Int,
+    ) = corners[id * 12 + corner * 3 + 1]
+
+    /**
+     * Gets the height of a tag corner. Only valid if [has] is true for the ID.
+     *
+     * @param id The fiducial ID.
+     * @param corner The corner index, matching the order of the detected corners.
+     * @return The Z position in meters.
+     */
+    @JvmStatic
+    fun cornerZ(
+        id: Int,
+        corner: Int,
+    ) = corners[id * 12 + corner * 3 + 2]
+}